@@ -0,0 +1,464 @@
+package com.github.koettlitz.clom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import com.github.koettlitz.util.PeekableIterator;
+
+/**
+ * Iterates over command line arguments and expands argument files on the fly.
+ * Every argument that starts with an <code>@</code> is interpreted as the path
+ * of an argument file, e.g. <code>@path/to/args.txt</code>. Instead of the
+ * argument itself the tokens contained in that file are returned.
+ * A leading <code>@@</code> escapes the <code>@</code>, so <code>@@foo</code>
+ * results in the plain argument <code>@foo</code>.<br>
+ * The files are streamed through a {@link FileChannel} and split into tokens
+ * while they are read, so the content of an argument file is never held in
+ * memory as a whole. The tokens themselves are still retained by the parser
+ * until the target object is assigned: every plain argument, e.g. of the
+ * varargs, and every value of a repeatable option is kept, so memory grows
+ * with the number of these tokens in the files. Only the values of options,
+ * that are not repeatable, replace each other, and the tokens following
+ * <code>--</code> are streamed to varargs of type {@link java.util.Iterator},
+ * {@link java.util.stream.Stream} or {@link java.util.function.Consumer}
+ * without being retained, e.g. for <code>-v -- @files.txt</code>.
+ * Within an argument file
+ * <ul>
+ *    <li>tokens are separated by whitespace (including line breaks),</li>
+ *    <li>a <code>#</code> at the beginning of a token starts a comment
+ *    that lasts until the end of the line,</li>
+ *    <li>text in double quotes (<code>"a b"</code>) or single quotes
+ *    (<code>'a b'</code>) is part of the token including its whitespace.
+ *    Quoted text may span multiple lines,</li>
+ *    <li>a backslash escapes the next character. Within single quotes
+ *    backslashes are taken literally. A backslash at the end of a line
+ *    continues the current token on the next line,</li>
+ *    <li>an unquoted token starting with <code>@</code> is expanded
+ *    as a nested argument file, unless nested expansion is disabled
+ *    via {@link #setNestedExpansion(boolean)}.</li>
+ * </ul>
+ * An instance is meant to be passed to {@link CLOM#parse(Class, PeekableIterator)}
+ * or {@link CLOM#parse(PeekableIterator)}. Open argument files are closed as soon
+ * as they are exhausted, but the expander should still be closed if parsing stops
+ * early, e.g.:
+ * <pre>
+ * try (ArgFileExpander expander = new ArgFileExpander(args)) {
+ *    result = CLOM.parse(MyArgModel.class, expander);
+ * }
+ * </pre>
+ * Varargs of type {@link java.util.Iterator} or {@link java.util.stream.Stream}
+ * read the tokens following <code>--</code> from the expander while they are
+ * consumed, so then the expander must be closed only after they are exhausted.
+ *
+ * @see CLOM#parse(Class, PeekableIterator)
+ */
+public class ArgFileExpander implements PeekableIterator<String>, Closeable {
+   private static final int BUFFER_SIZE = 8192;
+   private static final int MAX_DEPTH = 32;
+
+   private final String[] args;
+   private final Charset charset;
+   private final Deque<ArgFile> files = new ArrayDeque<>();
+   private final Set<Path> openPaths = new HashSet<>();
+   private final StringBuilder token = new StringBuilder();
+   private int index;
+   private String next;
+   private boolean nestedExpansion = true;
+
+   /**
+    * Creates an expander for the given command line arguments, that reads
+    * argument files as UTF-8.
+    *
+    * @param args the command line arguments
+    *
+    * @throws NullPointerException if <code>args</code> is <code>null</code>
+    */
+   public ArgFileExpander(String... args) throws NullPointerException {
+      this(StandardCharsets.UTF_8, args);
+   }
+
+   /**
+    * Creates an expander for the given command line arguments, that reads
+    * argument files with the given charset.
+    *
+    * @param charset the charset of the argument files
+    * @param args the command line arguments
+    *
+    * @throws NullPointerException if <code>charset</code> or <code>args</code>
+    * is <code>null</code>
+    */
+   public ArgFileExpander(Charset charset, String... args) throws NullPointerException {
+      this.charset = Objects.requireNonNull(charset);
+      this.args = Objects.requireNonNull(args);
+   }
+
+   /**
+    * Declares whether tokens within argument files, that start with an
+    * <code>@</code>, are expanded as argument files themselves.
+    * Nested expansion is enabled by default.
+    *
+    * @param nestedExpansion <code>true</code> to expand argument files
+    * referenced by argument files<br>
+    * <code>false</code> to treat those tokens as plain arguments
+    *
+    * @return this expander
+    */
+   public ArgFileExpander setNestedExpansion(boolean nestedExpansion) {
+      this.nestedExpansion = nestedExpansion;
+      return this;
+   }
+
+   public boolean isNestedExpansion() {
+      return nestedExpansion;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @throws UncheckedIOException if an argument file could not be read
+    */
+   @Override
+   public boolean hasNext() throws UncheckedIOException {
+      if (next == null)
+         next = advance();
+
+      return next != null;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @throws UncheckedIOException if an argument file could not be read
+    */
+   @Override
+   public String peek() throws NoSuchElementException, UncheckedIOException {
+      if (!hasNext())
+         throw new NoSuchElementException("No argument left");
+
+      return next;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @throws UncheckedIOException if an argument file could not be read
+    */
+   @Override
+   public String next() throws NoSuchElementException, UncheckedIOException {
+      String result = peek();
+      next = null;
+      return result;
+   }
+
+   /**
+    * Closes all argument files, that are currently opened.
+    *
+    * @throws IOException if closing an argument file fails
+    */
+   @Override
+   public void close() throws IOException {
+      IOException failure = null;
+      while (!files.isEmpty()) {
+         try {
+            closeCurrentFile();
+         } catch (IOException e) {
+            if (failure == null)
+               failure = e;
+            else
+               failure.addSuppressed(e);
+         }
+      }
+
+      if (failure != null)
+         throw failure;
+   }
+
+   private String advance() throws UncheckedIOException {
+      try {
+         while (true) {
+            if (files.isEmpty()) {
+               if (index >= args.length)
+                  return null;
+
+               String arg = args[index++];
+               if (!isArgFile(arg))
+                  return unescape(arg);
+
+               open(arg.substring(1));
+               continue;
+            }
+
+            ArgFile file = files.peek();
+            if (!file.nextToken(token)) {
+               closeCurrentFile();
+               continue;
+            }
+
+            String value = token.toString();
+            if (nestedExpansion && !file.lastTokenQuoted && isArgFile(value)) {
+               open(value.substring(1));
+               continue;
+            }
+
+            return file.lastTokenQuoted ? value : unescape(value);
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Appends the given token to the given command line, so that it is read
+    * as exactly that token by an expander, e.g. if the command line is written
+    * into an argument file. Tokens are separated by a space and quoted if necessary.
+    */
+   static StringBuilder appendToken(StringBuilder commandLine, String token) {
+      if (commandLine.length() > 0 && !Character.isWhitespace(commandLine.charAt(commandLine.length() - 1)))
+         commandLine.append(' ');
+
+      if (!needsQuotes(token))
+         return commandLine.append(token);
+
+      commandLine.append('"');
+      for (int i = 0; i < token.length(); i++) {
+         char c = token.charAt(i);
+         switch (c) {
+            case '\n':
+               commandLine.append("\\n");
+               break;
+            case '\t':
+               commandLine.append("\\t");
+               break;
+            case '\r':
+               commandLine.append("\\r");
+               break;
+            case '"':
+            case '\\':
+               commandLine.append('\\').append(c);
+               break;
+            default:
+               commandLine.append(c);
+         }
+      }
+      return commandLine.append('"');
+   }
+
+   private static boolean needsQuotes(String token) {
+      if (token.isEmpty() || token.charAt(0) == '@' || token.charAt(0) == '#')
+         return true;
+
+      for (int i = 0; i < token.length(); i++) {
+         char c = token.charAt(i);
+         if (Character.isWhitespace(c) || c == '"' || c == '\'' || c == '\\')
+            return true;
+      }
+      return false;
+   }
+
+   private static boolean isArgFile(String arg) {
+      return arg.length() > 1 && arg.charAt(0) == '@' && arg.charAt(1) != '@';
+   }
+
+   private static String unescape(String arg) {
+      return arg.startsWith("@@") ? arg.substring(1) : arg;
+   }
+
+   private void open(String location) throws IOException {
+      Path path = files.isEmpty() ? Paths.get(location) : files.peek().resolve(location);
+      Path key = path.toAbsolutePath().normalize();
+      if (files.size() >= MAX_DEPTH)
+         throw new IOException("Argument files are nested deeper than " + MAX_DEPTH + " levels at " + path);
+      if (!openPaths.add(key))
+         throw new IOException("Argument file " + path + " references itself.");
+
+      try {
+         files.push(new ArgFile(key, FileChannel.open(path, StandardOpenOption.READ), charset));
+      } catch (IOException e) {
+         openPaths.remove(key);
+         throw e;
+      }
+   }
+
+   private void closeCurrentFile() throws IOException {
+      ArgFile file = files.pop();
+      openPaths.remove(file.path);
+      file.channel.close();
+   }
+
+   /**
+    * A single argument file, that is decoded and tokenized chunk by chunk.
+    */
+   private static final class ArgFile {
+      private final Path path;
+      private final FileChannel channel;
+      private final CharsetDecoder decoder;
+      private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+      private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+      private boolean endOfInput;
+      private boolean flushed;
+      private boolean lastTokenQuoted;
+
+      private ArgFile(Path path, FileChannel channel, Charset charset) {
+         this.path = path;
+         this.channel = channel;
+         this.decoder = charset.newDecoder()
+                               .onMalformedInput(CodingErrorAction.REPORT)
+                               .onUnmappableCharacter(CodingErrorAction.REPORT);
+         chars.flip();
+      }
+
+      private Path resolve(String location) {
+         Path parent = path.getParent();
+         return parent == null ? Paths.get(location) : parent.resolve(location);
+      }
+
+      /**
+       * Reads the next token into the given builder.
+       *
+       * @return <code>true</code> if a token was read, <code>false</code>
+       * if the end of the file is reached
+       */
+      private boolean nextToken(StringBuilder token) throws IOException {
+         token.setLength(0);
+         lastTokenQuoted = false;
+
+         int c = skipWhitespaceAndComments();
+         if (c < 0)
+            return false;
+
+         char quote = 0;
+         boolean quoted = false;
+         for (; c >= 0; c = read()) {
+            if (quote != 0) {
+               if (c == quote) {
+                  quote = 0;
+               } else if (c == '\\' && quote == '"') {
+                  appendEscaped(token, read());
+               } else {
+                  token.append((char) c);
+               }
+            } else if (c == '"' || c == '\'') {
+               quote = (char) c;
+               if (token.length() == 0)
+                  lastTokenQuoted = true;
+
+               quoted = true;
+            } else if (c == '\\') {
+               int escaped = read();
+               if (escaped == '\r') {
+                  escaped = read();
+                  if (escaped >= 0 && escaped != '\n')
+                     unread();
+               } else if (escaped >= 0 && escaped != '\n') {
+                  token.append((char) escaped);
+               }
+            } else if (Character.isWhitespace(c)) {
+               break;
+            } else {
+               token.append((char) c);
+            }
+         }
+
+         if (quote != 0)
+            throw new IOException("Unterminated quote in argument file " + path);
+
+         if (token.length() == 0 && !quoted)
+            return nextToken(token);
+
+         return true;
+      }
+
+      private int skipWhitespaceAndComments() throws IOException {
+         int c = read();
+         while (c >= 0) {
+            if (c == '#') {
+               do {
+                  c = read();
+               } while (c >= 0 && c != '\n' && c != '\r');
+            } else if (!Character.isWhitespace(c)) {
+               return c;
+            } else {
+               c = read();
+            }
+         }
+         return c;
+      }
+
+      private void appendEscaped(StringBuilder token, int c) throws IOException {
+         if (c < 0)
+            throw new IOException("Unterminated escape sequence in argument file " + path);
+
+         switch (c) {
+            case 'n':
+               token.append('\n');
+               break;
+            case 't':
+               token.append('\t');
+               break;
+            case 'r':
+               token.append('\r');
+               break;
+            default:
+               token.append((char) c);
+         }
+      }
+
+      private void unread() {
+         chars.position(chars.position() - 1);
+      }
+
+      private int read() throws IOException {
+         if (!chars.hasRemaining() && !fill())
+            return -1;
+
+         return chars.get();
+      }
+
+      private boolean fill() throws IOException {
+         chars.clear();
+         try {
+            while (chars.position() == 0) {
+               if (!endOfInput) {
+                  endOfInput = channel.read(bytes) < 0;
+                  bytes.flip();
+                  CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                  bytes.compact();
+                  if (result.isError())
+                     result.throwException();
+               } else if (!flushed) {
+                  CoderResult result = decoder.flush(chars);
+                  if (result.isError())
+                     result.throwException();
+
+                  flushed = true;
+               } else {
+                  break;
+               }
+            }
+         } catch (CharacterCodingException e) {
+            throw new IOException("Argument file " + path + " is not encoded as " + decoder.charset(), e);
+         }
+         chars.flip();
+         return chars.hasRemaining();
+      }
+   }
+}
@@ -5,41 +5,77 @@ import com.github.koettlitz.opt.ArgumentParserBuilder;
 import java.lang.reflect.Field;
 
 public class ArgumentAdder implements Comparable<ArgumentAdder> {
+   /** The binding of the argument or <code>null</code> if created by the deprecated constructor */
+   private final Binding binding;
    private final CLArgument arg;
    private final Field field;
 
+   /**
+    * @deprecated Arguments are resolved to bindings, when the plan of the target
+    * type is compiled, so adders are only created by CLOM. This constructor is
+    * kept for compatibility and will be removed.
+    */
+   @Deprecated
    public ArgumentAdder(CLArgument arg, Field field) {
+      this.binding = null;
       this.arg = arg;
       this.field = field;
    }
 
+   ArgumentAdder(Binding binding) {
+      this.binding = binding;
+      this.arg = null;
+      this.field = null;
+   }
+
    public ArgumentParserBuilder addArgumentTo(ArgumentParserBuilder builder) {
-      return builder.buildArgument(CLOM.get(arg.name(), field.getName()))
-                    .setMandatory(arg.mandatory())
-                    .setDescription(arg.description())
+      if (binding == null) {
+         return builder.buildArgument(CLOM.get(arg.name(), field.getName()))
+                       .setMandatory(arg.mandatory())
+                       .setDescription(arg.description())
+                       .build();
+      }
+
+      return builder.buildArgument(binding.argumentName())
+                    .setMandatory(binding.mandatory)
+                    .setDescription(binding.description)
                     .build();
    }
 
    public int index() {
-      return arg.index();
+      return binding == null ? arg.index() : binding.argumentIndex;
    }
 
+   /**
+    * @return the field given to the deprecated constructor or <code>null</code>
+    * for an adder created by CLOM, whose argument may also be a setter
+    * @deprecated CLOM no longer retains the reflected members of arguments.
+    */
+   @Deprecated
    public Field getField() {
       return field;
    }
 
+   Binding getBinding() {
+      return binding;
+   }
+
+   private String memberName() {
+      return binding == null ? field.getName() : binding.name;
+   }
+
    @Override
    public int compareTo(ArgumentAdder other) {
       if (other == this)
          return 0;
 
       if (index() == other.index()) {
-         throw new IllegalStateException("Duplicate index of fields " + field.getName()
-                                         + "(index=" + index() + ") and " + field.getName()
+         throw new IllegalStateException("Duplicate index of members " + memberName()
+                                         + "(index=" + index() + ") and " + other.memberName()
                                          + "(index=" + other.index() + ")");
       }
 
-      return arg.index() - other.arg.index();
+      return index() - other.index();
    }
 
 }
@@ -0,0 +1,123 @@
+package com.github.koettlitz.clom;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A Burkhard-Keller tree over the Levenshtein distance. It finds the words
+ * within a maximum distance of a query by visiting only the subtrees whose
+ * distance to their parent can satisfy the triangle inequality, instead of
+ * comparing the query with every word. It is filled once and only read
+ * afterwards, so it can be shared between threads.
+ */
+final class BKTree {
+   private static final int[] NO_DISTANCES = new int[0];
+   private static final BKTree[] NO_CHILDREN = new BKTree[0];
+
+   private String word;
+   /** The distances of the children to the word of this node */
+   private int[] distances = NO_DISTANCES;
+   private BKTree[] children = NO_CHILDREN;
+
+   void add(String word) {
+      if (this.word == null) {
+         this.word = word;
+         return;
+      }
+
+      BKTree node = this;
+      while (true) {
+         int distance = distance(word, node.word);
+         if (distance == 0)
+            return;
+
+         BKTree child = node.child(distance);
+         if (child == null) {
+            child = new BKTree();
+            child.word = word;
+            node.distances = Arrays.copyOf(node.distances, node.distances.length + 1);
+            node.children = Arrays.copyOf(node.children, node.children.length + 1);
+            node.distances[node.distances.length - 1] = distance;
+            node.children[node.children.length - 1] = child;
+            return;
+         }
+
+         node = child;
+      }
+   }
+
+   /**
+    * Finds the words closest to the given query.
+    *
+    * @param query the word to find similar words for
+    * @param maxDistance the maximum distance of the found words to the query
+    * @param limit the maximum number of words to be found
+    *
+    * @return the found words ordered by their distance to the query and lexicographically
+    */
+   List<String> search(String query, int maxDistance, int limit) {
+      List<List<String>> byDistance = new ArrayList<>();
+      for (int i = 0; i <= maxDistance; i++)
+         byDistance.add(new ArrayList<>());
+
+      Deque<BKTree> nodes = new ArrayDeque<>();
+      if (word != null)
+         nodes.push(this);
+
+      while (!nodes.isEmpty()) {
+         BKTree node = nodes.pop();
+         int distance = distance(query, node.word);
+         if (distance <= maxDistance)
+            byDistance.get(distance).add(node.word);
+
+         for (int i = 0; i < node.children.length; i++) {
+            if (Math.abs(node.distances[i] - distance) <= maxDistance)
+               nodes.push(node.children[i]);
+         }
+      }
+
+      List<String> result = new ArrayList<>();
+      for (List<String> words : byDistance) {
+         Collections.sort(words);
+         for (String word : words) {
+            if (result.size() == limit)
+               return result;
+
+            result.add(word);
+         }
+      }
+      return result;
+   }
+
+   private BKTree child(int distance) {
+      for (int i = 0; i < distances.length; i++) {
+         if (distances[i] == distance)
+            return children[i];
+      }
+      return null;
+   }
+
+   static int distance(String a, String b) {
+      int[] previous = new int[b.length() + 1];
+      int[] current = new int[b.length() + 1];
+      for (int j = 0; j <= b.length(); j++)
+         previous[j] = j;
+
+      for (int i = 1; i <= a.length(); i++) {
+         current[0] = i;
+         for (int j = 1; j <= b.length(); j++) {
+            int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+            current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+         }
+
+         int[] swap = previous;
+         previous = current;
+         current = swap;
+      }
+      return previous[b.length()];
+   }
+}
@@ -0,0 +1,965 @@
+package com.github.koettlitz.clom;
+
+import static com.github.koettlitz.clom.InvalidArgTypeException.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.github.koettlitz.clom.CLOM.NoDefault;
+import com.github.koettlitz.clom.TypeAdapter.Default;
+import com.github.koettlitz.opt.ExpectedOption;
+import com.github.koettlitz.util.ReflectionUtils;
+import com.github.koettlitz.util.ReflectionUtils.Primitive;
+
+/**
+ * A member of a target type, that is annotated to represent a command line
+ * argument, option or the varargs. A binding is either a field or a setter
+ * method. It is resolved and validated once, when the {@link ModelPlan} of
+ * the target type is compiled, and values are assigned through a compiled
+ * {@link MethodHandle} afterwards.
+ */
+final class Binding {
+   private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+   private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+   private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+   private static final Object NONE = new Object();
+
+   enum Kind {
+      ARGUMENT, VAR_ARGS, OPTION
+   }
+
+   /** How the occurrences of a repeated option are assigned */
+   enum Collect {
+      /** Only the value of the last occurrence is assigned */
+      LAST,
+      /** All <code>key=value</code> occurrences are assigned as a {@link Map} */
+      MAP,
+      /** The values of all occurrences are assigned as a {@link List} */
+      LIST,
+      /** The values of all occurrences are assigned as an array */
+      ARRAY,
+      /** The number of occurrences of a switch is assigned */
+      COUNT
+   }
+
+   /** The position of this binding in {@link ModelPlan#bindings} */
+   final int index;
+   final Kind kind;
+   final Collect collect;
+   /** The group of an option or <code>null</code> if it is a member of the target type */
+   final Group group;
+   /** The key of an option or {@link ExpectedOption#NO_KEY} for an option of a group */
+   final char key;
+   /** The long key of an option including the prefix of its group */
+   final String longKey;
+   /** The key of an option as declared by its annotation, also for an option of a group */
+   final char declaredKey;
+   /** The long key of an option as declared by its annotation, without the prefix of its group */
+   final String declaredLongKey;
+   final String name;
+   final Class<?> type;
+   private final Class<?> boxedType;
+   /** The type of the single values, i.e. the element type of a collecting option or the type of the member */
+   final Class<?> elementType;
+   /** Whether an option expects a value, <code>false</code> for arguments and varargs */
+   final boolean expectsValue;
+   /** Whether an argument is mandatory, <code>false</code> for options and varargs */
+   final boolean mandatory;
+   /** The index of an argument or <code>-1</code> for options and varargs */
+   final int argumentIndex;
+   /** The name of an argument or <code>null</code> for options and varargs */
+   private final String argumentName;
+   final String description;
+   /** The collection type of the varargs or <code>null</code> for arguments and options */
+   @SuppressWarnings("rawtypes")
+   final Class<? extends Collection> collectionType;
+   /** The constructor of the {@link #collectionType} or <code>null</code> if the varargs are not a collection */
+   private final MethodHandle collectionConstructor;
+   private final Class<?> declaringClass;
+   /** The name of the setter or <code>null</code> if the member is a field */
+   private final String setterName;
+   final Primitive<?> primitive;
+   /** The {@link CLUnits#value()} of human-friendly numbers or <code>null</code> */
+   private final CLUnits.Format unitFormat;
+   /** The {@link CLUnits#timeUnit()} of durations without a unit */
+   private final TimeUnit timeUnit;
+   /** The type of the {@link TypeAdapter} or <code>null</code> */
+   private final Class<? extends TypeAdapter<?>> adapterType;
+   private final MethodHandle adapterConstructor;
+   private final MethodHandle setter;
+   /** The setter taking the primitive type of the member, if its values are parsed without an adapter */
+   private final MethodHandle primitiveSetter;
+   /** The class declaring the field or getter to read the member by or <code>null</code> if it can not be read */
+   private final Class<?> readableClass;
+   /** The name of the field or getter to read the member by */
+   private final String readableName;
+   /** Whether the member is read by a field or by a getter */
+   private final boolean readsField;
+   /** Whether the member is a static field */
+   private final boolean isStatic;
+   /** The handle to read the member by, which is looked up when the member is read for the first time */
+   private volatile MethodHandle getter;
+   /** The converted {@link CLOption#defaultValue()} or {@link #NONE} */
+   private final Object declaredDefault;
+   /** The type of the {@link CLOption#defaultSupplier()} or <code>null</code> */
+   private final Class<? extends Supplier<?>> supplierType;
+   private final MethodHandle defaultSupplier;
+   /** The value of the {@link #defaultSupplier} or {@link #NONE} until it is called */
+   private volatile Object suppliedDefault = NONE;
+
+   private Binding(Context<?> context,
+                   Member member,
+                   String name,
+                   Class<?> type,
+                   Type genericType,
+                   CLArgument arg,
+                   CLVarArgs varArgs,
+                   CLOption opt,
+                   MethodHandle setter,
+                   AccessibleObject readable) throws InvalidTargetTypeException {
+      this.index = context.bindingCount++;
+      this.group = context.currentGroup;
+      this.declaringClass = member.getDeclaringClass();
+      this.setterName = member instanceof Method ? member.getName() : null;
+      this.name = name;
+      this.type = type;
+      this.boxedType = MethodType.methodType(type).wrap().returnType();
+      this.setter = setter.asType(SETTER_TYPE);
+      this.readableClass = readable == null ? null : ((Member) readable).getDeclaringClass();
+      this.readableName = readable == null ? null : ((Member) readable).getName().intern();
+      this.readsField = readable instanceof Field;
+      this.isStatic = Modifier.isStatic(member.getModifiers());
+      CLUnits units = ((AnnotatedElement) member).getDeclaredAnnotation(CLUnits.class);
+      this.unitFormat = units == null ? null : units.value();
+      this.timeUnit = units == null ? null : units.timeUnit();
+
+      if (varArgs != null) {
+         if (arg != null)
+            throw new InvalidArgTypeException(msgVarArgsAndArgs(context));
+         if (opt != null)
+            throw new InvalidArgTypeException(msgVarArgsAndOpt(context));
+
+         kind = Kind.VAR_ARGS;
+      } else if (arg != null) {
+         if (opt != null)
+            throw new InvalidArgTypeException(msgArgAndOpt(context));
+
+         kind = Kind.ARGUMENT;
+      } else {
+         kind = Kind.OPTION;
+      }
+
+      if (group != null && kind != Kind.OPTION) {
+         throw new InvalidTargetTypeException("The " + describe() + " of group " + group.describe()
+                                              + " can not be an argument. Groups can only declare options.");
+      }
+
+      // The values of the annotations are copied, so the annotations are not retained by the plan
+      if (opt == null) {
+         key = declaredKey = ExpectedOption.NO_KEY;
+         longKey = declaredLongKey = "";
+      } else if (group == null) {
+         key = declaredKey = opt.key();
+         longKey = declaredLongKey = opt.longKey().intern();
+      } else {
+         key = ExpectedOption.NO_KEY;
+         declaredKey = opt.key();
+         declaredLongKey = opt.longKey().intern();
+         longKey = (group.prefix + CLOM.get(declaredLongKey, name)).intern();
+      }
+      expectsValue = opt != null && opt.expectsValue();
+      mandatory = arg != null && arg.mandatory();
+      argumentIndex = arg != null ? arg.index() : -1;
+      argumentName = arg != null ? CLOM.get(arg.name(), name).intern() : null;
+      description = (arg != null ? arg.description() : opt != null ? opt.description() : "").intern();
+      collectionType = varArgs != null ? varArgs.collectionType() : null;
+      collectionConstructor = varArgs != null && Collection.class.isAssignableFrom(type)
+                              ? constructor(context, collectionType, "VarArgs collection") : null;
+
+      adapterType = adapterType(arg, varArgs, opt);
+      collect = kind == Kind.OPTION ? collectOf(opt, type, adapterType) : Collect.LAST;
+      elementType = elementType(collect, type, genericType);
+      adapterConstructor = adapterType == null ? null : constructor(context, adapterType, "Value adapter");
+      primitiveSetter = adapterType == null && type.isPrimitive()
+                        ? setter.asType(MethodType.methodType(void.class, Object.class, type)) : null;
+      primitive = adapterType == null && elementType != null && ReflectionUtils.isPrimitive(elementType)
+                  ? Primitive.of(elementType) : null;
+      validate(context, genericType);
+
+      String defaultValue = arg != null ? arg.defaultValue() : opt != null ? opt.defaultValue() : CLOM.NO_DEFAULT;
+      Class<? extends Supplier<?>> supplierType = arg != null ? arg.defaultSupplier()
+                                                  : opt != null ? opt.defaultSupplier() : NoDefault.class;
+      boolean hasDefaultValue = !CLOM.NO_DEFAULT.equals(defaultValue);
+      boolean hasSupplier = supplierType != NoDefault.class;
+      this.supplierType = hasSupplier ? supplierType : null;
+      if (hasDefaultValue || hasSupplier)
+         validateDefault(hasDefaultValue, hasSupplier);
+
+      declaredDefault = hasDefaultValue ? convertDefault(defaultValue) : NONE;
+      defaultSupplier = hasSupplier ? constructor(context, supplierType, "Default supplier") : null;
+   }
+
+   /**
+    * Creates the binding of an annotated field.
+    *
+    * @return the binding or <code>null</code> if the field is not annotated
+    */
+   static Binding of(Context<?> context, Field field) throws InvalidTargetTypeException {
+      CLArgument arg = field.getDeclaredAnnotation(CLArgument.class);
+      CLVarArgs varArgs = field.getDeclaredAnnotation(CLVarArgs.class);
+      CLOption opt = field.getDeclaredAnnotation(CLOption.class);
+      if (arg == null && varArgs == null && opt == null)
+         return null;
+
+      context.currentMember = field;
+      MethodHandle setter;
+      try {
+         makeAccessible(context, field);
+         setter = receiverless(MethodHandles.lookup().unreflectSetter(field), Modifier.isStatic(field.getModifiers()));
+      } catch (IllegalAccessException e) {
+         throw new InvalidTargetTypeException("Could not access field " + field.getName()
+                                              + " of type " + context.targetType.getName(), e);
+      }
+
+      return new Binding(context,
+                         field,
+                         field.getName(),
+                         field.getType(),
+                         field.getGenericType(),
+                         arg,
+                         varArgs,
+                         opt,
+                         setter,
+                         field);
+   }
+
+   /**
+    * Creates the binding of an annotated setter method.
+    *
+    * @return the binding or <code>null</code> if the method is not annotated
+    */
+   static Binding of(Context<?> context, Method method) throws InvalidTargetTypeException {
+      CLArgument arg = method.getDeclaredAnnotation(CLArgument.class);
+      CLOption opt = method.getDeclaredAnnotation(CLOption.class);
+      if (arg == null && opt == null)
+         return null;
+
+      context.currentMember = method;
+      if (method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers())) {
+         String msg = String.format("Annotated method %s of type %s has to be a non static setter with exactly one parameter.",
+                                    method.getName(),
+                                    context.targetType.getName());
+
+         throw new InvalidTargetTypeException(msg);
+      }
+
+      String property = propertyName(method.getName());
+      Class<?> type = method.getParameterTypes()[0];
+      MethodHandle setter;
+      Method getter = findGetter(method.getDeclaringClass(), property, type);
+      try {
+         makeAccessible(context, method);
+         setter = MethodHandles.lookup().unreflect(method);
+         if (getter != null)
+            makeAccessible(context, getter);
+      } catch (IllegalAccessException e) {
+         throw new InvalidTargetTypeException("Could not access method " + method.getName()
+                                              + " of type " + context.targetType.getName(), e);
+      }
+
+      return new Binding(context,
+                         method,
+                         property,
+                         type,
+                         method.getGenericParameterTypes()[0],
+                         arg,
+                         null,
+                         opt,
+                         setter,
+                         getter);
+   }
+
+   /**
+    * Assigns the given value to the bound member of the <code>target</code>.
+    * The object of the group of an option is created, if it does not exist.
+    *
+    * @throws InvalidArgTypeException if the value does not match the type of the member
+    */
+   void set(Object target, Object value) throws InvalidTargetTypeException {
+      Object owner = group == null ? target : group.owner(target);
+      try {
+         setter.invokeExact(owner, value);
+      } catch (RuntimeException e) {
+         if (!accepts(value))
+            throw new InvalidArgTypeException("Could not set value " + value + " to " + describe(), e);
+
+         throw e;
+      } catch (Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidArgTypeException("Could not set value " + value + " to " + describe(), (Exception) e);
+      }
+   }
+
+   /**
+    * Converts the given command line token like {@link #convert(String)} and assigns
+    * it to the bound member of the <code>target</code>. The values of primitive
+    * members without an adapter are parsed and assigned without being boxed.
+    *
+    * @throws IllegalArgumentException if the token can not be converted
+    */
+   void assign(Object target, String value) throws IllegalArgumentException, InvalidTargetTypeException {
+      if (primitiveSetter == null) {
+         set(target, convert(value));
+         return;
+      }
+
+      Object owner = group == null ? target : group.owner(target);
+      try {
+         if (unitFormat != null && type == Integer.TYPE)
+            primitiveSetter.invokeExact(owner, (int) UnitParser.parse(value, unitFormat, timeUnit, true));
+         else if (unitFormat != null)
+            primitiveSetter.invokeExact(owner, UnitParser.parse(value, unitFormat, timeUnit, false));
+         else if (type == Integer.TYPE)
+            primitiveSetter.invokeExact(owner, Integer.parseInt(value));
+         else if (type == Long.TYPE)
+            primitiveSetter.invokeExact(owner, Long.parseLong(value));
+         else if (type == Double.TYPE)
+            primitiveSetter.invokeExact(owner, Double.parseDouble(value));
+         else if (type == Float.TYPE)
+            primitiveSetter.invokeExact(owner, Float.parseFloat(value));
+         else if (type == Short.TYPE)
+            primitiveSetter.invokeExact(owner, Short.parseShort(value));
+         else if (type == Byte.TYPE)
+            primitiveSetter.invokeExact(owner, Byte.parseByte(value));
+         else if (type == Character.TYPE)
+            primitiveSetter.invokeExact(owner, (char) (Character) primitive.parse(value));
+         else
+            primitiveSetter.invokeExact(owner, Boolean.parseBoolean(value));
+      } catch (NumberFormatException e) {
+         // Units report the format themselves, numbers like Primitive#parse(String)
+         if (unitFormat != null)
+            throw e;
+
+         throw new IllegalArgumentException("Could not parse \"" + value + "\" to " + type.getName(), e);
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidArgTypeException("Could not set value " + value + " to " + describe(), (Exception) e);
+      }
+   }
+
+   /**
+    * Assigns the UTF-8 encoded value between <code>begin</code> and <code>end</code>
+    * like {@link #assign(Object, String)}. Decimal numbers of primitive integer
+    * members without units are parsed on the bytes, so they are not decoded.
+    * All other values are decoded first.
+    *
+    * @throws IllegalArgumentException if the value can not be converted
+    */
+   void assign(Object target, ByteBuffer bytes, int begin, int end) throws IllegalArgumentException,
+                                                                         InvalidTargetTypeException {
+      if (primitiveSetter != null && unitFormat == null && assignDecimal(target, bytes, begin, end))
+         return;
+
+      assign(target, ByteTokens.decode(bytes, begin, end));
+   }
+
+   /**
+    * Assigns a decimal number of at most 18 digits (9 for an <code>int</code>),
+    * so it can not overflow while it is parsed.
+    *
+    * @return whether the value is assigned or has to be parsed as a String,
+    * e.g. because it is out of range and the exception of the String parser is thrown
+    */
+   private boolean assignDecimal(Object target, ByteBuffer bytes, int begin, int end) throws InvalidTargetTypeException {
+      boolean isLong = type == Long.TYPE;
+      if (!isLong && type != Integer.TYPE && type != Short.TYPE && type != Byte.TYPE)
+         return false;
+
+      int digits = ByteTokens.decimalDigits(bytes, begin, end);
+      if (digits < 0 || digits > (isLong ? 18 : 9))
+         return false;
+
+      long value = ByteTokens.parseDecimal(bytes, begin, end);
+      Object owner = group == null ? target : group.owner(target);
+      try {
+         if (isLong)
+            primitiveSetter.invokeExact(owner, value);
+         else if (type == Integer.TYPE)
+            primitiveSetter.invokeExact(owner, (int) value);
+         else if (type == Short.TYPE && (short) value == value)
+            primitiveSetter.invokeExact(owner, (short) value);
+         else if (type == Byte.TYPE && (byte) value == value)
+            primitiveSetter.invokeExact(owner, (byte) value);
+         else
+            return false;
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidArgTypeException("Could not set value " + value + " to " + describe(), (Exception) e);
+      }
+      return true;
+   }
+
+   /**
+    * Reads the value of the bound member of the <code>target</code>.
+    * For setters the value is read by the corresponding getter.
+    * The value of an option of a group, whose object does not exist, is <code>null</code>.
+    *
+    * @throws InvalidTargetTypeException if the member is a setter without a getter
+    */
+   Object get(Object target) throws InvalidTargetTypeException {
+      if (readableClass == null)
+         throw new InvalidTargetTypeException("There is no getter to read the value of " + describe());
+
+      Object owner = group == null ? target : group.find(target);
+      if (owner == null)
+         return null;
+
+      try {
+         return (Object) getter().invokeExact(owner);
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidArgTypeException("Could not read the value of " + describe(), (Exception) e);
+      }
+   }
+
+   /**
+    * Provides the handle to read the member by. The field or getter is looked
+    * up on the first read, because only writing args and resetting targets
+    * read members, so most bindings never need it.
+    */
+   private MethodHandle getter() throws InvalidTargetTypeException {
+      MethodHandle getter = this.getter;
+      if (getter == null) {
+         try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            if (readsField) {
+               Field field = readableClass.getDeclaredField(readableName);
+               field.setAccessible(true);
+               getter = receiverless(lookup.unreflectGetter(field), isStatic);
+            } else {
+               Method method = readableClass.getDeclaredMethod(readableName);
+               method.setAccessible(true);
+               getter = lookup.unreflect(method);
+            }
+         } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new InvalidTargetTypeException("Could not access the getter of " + describe(), e);
+         }
+         this.getter = getter = getter.asType(GETTER_TYPE);
+      }
+      return getter;
+   }
+
+   private boolean accepts(Object value) {
+      return value == null ? !type.isPrimitive() : boxedType.isInstance(value);
+   }
+
+   boolean isReadable() {
+      return readableClass != null;
+   }
+
+   /**
+    * Whether the member is a field of the target object, so assigning it
+    * has no effects beyond the target object, unlike a setter or a static field.
+    */
+   boolean isInstanceField() {
+      return readsField && !isStatic;
+   }
+
+   /**
+    * Provides the type the adapter of the member converts values to,
+    * e.g. the type of the elements of varargs.
+    *
+    * @return the type or <code>null</code> if there is no adapter or its type can not be resolved
+    */
+   Class<?> adaptedType() {
+      return adapterType == null ? null : adaptedType(adapterType);
+   }
+
+   boolean hasAdapter() {
+      return adapterType != null;
+   }
+
+   /**
+    * Creates a new instance of the {@link TypeAdapter} of this binding.
+    *
+    * @return the adapter or <code>null</code> if this binding has no adapter
+    */
+   /**
+    * Creates a new collection of the {@link #collectionType} for varargs of a collection type.
+    */
+   @SuppressWarnings("unchecked")
+   Collection<Object> newCollection() throws InvalidTargetTypeException {
+      try {
+         return (Collection<Object>) (Object) collectionConstructor.invokeExact();
+      } catch (Error e) {
+         throw e;
+      } catch (Throwable e) {
+         String msg = String.format("Could not instantiate varArgs collection of type %s at %s.",
+                                    collectionType.getName(),
+                                    describe());
+
+         throw new InvalidTargetTypeException(msg, (Exception) e);
+      }
+   }
+
+   TypeAdapter<?> newAdapter() throws InvalidTargetTypeException {
+      if (adapterType == null)
+         return null;
+
+      try {
+         return (TypeAdapter<?>) (Object) adapterConstructor.invokeExact();
+      } catch (Error e) {
+         throw e;
+      } catch (Throwable e) {
+         String msg = "Could not instantiate value adapter of type " + adapterType.getName() + " for " + describe();
+
+         throw new InvalidTargetTypeException(msg, (Exception) e);
+      }
+   }
+
+   /**
+    * Converts the given command line token to the type of the bound member
+    * by its adapter or, if there is none, as a primitive value.
+    */
+   Object convert(String value) throws IllegalArgumentException, InvalidTargetTypeException {
+      return convert(newAdapter(), value);
+   }
+
+   /**
+    * Converts the given command line token like {@link #convert(String)}
+    * by the given adapter, so it can be reused for many tokens.
+    *
+    * @param adapter the adapter created by {@link #newAdapter()}
+    */
+   private Object convert(TypeAdapter<?> adapter, String value) throws IllegalArgumentException {
+      if (adapter != null)
+         return adapter.parse(value);
+      if (unitFormat == null)
+         return primitive.parse(value);
+
+      if (elementType == Integer.TYPE || elementType == Integer.class)
+         return (int) UnitParser.parse(value, unitFormat, timeUnit, true);
+
+      return UnitParser.parse(value, unitFormat, timeUnit, false);
+   }
+
+   /**
+    * Formats the given value of the bound member into a command line token
+    * by its adapter or, if there is none, by {@link String#valueOf(Object)}.
+    */
+   String format(Object value) throws IllegalArgumentException, InvalidTargetTypeException {
+      return format(newAdapter(), value);
+   }
+
+   @SuppressWarnings("unchecked")
+   private static String format(TypeAdapter<?> adapter, Object value) throws IllegalArgumentException {
+      return adapter != null ? ((TypeAdapter<Object>) adapter).format(value) : String.valueOf(value);
+   }
+
+   /**
+    * Whether these varargs are of type {@link Iterator}, {@link Stream} or
+    * {@link Consumer}, which take their arguments one by one.
+    */
+   boolean consumesLazily() {
+      return kind == Kind.VAR_ARGS && (type == Iterator.class || type == Stream.class || type == Consumer.class);
+   }
+
+   /**
+    * Whether the values of all occurrences of this option are assigned,
+    * see {@link #collect(List)}.
+    */
+   boolean collectsOccurrences() {
+      return collect == Collect.MAP || collect == Collect.LIST || collect == Collect.ARRAY;
+   }
+
+   /**
+    * Converts all occurrences of a repeated option to the value of the bound
+    * member. The values of list and array options are converted by
+    * {@link #convert(String)} in the order of their occurrence. Each occurrence of a map option is split at its first <code>=</code>
+    * into the key and the value, which is converted by {@link #convert(String)}.
+    * An occurrence without <code>=</code> is a key with an empty value.
+    * The map is created large enough for all occurrences. One adapter converts
+    * all occurrences, like the varargs.
+    */
+   Object collect(List<String> occurrences) throws IllegalArgumentException, InvalidTargetTypeException {
+      TypeAdapter<?> adapter = newAdapter();
+      if (collect == Collect.LIST) {
+         List<Object> list = new ArrayList<>(occurrences.size());
+         for (String occurrence : occurrences)
+            list.add(convert(adapter, occurrence));
+         return list;
+      }
+
+      if (collect == Collect.ARRAY) {
+         Object array = Array.newInstance(elementType, occurrences.size());
+         for (int i = 0; i < occurrences.size(); i++)
+            Array.set(array, i, convert(adapter, occurrences.get(i)));
+         return array;
+      }
+
+      Map<String, Object> map = new LinkedHashMap<>(occurrences.size() * 4 / 3 + 1);
+      for (String occurrence : occurrences) {
+         int separator = occurrence.indexOf('=');
+         if (separator < 0)
+            map.put(occurrence, convert(adapter, ""));
+         else
+            map.put(occurrence.substring(0, separator), convert(adapter, occurrence.substring(separator + 1)));
+      }
+      return map;
+   }
+
+   /**
+    * Formats the value of a repeated option into the values of its
+    * occurrences. This is the reverse operation of {@link #collect(List)}.
+    */
+   List<String> occurrences(Object value) throws IllegalArgumentException, InvalidTargetTypeException {
+      TypeAdapter<?> adapter = newAdapter();
+      if (collect == Collect.LIST) {
+         Collection<?> list = (Collection<?>) value;
+         List<String> occurrences = new ArrayList<>(list.size());
+         for (Object element : list)
+            occurrences.add(format(adapter, element));
+         return occurrences;
+      }
+
+      if (collect == Collect.ARRAY) {
+         int length = Array.getLength(value);
+         List<String> occurrences = new ArrayList<>(length);
+         for (int i = 0; i < length; i++)
+            occurrences.add(format(adapter, Array.get(value, i)));
+         return occurrences;
+      }
+
+      Map<?, ?> map = (Map<?, ?>) value;
+      List<String> occurrences = new ArrayList<>(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet())
+         occurrences.add(entry.getKey() + "=" + format(adapter, entry.getValue()));
+
+      return occurrences;
+   }
+
+   /**
+    * The name of the argument, as it is used for the {@link com.github.koettlitz.opt.ArgumentParser}
+    */
+   String argumentName() {
+      return argumentName;
+   }
+
+   /**
+    * The name of the option, as it is given on the command line, like <code>-k</code>
+    * or <code>--long-key</code> if it has no key.
+    */
+   String optionName() {
+      return key != ExpectedOption.NO_KEY ? "-" + key : "--" + longKey;
+   }
+
+   String describe() {
+      String memberType = setterName != null ? "setter " + setterName : "field " + name;
+      return memberType + " of type " + declaringClass.getName();
+   }
+
+   private static Class<? extends TypeAdapter<?>> adapterType(CLArgument arg, CLVarArgs varArgs, CLOption opt) {
+      Class<? extends TypeAdapter<?>> adapterType;
+      if (varArgs != null)
+         adapterType = varArgs.adapter();
+      else if (arg != null)
+         adapterType = arg.adapter();
+      else
+         adapterType = opt.adapter();
+
+      return adapterType == Default.class ? null : adapterType;
+   }
+
+   private void validate(Context<?> context, Type genericType) throws InvalidTargetTypeException {
+      if (unitFormat != null && !acceptsUnits()) {
+         String msg = "The " + describe() + " annotated with CLUnits has to be of type int or long, "
+                      + "expect a value and can not have a TypeAdapter.";
+
+         throw new InvalidArgTypeException(msg);
+      }
+
+      if (kind == Kind.VAR_ARGS) {
+         if (!Collection.class.isAssignableFrom(type)
+             && type != Iterator.class
+             && type != Stream.class
+             && type != Consumer.class) {
+            String msg = String.format("VarArgs field %s of type %s has to be a collection, Iterator, Stream or Consumer.",
+                                       name,
+                                       context.targetType.getName());
+
+            throw new InvalidTargetTypeException(msg);
+         }
+      } else if (kind == Kind.OPTION && !expectsValue) {
+         if (!type.equals(Boolean.TYPE) && !type.equals(Boolean.class) && collect != Collect.COUNT) {
+            String msg = "Option " + describe()
+                         + " has to be of type boolean or int or must expect a value.";
+
+            throw new InvalidArgTypeException(msg);
+         }
+      } else if (collectsOccurrences() && !validCollection(genericType)) {
+         String msg = "Repeatable option " + describe() + " has to be a List assignable from ArrayList, "
+                      + "an array or a Map assignable from LinkedHashMap with String keys. "
+                      + "Its elements have to be of a primitive type, String or the type of its TypeAdapter.";
+
+         throw new InvalidArgTypeException(msg);
+      } else if (adapterType == null && primitive == null) {
+         String msg = "Could not map the command line argument/option to the " + describe()
+                      + ", because it is not of a primitive type nor String and "
+                      + "no TypeAdapter was provided.";
+
+         throw new InvalidTargetTypeException(msg);
+      }
+   }
+
+   private boolean acceptsUnits() {
+      if (kind == Kind.VAR_ARGS || adapterType != null || kind == Kind.OPTION && !expectsValue)
+         return false;
+
+      return elementType == Integer.TYPE || elementType == Integer.class
+             || elementType == Long.TYPE || elementType == Long.class;
+   }
+
+   /**
+    * Provides the handle of the constructor without parameters of the given type,
+    * so the binding neither retains the reflected constructor nor calls it reflectively.
+    */
+   private static MethodHandle constructor(Context<?> context,
+                                           Class<?> type,
+                                           String role) throws InvalidTargetTypeException {
+      try {
+         Constructor<?> constructor = type.getDeclaredConstructor();
+         makeAccessible(context, constructor);
+         return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+      } catch (NoSuchMethodException e) {
+         String msg = role + " of type " + type.getName()
+                      + " has no constructor without parameters, but is used at "
+                      + context.currentMember.getName() + " of type " + context.targetType.getName();
+
+         throw new InvalidTargetTypeException(msg, e);
+      } catch (IllegalAccessException e) {
+         String msg = role + " of type " + type.getName() + " can not be instantiated, but is used at "
+                      + context.currentMember.getName() + " of type " + context.targetType.getName();
+
+         throw new InvalidTargetTypeException(msg, e);
+      }
+   }
+
+   private boolean validCollection(Type genericType) {
+      if (adapterType == null && primitive == null)
+         return false;
+      if (collect == Collect.LIST)
+         return type.isAssignableFrom(ArrayList.class);
+      if (collect == Collect.ARRAY)
+         return true;
+
+      Type keyType = typeArgument(genericType, 0);
+      return type.isAssignableFrom(LinkedHashMap.class) && (keyType == String.class || keyType == Object.class);
+   }
+
+   /**
+    * Determines how the occurrences of an option are assigned to a member of
+    * the given type. Options of a collection, array or map type collect their
+    * occurrences, unless their adapter already converts a value to the type
+    * of the member. Switches of type int count their occurrences.
+    */
+   private static Collect collectOf(CLOption opt, Class<?> type, Class<? extends TypeAdapter<?>> adapterType) {
+      if (!opt.expectsValue())
+         return type == Integer.TYPE || type == Integer.class ? Collect.COUNT : Collect.LAST;
+
+      if (adapterType != null) {
+         // An adapter of an unknown type is assumed to convert the whole value
+         Class<?> adapted = adaptedType(adapterType);
+         if (adapted == null || type.isAssignableFrom(adapted))
+            return Collect.LAST;
+      }
+
+      if (type.isArray())
+         return Collect.ARRAY;
+      if (Collection.class.isAssignableFrom(type))
+         return Collect.LIST;
+      if (Map.class.isAssignableFrom(type))
+         return Collect.MAP;
+
+      return Collect.LAST;
+   }
+
+   private static Class<?> elementType(Collect collect, Class<?> type, Type genericType) {
+      switch (collect) {
+         case MAP:
+            return typeArgument(genericType, 1);
+         case LIST:
+            return typeArgument(genericType, 0);
+         case ARRAY:
+            return type.getComponentType();
+         default:
+            return type;
+      }
+   }
+
+   /**
+    * Provides the type the given adapter converts values to.
+    *
+    * @return the type or <code>null</code> if it can not be resolved
+    */
+   private static Class<?> adaptedType(Class<?> adapterType) {
+      for (Class<?> c = adapterType; c != null; c = c.getSuperclass()) {
+         for (Type i : c.getGenericInterfaces()) {
+            if (i instanceof ParameterizedType && ((ParameterizedType) i).getRawType() == TypeAdapter.class) {
+               Type adapted = ((ParameterizedType) i).getActualTypeArguments()[0];
+               if (adapted instanceof ParameterizedType)
+                  adapted = ((ParameterizedType) adapted).getRawType();
+
+               return adapted instanceof Class ? (Class<?>) adapted : null;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Provides the type argument at the given position of a parameterized type.
+    *
+    * @return the type argument, {@link Object} for a raw type or <code>null</code>
+    * if the type argument is no class, e.g. a wildcard
+    */
+   private static Class<?> typeArgument(Type type, int position) {
+      if (!(type instanceof ParameterizedType))
+         return Object.class;
+
+      Type argument = ((ParameterizedType) type).getActualTypeArguments()[position];
+      return argument instanceof Class ? (Class<?>) argument : null;
+   }
+
+   private void validateDefault(boolean hasDefaultValue, boolean hasSupplier) throws InvalidTargetTypeException {
+      String msg = null;
+      if (hasDefaultValue && hasSupplier)
+         msg = "The " + describe() + " declares both a defaultValue and a defaultSupplier.";
+      else if (hasDefaultValue && collectsOccurrences())
+         msg = "The repeatable option " + describe() + " can only declare a defaultSupplier.";
+      else if (kind == Kind.OPTION && !expectsValue)
+         msg = "The option " + describe() + " is a switch, that can not declare a default value.";
+      else if (kind == Kind.ARGUMENT && mandatory)
+         msg = "The mandatory argument " + describe() + " can not declare a default value.";
+
+      if (msg != null)
+         throw new InvalidTargetTypeException(msg);
+   }
+
+   private Object convertDefault(String defaultValue) throws InvalidTargetTypeException {
+      try {
+         return convert(defaultValue);
+      } catch (IllegalArgumentException e) {
+         String msg = "The default value \"" + defaultValue + "\" of " + describe()
+                      + " can not be converted: " + e.getMessage();
+
+         throw new InvalidTargetTypeException(msg, e);
+      }
+   }
+
+   boolean hasDefault() {
+      return declaredDefault != NONE || supplierType != null;
+   }
+
+   /**
+    * Provides the value to be assigned if the argument or option is absent.
+    * A default supplier is called only once.
+    */
+   Object defaultValue() throws InvalidTargetTypeException {
+      if (declaredDefault != NONE)
+         return declaredDefault;
+
+      Object value = suppliedDefault;
+      if (value == NONE) {
+         synchronized (this) {
+            value = suppliedDefault;
+            if (value == NONE) {
+               Supplier<?> supplier;
+               try {
+                  supplier = (Supplier<?>) (Object) defaultSupplier.invokeExact();
+               } catch (Error e) {
+                  throw e;
+               } catch (Throwable e) {
+                  String msg = "Could not instantiate default supplier of type "
+                               + supplierType.getName() + " for " + describe();
+
+                  throw new InvalidTargetTypeException(msg, (Exception) e);
+               }
+               value = supplier.get();
+               suppliedDefault = value;
+            }
+         }
+      }
+      return value;
+   }
+
+   private static void makeAccessible(Context<?> context, AccessibleObject member) throws InvalidTargetTypeException {
+      try {
+         member.setAccessible(true);
+      } catch (RuntimeException e) {
+         // SecurityException or, since Java 9, InaccessibleObjectException
+         throw new InvalidTargetTypeException("Could not make " + member + " of type "
+                                              + context.targetType.getName() + " accessible.", e);
+      }
+   }
+
+   private static MethodHandle receiverless(MethodHandle handle, boolean isStatic) {
+      return isStatic ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+   }
+
+   private static Method findGetter(Class<?> targetType, String property, Class<?> type) {
+      String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+      Method getter = null;
+      if (type == Boolean.TYPE || type == Boolean.class)
+         getter = ReflectionUtils.findMethod(targetType, "is" + capitalized);
+      if (getter == null)
+         getter = ReflectionUtils.findMethod(targetType, "get" + capitalized);
+
+      if (getter == null || Modifier.isStatic(getter.getModifiers()) || !type.isAssignableFrom(getter.getReturnType()))
+         return null;
+
+      return getter;
+   }
+
+   /**
+    * Derives the property name of a setter by the bean convention,
+    * e.g. <code>setFoo</code> results in <code>foo</code> and
+    * <code>setURL</code> in <code>URL</code>. Methods not following the
+    * convention are named as they are.
+    */
+   static String propertyName(String methodName) {
+      if (methodName.length() < 4 || !methodName.startsWith("set") || !Character.isUpperCase(methodName.charAt(3)))
+         return methodName;
+
+      String property = methodName.substring(3);
+      if (property.length() > 1 && Character.isUpperCase(property.charAt(1)))
+         return property;
+
+      return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+   }
+}
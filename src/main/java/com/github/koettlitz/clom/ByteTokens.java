@@ -0,0 +1,166 @@
+package com.github.koettlitz.clom;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The tokens of command line arguments given as UTF-8 encoded bytes in a
+ * {@link TokenLayout}. The tokens are read between the position and the limit
+ * of the buffer by absolute indices, so the buffer is not modified.
+ * Each token is given by its bounds {@link #begin} and {@link #end} in the buffer,
+ * so ASCII keys and numbers can be matched on the bytes. A token is only decoded
+ * into a String when it is requested by {@link #decode(int, int)} or {@link #next()}.
+ * Malformed UTF-8 is decoded into replacement characters.
+ */
+final class ByteTokens implements Iterator<String> {
+   private static final int LENGTH_BYTES = 4;
+
+   private ByteBuffer buffer;
+   private TokenLayout layout;
+   private int position;
+   private int limit;
+   /** The index of the first byte of the current token */
+   int begin;
+   /** The index after the last byte of the current token */
+   int end;
+
+   void reset(ByteBuffer buffer, TokenLayout layout) {
+      this.buffer = buffer;
+      this.layout = layout;
+      this.position = buffer == null ? 0 : buffer.position();
+      this.limit = buffer == null ? 0 : buffer.limit();
+   }
+
+   ByteBuffer buffer() {
+      return buffer;
+   }
+
+   /**
+    * Moves to the next token.
+    *
+    * @return whether there is a next token
+    *
+    * @throws IllegalArgumentException if the length of a {@link TokenLayout#LENGTH_PREFIXED}
+    * token exceeds the buffer
+    */
+   boolean advance() throws IllegalArgumentException {
+      if (position >= limit)
+         return false;
+
+      if (layout == TokenLayout.NUL_DELIMITED) {
+         int i = position;
+         while (i < limit && buffer.get(i) != 0)
+            i++;
+
+         begin = position;
+         end = i;
+         position = i < limit ? i + 1 : i;
+         return true;
+      }
+
+      int length = limit - position < LENGTH_BYTES ? -1 : buffer.getInt(position);
+      if (length < 0 || length > limit - position - LENGTH_BYTES)
+         throw new IllegalArgumentException("The length of the token at byte " + position + " exceeds the args.");
+
+      begin = position + LENGTH_BYTES;
+      end = begin + length;
+      position = end;
+      return true;
+   }
+
+   byte byteAt(int index) {
+      return buffer.get(index);
+   }
+
+   /**
+    * @return the index of the given ASCII character between <code>from</code>
+    * and <code>to</code> or <code>-1</code> if it is not found
+    */
+   int indexOf(char c, int from, int to) {
+      for (int i = from; i < to; i++) {
+         if (buffer.get(i) == c)
+            return i;
+      }
+      return -1;
+   }
+
+   String decode(int begin, int end) {
+      return decode(buffer, begin, end);
+   }
+
+   @Override
+   public boolean hasNext() {
+      return position < limit;
+   }
+
+   /**
+    * Moves to the next token and decodes it.
+    */
+   @Override
+   public String next() {
+      if (!advance())
+         throw new NoSuchElementException();
+
+      return decode(begin, end);
+   }
+
+   static String decode(ByteBuffer buffer, int begin, int end) {
+      if (buffer.hasArray())
+         return new String(buffer.array(), buffer.arrayOffset() + begin, end - begin, StandardCharsets.UTF_8);
+
+      byte[] bytes = new byte[end - begin];
+      for (int i = 0; i < bytes.length; i++)
+         bytes[i] = buffer.get(begin + i);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Whether the bytes between <code>begin</code> and <code>end</code> are
+    * the given String, which is only the case for ASCII characters.
+    */
+   static boolean equalsAscii(ByteBuffer buffer, int begin, int end, String string) {
+      if (string.length() != end - begin)
+         return false;
+
+      for (int i = 0; i < string.length(); i++) {
+         if (string.charAt(i) != buffer.get(begin + i))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Counts the digits of a decimal number consisting of an optional sign
+    * followed by ASCII digits only.
+    *
+    * @return the number of digits or <code>-1</code> if the bytes are no such number
+    */
+   static int decimalDigits(ByteBuffer buffer, int begin, int end) {
+      int i = begin < end && (buffer.get(begin) == '-' || buffer.get(begin) == '+') ? begin + 1 : begin;
+      if (i == end)
+         return -1;
+
+      for (int j = i; j < end; j++) {
+         byte b = buffer.get(j);
+         if (b < '0' || b > '9')
+            return -1;
+      }
+      return end - i;
+   }
+
+   /**
+    * Parses a decimal number, whose format and number of digits are checked
+    * by {@link #decimalDigits(ByteBuffer, int, int)}, so it can not overflow.
+    */
+   static long parseDecimal(ByteBuffer buffer, int begin, int end) {
+      boolean negative = buffer.get(begin) == '-';
+      int i = negative || buffer.get(begin) == '+' ? begin + 1 : begin;
+      long value = 0;
+      for (; i < end; i++)
+         value = value * 10 + buffer.get(i) - '0';
+
+      return negative ? -value : value;
+   }
+}
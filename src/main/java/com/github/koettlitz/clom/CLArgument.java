@@ -1,10 +1,12 @@
 package com.github.koettlitz.clom;
 
 import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.function.Supplier;
 
 import com.github.koettlitz.clom.TypeAdapter.Default;
 import com.github.koettlitz.opt.ArgumentParser;
@@ -13,7 +15,11 @@ import com.github.koettlitz.opt.ArgumentParser;
  * Annotation for declaring a field to represent a
  * plain command line argument.
  * The value of the command line argument can be set to the
- * annotated field by {@link CLOM}
+ * annotated field by {@link CLOM}.
+ * Alternatively a setter method with exactly one parameter can be annotated.
+ * Then the value is passed to the setter and the default {@link #name()}
+ * is derived from the setter by the bean convention, e.g. <code>setInput</code>
+ * results in <code>input</code>.
  *
  * @see CLOption
  *
@@ -21,7 +27,7 @@ import com.github.koettlitz.opt.ArgumentParser;
  * <br>Erstellt am 09.11.2018
  */
 @Retention(RUNTIME)
-@Target(FIELD)
+@Target({FIELD, METHOD})
 public @interface CLArgument {
    /**
     * Provide the index of the argument.
@@ -76,4 +82,27 @@ public @interface CLArgument {
     * to a value of the right type
     */
    Class<? extends TypeAdapter<?>> adapter() default Default.class;
+
+   /**
+    * Provides the value of this command line argument, if it is absent.
+    * The value is converted by the {@link #adapter()} or as a primitive
+    * value once when the target type is analyzed, so an invalid default
+    * value is reported by an {@link InvalidTargetTypeException} up front.
+    * Only optional arguments (see {@link #mandatory()}) can declare a default value.
+    * By default no value is assigned and the initial value of the member is kept.
+    *
+    * @return the default value as it would be given on the command line
+    */
+   String defaultValue() default CLOM.NO_DEFAULT;
+
+   /**
+    * Provides a supplier of the value of this command line argument, if it is
+    * absent, e.g. for default values, that are expensive to create. The supplier
+    * is instantiated by its constructor without parameters and called only
+    * once, when the value is needed for the first time. The value is shared
+    * by all parsed objects. It can not be combined with {@link #defaultValue()}.
+    *
+    * @return the type of the supplier of the default value
+    */
+   Class<? extends Supplier<?>> defaultSupplier() default CLOM.NoDefault.class;
 }
@@ -0,0 +1,46 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Declares options of the annotated type, of which at least one has to be given.
+ * If none of them is given, an {@link OptionConstraintException} is thrown
+ * while parsing. The options are referenced by their keys or long keys,
+ * as they are declared in the annotated type. If the annotated type is a
+ * {@link CLGroup}, the constraint is only checked if the group is given.
+ *
+ * @see CLExclusive
+ * @see CLRequires
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+@Repeatable(CLAtLeastOne.List.class)
+public @interface CLAtLeastOne {
+   /**
+    * The keys of the options, of which at least one is required.
+    *
+    * @return the keys of the options
+    */
+   char[] value() default {};
+
+   /**
+    * The long keys of further options, of which at least one is required.
+    *
+    * @return the long keys of the options
+    */
+   String[] longKeys() default {};
+
+   /**
+    * Holds several {@link CLAtLeastOne} constraints of the same type.
+    */
+   @Retention(RUNTIME)
+   @Target(TYPE)
+   @interface List {
+      CLAtLeastOne[] value();
+   }
+}
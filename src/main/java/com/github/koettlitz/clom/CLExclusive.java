@@ -0,0 +1,56 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Declares options of the annotated type, that are mutually exclusive.
+ * If more than one of them is given, an {@link OptionConstraintException}
+ * is thrown while parsing. The options are referenced by their keys or long keys,
+ * as they are declared in the annotated type. If the annotated type is a
+ * {@link CLGroup}, the constraint is only checked if the group is given.
+ * <pre>
+ * &#64;CLExclusive({'q', 'v'})
+ * public class MyArgModel {
+ *    &#64;CLOption(key='q', longKey="quiet")
+ *    private boolean quiet;
+ *
+ *    &#64;CLOption(key='v', longKey="verbose")
+ *    private boolean verbose;
+ * }
+ * </pre>
+ *
+ * @see CLRequires
+ * @see CLAtLeastOne
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+@Repeatable(CLExclusive.List.class)
+public @interface CLExclusive {
+   /**
+    * The keys of the mutually exclusive options.
+    *
+    * @return the keys of the options
+    */
+   char[] value() default {};
+
+   /**
+    * The long keys of further mutually exclusive options.
+    *
+    * @return the long keys of the options
+    */
+   String[] longKeys() default {};
+
+   /**
+    * Holds several {@link CLExclusive} constraints of the same type.
+    */
+   @Retention(RUNTIME)
+   @Target(TYPE)
+   @interface List {
+      CLExclusive[] value();
+   }
+}
@@ -0,0 +1,49 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a field, whose type declares a group of further options.
+ * The options of the group are provided by their long keys preceded by
+ * the {@link #prefix()}, e.g. <code>--db.host</code> for an option with the long key
+ * <code>host</code> in a group with the prefix <code>db.</code>. Their short keys
+ * are ignored to avoid conflicts between the groups. Groups can be nested,
+ * then the prefixes are concatenated.<br>
+ * The options of all groups are resolved together with the ones of the
+ * target type, when it is analyzed for the first time. The object of a
+ * group is only created, if one of its options is given. Otherwise the field
+ * keeps its initial value. The type of the group has to provide a constructor
+ * without parameters and can not declare arguments or varargs.
+ * <pre>
+ * public class Server {
+ *    &#64;CLGroup(prefix="db.")
+ *    private Database database;
+ * }
+ *
+ * public class Database {
+ *    &#64;CLOption(key='h', longKey="host", expectsValue=true)
+ *    private String host;
+ *
+ *    &#64;CLOption(key='p', longKey="pool-size", expectsValue=true)
+ *    private int poolSize = 4;
+ * }
+ * </pre>
+ *
+ * @see CLOption
+ */
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface CLGroup {
+   /**
+    * The prefix of the long keys of the options of the group,
+    * e.g. <code>db.</code> for <code>--db.host</code>. If no prefix is
+    * provided the name of the field followed by a dot is used.
+    *
+    * @return the prefix of the long keys of the group
+    */
+   String prefix() default "";
+}
@@ -0,0 +1,36 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates the method of a target type, that handles a parsed command.
+ * A {@link CLOMDispatcher} parses the arguments of a command into a new
+ * instance of the target type and calls this method on it. The method has
+ * to be a non static method without parameters. Its return value, if any,
+ * is the result of the dispatched command. A target type can only declare
+ * one handler.
+ * <pre>
+ * public class Copy {
+ *    &#64;CLArgument(index=0, mandatory=true)
+ *    private String source;
+ *
+ *    &#64;CLArgument(index=1, mandatory=true)
+ *    private String target;
+ *
+ *    &#64;CLHandler
+ *    public long run() throws IOException {
+ *       return Files.copy(Paths.get(source), new FileOutputStream(target));
+ *    }
+ * }
+ * </pre>
+ *
+ * @see CLOMDispatcher
+ */
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface CLHandler {
+}
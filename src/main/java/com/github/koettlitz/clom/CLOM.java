@@ -1,17 +1,29 @@
 package com.github.koettlitz.clom;
 
-import static com.github.koettlitz.clom.InvalidArgTypeException.*;
-
-import java.lang.reflect.Field;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.github.koettlitz.clom.TypeAdapter.Default;
 import com.github.koettlitz.opt.ArgumentParser;
 import com.github.koettlitz.opt.ArgumentParserBuilder;
 import com.github.koettlitz.opt.ex.ArgumentParseException;
-import com.github.koettlitz.util.ReflectionUtils;
-import com.github.koettlitz.util.UnsafeConsumer;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+import com.github.koettlitz.util.PeekableIterator;
 
 /**
  * This class parses a custom object from provided command line arguments.
@@ -21,12 +33,15 @@ import com.github.koettlitz.util.UnsafeConsumer;
  * This can either be done by directly calling the {@link #parse(Class, String...)}
  * method directly or by creating a new <code>CLOM</code> instance and
  * calling the {@link #parse(String...)} method on it.<br>
- * If you parse the arguments over an instance of <code>CLOM</code>
- * you can modify the {@link ArgumentParser}, that the <code>CLOM</code>
- * instance uses by calling the {@link #getParser()} method before actually
- * parsing the arguments. Additionally it allows you to print a generated
- * help message by using the parsers {@link ArgumentParser#printUsage(java.io.PrintStream)}
- * method. Some code example right here:<br>
+ * The arguments are scanned by the options and arguments declared by the
+ * annotations of the target type. If you parse the arguments over an instance
+ * of <code>CLOM</code> you can change the settings of the {@link ArgumentParser}
+ * provided by {@link #getParser()} before actually parsing the arguments,
+ * i.e. its help arguments and whether unknown arguments are ignored.
+ * Only {@link #parse(Class, ArgumentParserBuilder, String...)} parses by the
+ * parser built from the given builder, so options a caller adds to it are accepted.
+ * Additionally it allows you to print a generated help message by using the parsers
+ * {@link ArgumentParser#printUsage(java.io.PrintStream)} method. Some code example right here:<br>
  * <pre>
  * CLOM&lt;MyArgModel&gt; clom = new CLOM&lt;&gt;(MyArgModel.class);
  * ArgumentParser parser = clom.getParser();
@@ -53,10 +68,38 @@ import com.github.koettlitz.util.UnsafeConsumer;
  * <br>Erstellt am 09.11.2018
  */
 public class CLOM<T> {
+   /**
+    * Indicates the absence of a {@link CLArgument#defaultValue()} or
+    * {@link CLOption#defaultValue()}.
+    */
+   public static final String NO_DEFAULT = "\u0000<no default>\u0000";
+
+   /** The default of {@link #setParallelVarArgsThreshold(int)} */
+   public static final int DEFAULT_PARALLEL_VARARGS_THRESHOLD = 10_000;
+
    private static boolean printUsageOnHelp = true;
+   private static volatile int parallelVarArgsThreshold = DEFAULT_PARALLEL_VARARGS_THRESHOLD;
 
-   private final ArgumentParser parser;
-   private final Context<T> context;
+   private final ModelPlan<T> plan;
+   /** The parser exposed by {@link #getParser()}, which is built when it is requested for the first time */
+   private volatile ArgumentParser parser;
+   /** The cache of {@link #parse(String...)} or <code>null</code> if it is not enabled */
+   private volatile ResultCache<T> resultCache;
+
+   /**
+    * Holder type to indicate the absence of a {@link CLArgument#defaultSupplier()}
+    * or {@link CLOption#defaultSupplier()}.
+    */
+   public static final class NoDefault implements Supplier<Object> {
+      private NoDefault() {
+
+      }
+
+      @Override
+      public Object get() {
+         throw new UnsupportedOperationException("NoDefault is just a holder type to indicate the absence of a default supplier.");
+      }
+   }
 
    /**
     * Flag that controls the behaviour of this class to react to
@@ -92,6 +135,32 @@ public class CLOM<T> {
       CLOM.printUsageOnHelp = printUsageOnHelp;
    }
 
+   /**
+    * Provides the number of plain arguments, from which on the elements of
+    * a {@link CLVarArgs} collection are converted in parallel.
+    *
+    * @return the threshold of parallel conversion
+    */
+   public static int getParallelVarArgsThreshold() {
+      return parallelVarArgsThreshold;
+   }
+
+   /**
+    * Sets the number of plain arguments, from which on the elements of a
+    * {@link CLVarArgs} collection are converted in parallel chunks on the common
+    * {@link ForkJoinPool}. Each chunk creates an adapter of its own. The elements
+    * keep their order and the failure of the first invalid element is reported,
+    * as with sequential conversion. Varargs of type {@link Iterator},
+    * {@link Stream} or {@link Consumer} are always converted one after another.
+    * This affects all <code>CLOM</code> instances.
+    *
+    * @param threshold the number of arguments, from which on they are converted
+    * in parallel, e.g. {@link Integer#MAX_VALUE} to never convert them in parallel
+    */
+   public static void setParallelVarArgsThreshold(int threshold) {
+      CLOM.parallelVarArgsThreshold = threshold;
+   }
+
    /**
     * Creates a new command line object mapper, which parses instances of
     * the given target type from the command line.
@@ -103,8 +172,7 @@ public class CLOM<T> {
     * annotated
     */
    public CLOM(Class<T> targetType) throws InvalidTargetTypeException {
-      this.context = new Context<>(targetType, new ArgumentParserBuilder());
-      this.parser = buildParser(context);
+      this.plan = ModelPlan.of(targetType);
    }
 
    /**
@@ -134,7 +202,8 @@ public class CLOM<T> {
                                                     InvalidTargetTypeException,
                                                     IllegalArgumentException {
 
-      return parse(targetType, new ArgumentParserBuilder(), args);
+      ModelPlan<T> plan = ModelPlan.of(targetType);
+      return parse(plan, null, args);
    }
 
    /**
@@ -143,7 +212,12 @@ public class CLOM<T> {
     * a request for help like e.g. <code>--help</code> AND
     * {@link #setPrintUsageOnHelp(boolean)} is set to <code>true</code>
     * (which is the default state) a generated help message will be printed
-    * to standardout and <code>null</code> will be returned.
+    * to standardout and <code>null</code> will be returned.<br>
+    * The arguments are parsed by the {@link ArgumentParser} built from the <code>builder</code>,
+    * to which the options and arguments of <code>targetType</code> are added. Options and
+    * arguments the caller added to the <code>builder</code> are accepted, but not bound.
+    * That parser does not accept repeated options nor values attached to the key of
+    * a map option like <code>-Dkey=value</code>.
     *
     * @param targetType The type of the object to be parsed from the
     * command line. The fields of <code>targetType</code> should be annotated.
@@ -167,265 +241,616 @@ public class CLOM<T> {
                                                     InvalidTargetTypeException,
                                                     IllegalArgumentException {
 
-      Context<T> context = new Context<>(targetType, builder);
-      ArgumentParser parser = buildParser(context);
-      if (printUsageOnHelp && parser.isHelp(args)) {
-         parser.printUsage(System.out);
+      ModelPlan<T> plan = ModelPlan.of(targetType);
+      return parse(plan, plan.buildParser(builder), args);
+   }
+
+   /**
+    * @param parser the parser built from a caller's builder, that parses the arguments,
+    * or <code>null</code> to scan them by the plan with the default settings
+    */
+   private static <T> T parse(ModelPlan<T> plan,
+                              ArgumentParser parser,
+                              String... args) throws ArgumentParseException,
+                                                     InvalidTargetTypeException,
+                                                     IllegalArgumentException {
+      ArgumentParser settings = parser != null ? parser : ModelPlan.DEFAULT_SETTINGS;
+      if (printUsageOnHelp && isHelp(settings, args)) {
+         (parser != null ? parser : plan.defaultParser()).printUsage(System.out);
          return null;
       }
 
-      return parse(parser, context, args);
+      if (parser == null)
+         return bind(plan, parseArguments(plan, settings, args));
+
+      try {
+         return bind(plan, ParsedArgs.of(plan, parser.parseArguments(args)));
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
+      }
    }
 
-   private static <T> T parse(ArgumentParser parser,
-                              Context<T> context,
-                              String... args) throws ArgumentParseException,
-                                                     IllegalArgumentException {
+   /**
+    * Parses the arguments provided by the given iterator into an instance
+    * of <code>targetType</code>. The arguments are consumed one by one while
+    * parsing, so they do not have to be present in an array up front. This allows
+    * e.g. expanding argument files on the fly with an {@link ArgFileExpander}.
+    * The arguments following <code>--</code> are only read while varargs of type
+    * {@link Iterator}, {@link Stream} or {@link Consumer} consume them, see {@link CLVarArgs}.
+    * If the first argument indicates a request for help like e.g. <code>--help</code> AND
+    * {@link #setPrintUsageOnHelp(boolean)} is set to <code>true</code>
+    * (which is the default state) a generated help message will be printed
+    * to standardout and <code>null</code> will be returned.
+    *
+    * @param targetType The type of the object to be parsed from the
+    * command line. The fields of <code>targetType</code> should be annotated.
+    * @param args an iterator over the command line arguments
+    * @param <T> the generic type of the object containing the parsed arguments
+    *
+    * @return An instance of <code>targetType</code> that contains the
+    * values provided by the <code>args</code>
+    *
+    * @throws ArgumentParseException if the given <code>args</code> do not
+    * match the format of <code>targetType</code>
+    * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
+    * invalidly annotated
+    * @throws UncheckedIOException if the <code>args</code> are read from
+    * a source, that fails, e.g. an unreadable argument file
+    */
+   public static <T> T parse(Class<T> targetType,
+                             PeekableIterator<String> args) throws ArgumentParseException,
+                                                                  InvalidTargetTypeException,
+                                                                  UncheckedIOException {
+
+      ModelPlan<T> plan = ModelPlan.of(targetType);
+      return parse(plan, null, args);
+   }
+
+   /**
+    * Parses the arguments provided by the given iterator into an instance
+    * of <code>targetType</code>. The arguments are consumed one by one while
+    * parsing, so they do not have to be present in an array up front.
+    * If the first argument indicates a request for help like e.g. <code>--help</code> AND
+    * {@link #setPrintUsageOnHelp(boolean)} is set to <code>true</code>
+    * (which is the default state) a generated help message will be printed
+    * to standardout and <code>null</code> will be returned.<br>
+    * The arguments are parsed by the {@link ArgumentParser} built from the <code>builder</code>,
+    * to which the options and arguments of <code>targetType</code> are added. Options and
+    * arguments the caller added to the <code>builder</code> are accepted, but not bound.
+    * That parser does not accept repeated options nor values attached to the key of
+    * a map option like <code>-Dkey=value</code>.
+    *
+    * @param targetType The type of the object to be parsed from the
+    * command line. The fields of <code>targetType</code> should be annotated.
+    * @param builder the builder to build the {@link ArgumentParser} with,
+    * that is used to parse the arguments
+    * @param args an iterator over the command line arguments
+    * @param <T> the generic type of the object containing the parsed arguments
+    *
+    * @return An instance of <code>targetType</code> that contains the
+    * values provided by the <code>args</code>
+    *
+    * @throws ArgumentParseException if the given <code>args</code> do not
+    * match the format of <code>targetType</code>
+    * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
+    * invalidly annotated
+    * @throws UncheckedIOException if the <code>args</code> are read from
+    * a source, that fails, e.g. an unreadable argument file
+    */
+   public static <T> T parse(Class<T> targetType,
+                             ArgumentParserBuilder builder,
+                             PeekableIterator<String> args) throws ArgumentParseException,
+                                                                  InvalidTargetTypeException,
+                                                                  UncheckedIOException {
 
-      context.argModel = parser.parseArguments(args);
+      ModelPlan<T> plan = ModelPlan.of(targetType);
+      return parse(plan, plan.buildParser(builder), args);
+   }
+
+   /**
+    * @param parser the parser built from a caller's builder, that parses the arguments,
+    * or <code>null</code> to scan them by the plan with the default settings
+    */
+   private static <T> T parse(ModelPlan<T> plan,
+                              ArgumentParser parser,
+                              PeekableIterator<String> args) throws ArgumentParseException,
+                                                                   InvalidTargetTypeException,
+                                                                   UncheckedIOException {
+      ArgumentParser settings = parser != null ? parser : ModelPlan.DEFAULT_SETTINGS;
+      if (printUsageOnHelp && args.hasNext() && settings.isHelp(args.peek())) {
+         (parser != null ? parser : plan.defaultParser()).printUsage(System.out);
+         return null;
+      }
+
+      if (parser == null)
+         return bind(plan, parseDeferring(plan, settings, args));
 
-      T object;
       try {
-         object = context.targetType
-                         .newInstance();
-      } catch (InstantiationException | IllegalAccessException e) {
-         String msg = "Could not instantiate target object of type " + context.targetType;
-         throw new InvalidTargetTypeException(msg, e);
+         return bind(plan, ParsedArgs.of(plan, parser.parseArguments(args)));
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
       }
+   }
+
+   /**
+    * Parses command line arguments given as UTF-8 encoded bytes between the
+    * position and the limit of <code>utf8Args</code> into an instance of
+    * <code>targetType</code>, e.g. the contents of <code>/proc/&lt;pid&gt;/cmdline</code>
+    * or arguments received over a socket. The keys of the options and integral
+    * numbers are matched on the bytes, so only the other values are decoded into Strings.
+    * If the first argument indicates a request for help like e.g. <code>--help</code> AND
+    * {@link #setPrintUsageOnHelp(boolean)} is set to <code>true</code>
+    * (which is the default state) a generated help message will be printed
+    * to standardout and <code>null</code> will be returned.
+    *
+    * @param targetType The type of the object to be parsed from the
+    * command line. The fields of <code>targetType</code> should be annotated.
+    * @param utf8Args the command line arguments, whose position is set to
+    * its limit, if they are parsed successfully
+    * @param layout the layout of the arguments in <code>utf8Args</code>
+    * @param <T> the generic type of the object containing the parsed arguments
+    *
+    * @return An instance of <code>targetType</code> that contains the
+    * values provided by the <code>utf8Args</code>
+    *
+    * @throws ArgumentParseException if the given <code>utf8Args</code> do not
+    * match the format of <code>targetType</code>
+    * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
+    * invalidly annotated
+    * @throws IllegalArgumentException if the <code>utf8Args</code> do not
+    * match the <code>layout</code>
+    */
+   public static <T> T parse(Class<T> targetType,
+                             ByteBuffer utf8Args,
+                             TokenLayout layout) throws ArgumentParseException,
+                                                        InvalidTargetTypeException,
+                                                        IllegalArgumentException {
 
-      for (Field field : context.targetType.getDeclaredFields()) {
-         context.currentField = field;
-         processField(context,
-                      arg -> setArgValue(context, object, arg),
-                      varArgs -> setVarArgsValue(context, object, varArgs),
-                      opt -> setOptValue(context, object, opt));
+      ModelPlan<T> plan = ModelPlan.of(targetType);
+      if (printUsageOnHelp && isHelp(ModelPlan.DEFAULT_SETTINGS, utf8Args, layout)) {
+         plan.defaultParser().printUsage(System.out);
+         return null;
       }
 
-      return object;
+      return bind(plan, parseArguments(plan, ModelPlan.DEFAULT_SETTINGS, utf8Args, layout));
    }
 
-   private static ArgumentParser buildParser(Context<?> context) throws InvalidTargetTypeException {
-      ArgumentParserBuilder builder = context.builder;
-      Field[] fields = context.targetType
-                              .getDeclaredFields();
+   /**
+    * Checks and compiles the given target types in parallel, so the first
+    * call of {@link #parse(Class, String...)} for each of them does not
+    * have to analyze the type first. The types are compiled on the
+    * common {@link ForkJoinPool}. All types are compiled even if some
+    * of them are invalid.
+    *
+    * @param targetTypes the target types to be compiled
+    *
+    * @throws InvalidTargetTypeException if any of the given types is invalidly
+    * annotated. The message names all invalid types, the exceptions of further
+    * invalid types are added as suppressed exceptions.
+    */
+   public static void prewarm(Class<?>... targetTypes) throws InvalidTargetTypeException {
+      Queue<InvalidTargetTypeException> failures = new ConcurrentLinkedQueue<>();
+      Arrays.stream(targetTypes)
+            .parallel()
+            .forEach(type -> {
+               try {
+                  ModelPlan.of(type);
+               } catch (InvalidTargetTypeException e) {
+                  failures.add(e);
+               }
+            });
 
-      for (Field field : fields) {
-         context.currentField = field;
-         try {
-            processField(context,
-                         arg -> context.argAdders.add(new ArgumentAdder(arg, field)),
-                         varArgs -> setVarArgs(builder, context),
-                         opt -> addOption(builder, field, opt));
+      if (failures.isEmpty())
+         return;
 
-         } catch (IllegalStateException e) {
-            // Exception comes from the compare method of the argadder
-            throw new InvalidTargetTypeException(e.getMessage(), e);
-         }
-      }
+      Iterator<InvalidTargetTypeException> iter = failures.iterator();
+      InvalidTargetTypeException first = iter.next();
+      String msg = failures.size() + " of " + targetTypes.length + " target types are invalid: "
+                   + failures.stream().map(Throwable::getMessage).collect(Collectors.joining(" | "));
 
-      addArgs(context);
+      InvalidTargetTypeException e = new InvalidTargetTypeException(msg, first);
+      while (iter.hasNext())
+         e.addSuppressed(iter.next());
 
-      return builder.buildAndGet();
+      throw e;
    }
 
-   private static void setVarArgs(ArgumentParserBuilder builder, Context<?> context) {
-      if (!Collection.class.isAssignableFrom(context.currentField.getType())) {
-         String msg = String.format("VarArgs field %s of type %s has to be a collection.",
-                                    context.currentField.getName(),
-                                    context.targetType.getName());
+   /**
+    * Checks and compiles the given target types in parallel like
+    * {@link #prewarm(Class...)}, but without blocking the calling thread.
+    *
+    * @param targetTypes the target types to be compiled
+    *
+    * @return a future, that is completed when all types are compiled.
+    * It is completed exceptionally with an {@link InvalidTargetTypeException}
+    * if any of the given types is invalidly annotated.
+    */
+   public static CompletableFuture<Void> prewarmAsync(Class<?>... targetTypes) {
+      Class<?>[] types = targetTypes.clone();
+      return CompletableFuture.runAsync(() -> prewarm(types), ForkJoinPool.commonPool());
+   }
 
-         throw new InvalidTargetTypeException(msg);
+   /**
+    * Serializes the given model back into command line arguments.
+    * Parsing the result with {@link #parse(Class, String...)} creates
+    * an object equal to <code>model</code>. This is the reverse operation
+    * of parsing, e.g. to start a child process with the equivalent command line.<br>
+    * Options are written by their key, followed by their value as a separate
+    * argument. Arguments are written by their index followed by the varargs.
+    * Values are formatted by {@link TypeAdapter#format(Object)}. Options and
+    * optional arguments, whose values equal their declared default values or
+    * the ones of a newly instantiated object of the same type, are omitted.
+    *
+    * @param model the object to be serialized, whose type is annotated like
+    * a target type for parsing
+    * @param <T> the type of the model
+    *
+    * @return the command line arguments representing the <code>model</code>
+    *
+    * @throws InvalidTargetTypeException if the type of <code>model</code> is
+    * invalidly annotated or a value can not be read, e.g. an annotated setter
+    * without a getter or varargs of type {@link Iterator} or {@link Stream}
+    * @throws IllegalArgumentException if a value can not be represented on the
+    * command line, e.g. a missing mandatory argument
+    */
+   public static <T> String[] toArgs(T model) throws InvalidTargetTypeException,
+                                                     IllegalArgumentException {
+      return toArgs(model, new ArrayList<String>()).toArray(new String[0]);
+   }
+
+   /**
+    * Serializes the given model back into command line arguments, which are
+    * appended to the given collection. See {@link #toArgs(Object)} for details.
+    *
+    * @param model the object to be serialized
+    * @param args the collection to append the command line arguments to
+    * @param <T> the type of the model
+    * @param <C> the type of the collection
+    *
+    * @return the given <code>args</code>
+    *
+    * @throws InvalidTargetTypeException if the type of <code>model</code> is
+    * invalidly annotated or a value can not be read
+    * @throws IllegalArgumentException if a value can not be represented on the
+    * command line
+    */
+   public static <T, C extends Collection<? super String>> C toArgs(T model,
+                                                                    C args) throws InvalidTargetTypeException,
+                                                                                   IllegalArgumentException {
+      ModelPlan.of(model.getClass()).writeArgs(model, args::add);
+      return args;
+   }
+
+   /**
+    * Serializes the given model back into command line arguments, which are
+    * appended to the given command line separated by spaces.
+    * See {@link #toArgs(Object)} for details. Arguments containing whitespace,
+    * quotes or backslashes are quoted in the syntax of an argument file,
+    * so the command line can be written into an argument file read by
+    * {@link ArgFileExpander}.
+    *
+    * @param model the object to be serialized
+    * @param commandLine the command line to append the arguments to
+    * @param <T> the type of the model
+    *
+    * @return the given <code>commandLine</code>
+    *
+    * @throws InvalidTargetTypeException if the type of <code>model</code> is
+    * invalidly annotated or a value can not be read
+    * @throws IllegalArgumentException if a value can not be represented on the
+    * command line
+    */
+   public static <T> StringBuilder toArgs(T model,
+                                          StringBuilder commandLine) throws InvalidTargetTypeException,
+                                                                            IllegalArgumentException {
+      ModelPlan.of(model.getClass()).writeArgs(model, arg -> ArgFileExpander.appendToken(commandLine, arg));
+      return commandLine;
+   }
+
+   /**
+    * Parses the given <code>args</code> into the given <code>target</code>
+    * instead of a new instance of its type. All annotated members of the
+    * target are reset to the values of a newly instantiated object first,
+    * so the result equals the one of {@link #parse(Class, String...)}, but
+    * instances can be reused, e.g. from a pool, when many commands of the same
+    * type are parsed. If the <code>args</code> do not match the format of the
+    * type, the <code>target</code> is left unchanged. The default values are assigned by
+    * reference, so mutable defaults are shared by all reused instances.<br>
+    * If the first argument indicates a request for help like e.g. <code>--help</code> AND
+    * {@link #setPrintUsageOnHelp(boolean)} is set to <code>true</code>
+    * (which is the default state) a generated help message will be printed
+    * to standardout and <code>null</code> will be returned.
+    *
+    * @param target the object to be filled with the values of the <code>args</code>
+    * @param args the command line arguments
+    * @param <T> the type of the target object
+    *
+    * @return the given <code>target</code>
+    *
+    * @throws ArgumentParseException if the given <code>args</code> do not
+    * match the format of the type of <code>target</code>
+    * @throws InvalidTargetTypeException if the type of <code>target</code> is
+    * invalidly annotated or a default value can not be read, e.g. of an
+    * annotated setter without a getter
+    * @throws IllegalArgumentException  if <code>args</code> is <code>null</code> or empty.
+    */
+   public static <T> T parseInto(T target, String... args) throws ArgumentParseException,
+                                                                  InvalidTargetTypeException,
+                                                                  IllegalArgumentException {
+      @SuppressWarnings("unchecked")
+      ModelPlan<T> plan = (ModelPlan<T>) ModelPlan.of(target.getClass());
+      if (printUsageOnHelp && isHelp(ModelPlan.DEFAULT_SETTINGS, args)) {
+         plan.defaultParser().printUsage(System.out);
+         return null;
       }
 
+      ParsedArgs parsed = parseArguments(plan, ModelPlan.DEFAULT_SETTINGS, args);
       try {
-         builder.setVarArgs(true);
-      } catch (IllegalStateException e) {
-         String msg = String.format("Error with VarArgs annotation in type %s at field %s: \"%s\"",
-                                    context.targetType.getName(),
-                                    context.currentField.getName(),
-                                    e.getMessage());
-
-         throw new InvalidTargetTypeException(msg, e);
+         plan.reset(target);
+         return bindInto(plan, target, parsed);
+      } finally {
+         parsed.release();
       }
    }
 
-   private static void addOption(ArgumentParserBuilder builder, Field field, CLOption opt) {
-      builder.buildOption(opt.key())
-              .setLongKey(opt.longKey())
-              .setDescription(opt.description())
-              .setExpectsValue(opt.expectsValue())
-              .build();
+   /**
+    * Binds the parsed arguments to a new instance of the target type
+    * and releases them afterwards.
+    */
+   static <T> T bind(ModelPlan<T> plan, ParsedArgs parsed) throws InvalidTargetTypeException {
+      try {
+         return bindInto(plan, plan.newInstance(), parsed);
+      } finally {
+         parsed.release();
+      }
    }
 
-   private static void addArgs(Context<?> context) throws InvalidTargetTypeException {
-      int i = 0;
-      for (ArgumentAdder argAdder : context.argAdders) {
-         if (argAdder.index() != i++) {
-            String msg = "Missing index " + i + ". Next index was "
-                         + argAdder.index() + " at field " + argAdder.getField().getName();
+   private static <T> T bindInto(ModelPlan<T> plan, T object, ParsedArgs parsed) throws InvalidTargetTypeException {
+      for (Binding binding : plan.bindings) {
+         // The objects of groups are only created, if one of their options is given
+         if (binding.group != null && !parsed.groups[binding.group.index])
+            continue;
 
-            throw new InvalidTargetTypeException(msg);
+         switch (binding.kind) {
+            case ARGUMENT:
+               setArgValue(plan, binding, object, parsed);
+               break;
+            case VAR_ARGS:
+               setVarArgsValue(binding, object, parsed);
+               break;
+            default:
+               setOptValue(plan, binding, object, parsed);
          }
-
-         argAdder.addArgumentTo(context.builder);
       }
+
+      return object;
    }
 
-   private static void processField(Context<?> context,
-                                    UnsafeConsumer<CLArgument, InvalidTargetTypeException> argProcessor,
-                                    UnsafeConsumer<CLVarArgs, InvalidTargetTypeException> varArgProcessor,
-                                    UnsafeConsumer<CLOption, InvalidTargetTypeException> optProcessor) throws InvalidTargetTypeException {
+   static ParsedArgs parseArguments(ModelPlan<?> plan,
+                                    ArgumentParser parser,
+                                    String... args) throws ArgumentParseException,
+                                                           IllegalArgumentException {
+      try {
+         return ParsedArgs.scan(plan, parser.isIgnoreUnknown(), args);
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
+      }
+   }
 
-      CLVarArgs varArgs = context.currentField.getDeclaredAnnotation(CLVarArgs.class);
-      if (varArgs != null)
-         varArgProcessor.accept(varArgs);
+   /**
+    * Scans the arguments in a single pass by the options and arguments of the plan.
+    * The parser only provides its settings, e.g. whether unknown arguments are ignored.
+    */
+   static ParsedArgs parseArguments(ModelPlan<?> plan,
+                                    ArgumentParser parser,
+                                    Iterator<String> args) throws ArgumentParseException {
+      try {
+         return ParsedArgs.scan(plan, parser.isIgnoreUnknown(), args);
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
+      }
+   }
 
-      CLArgument arg = context.currentField.getDeclaredAnnotation(CLArgument.class);
-      if (arg != null) {
-         if (varArgs != null)
-            throw new InvalidArgTypeException(msgVarArgsAndArgs(context));
+   /**
+    * Scans the arguments like {@link #parseArguments(ModelPlan, ArgumentParser, Iterator)},
+    * but leaves the arguments following <code>--</code> in the given iterator,
+    * if the varargs consume them lazily, see {@link ParsedArgs#scanDeferring(ModelPlan, boolean, Iterator)}.
+    */
+   private static ParsedArgs parseDeferring(ModelPlan<?> plan,
+                                            ArgumentParser parser,
+                                            PeekableIterator<String> args) throws ArgumentParseException {
+      try {
+         return ParsedArgs.scanDeferring(plan, parser.isIgnoreUnknown(), args);
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
+      }
+   }
 
-         argProcessor.accept(arg);
+   static ParsedArgs parseArguments(ModelPlan<?> plan,
+                                    ArgumentParser parser,
+                                    ByteBuffer args,
+                                    TokenLayout layout) throws ArgumentParseException,
+                                                               IllegalArgumentException {
+      try {
+         return ParsedArgs.scan(plan, parser.isIgnoreUnknown(), args, layout);
+      } catch (UnknownArgumentException e) {
+         throw plan.suggestions().unknownArgument(e);
       }
+   }
 
-      CLOption opt = context.currentField.getDeclaredAnnotation(CLOption.class);
-      if (opt != null) {
-         if (arg != null)
-            throw new InvalidArgTypeException(msgArgAndOpt(context));
-         if (varArgs != null)
-            throw new InvalidArgTypeException(msgVarArgsAndOpt(context));
+   private static void assign(ModelPlan<?> plan,
+                              Binding binding,
+                              Object target,
+                              String value) throws IllegalArgumentException, InvalidTargetTypeException {
+      try {
+         binding.assign(target, value);
+      } catch (IllegalArgumentException e) {
+         throw plan.suggestions().invalidValue(binding, value, e);
+      }
+   }
 
-         optProcessor.accept(opt);
+   /**
+    * Assigns the value of the binding, that may be given as bytes.
+    */
+   private static void assign(ModelPlan<?> plan,
+                              Binding binding,
+                              Object target,
+                              ParsedArgs parsed) throws IllegalArgumentException, InvalidTargetTypeException {
+      try {
+         parsed.assign(binding, target);
+      } catch (IllegalArgumentException e) {
+         throw plan.suggestions().invalidValue(binding, parsed.value(binding.index), e);
       }
    }
 
-   static String get(String string, String ifEmpty) {
-      return string.isEmpty() ? ifEmpty : string;
+   /**
+    * Whether the first of the given arguments requests help. Unlike
+    * {@link ArgumentParser#isHelp(String...)} it looks the argument up
+    * in the help arguments without creating a stream.
+    */
+   private static boolean isHelp(ArgumentParser parser, String... args) {
+      Collection<String> helpArgs = parser.getHelpArgs();
+      return args != null && args.length > 0 && helpArgs != null && helpArgs.contains(args[0]);
    }
 
-   private static void setArgValue(Context<?> context,
-                                   Object target,
-                                   CLArgument arg) throws InvalidTargetTypeException {
-      String argName = get(arg.name(), context.currentField.getName());
-      String value = context.argModel
-                            .getArgumentValue(argName);
-      if (value == null)
-         return;
+   /**
+    * Whether the first of the arguments given as bytes requests help
+    * without consuming them.
+    */
+   private static boolean isHelp(ArgumentParser parser, ByteBuffer args, TokenLayout layout) {
+      Collection<String> helpArgs = parser.getHelpArgs();
+      if (helpArgs == null || helpArgs.isEmpty())
+         return false;
 
-      if (arg.adapter() != Default.class) {
-         Object parsedValue = parseValue(context, arg.adapter(), target, value);
-         setFieldValue(context.currentField, target, parsedValue);
-      } else {
-         if (context.currentField.getType().equals(Boolean.TYPE)) {
-            System.out.println("It is strange that this application wants you "
-                               + "to provide a boolean value as a text argument "
-                               + "instead of just an option, but hey! "
-                               + "Like my father used to say: \""
-                               + "Die Freiheit des Programmierers ist grenzenlos!\"");
-         }
+      ByteTokens tokens = new ByteTokens();
+      tokens.reset(args, layout);
+      if (!tokens.advance())
+         return false;
 
-         setCurrentFieldsValue(context, argName, target, value);
+      for (String helpArg : helpArgs) {
+         if (ByteTokens.equalsAscii(args, tokens.begin, tokens.end, helpArg))
+            return true;
       }
+      return false;
    }
 
-   private static void setVarArgsValue(Context<?> context, Object target, CLVarArgs varArgs) {
-      Collection<Object> collection;
-      try {
-         collection = varArgs.collectionType().newInstance();
-      } catch (InstantiationException | IllegalAccessException  e) {
-         String msg = String.format("Could not instantiate varArgs collection of type %s at field %s of type %s.",
-                                    varArgs.collectionType().getName(),
-                                    context.currentField.getName(),
-                                    context.targetType.getName());
+   static String get(String string, String ifEmpty) {
+      return string.isEmpty() ? ifEmpty : string;
+   }
 
-         throw new InvalidTargetTypeException(msg);
+   private static void setArgValue(ModelPlan<?> plan,
+                                   Binding binding,
+                                   Object target,
+                                   ParsedArgs parsed) throws InvalidTargetTypeException {
+      if (!parsed.hasValue(binding.index)) {
+         if (binding.hasDefault())
+            binding.set(target, binding.defaultValue());
+         return;
       }
 
-      for (String value : context.argModel.getPlainArguments()) {
-         Object parsedValue = parseValue(context, varArgs.adapter(), target, value);
-         collection.add(parsedValue);
+      if (!binding.hasAdapter() && binding.type.equals(Boolean.TYPE)) {
+         System.out.println("It is strange that this application wants you "
+                            + "to provide a boolean value as a text argument "
+                            + "instead of just an option, but hey! "
+                            + "Like my father used to say: \""
+                            + "Die Freiheit des Programmierers ist grenzenlos!\"");
       }
 
-      setFieldValue(context.currentField, target, collection);
+      assign(plan, binding, target, parsed);
    }
 
-   private static void setOptValue(Context<?> context,
-                                   Object target,
-                                   CLOption opt) throws InvalidTargetTypeException {
-      if (opt.expectsValue()) {
-         Optional<String> value = context.argModel
-                                         .getOptionalValue(opt.key());
-         if (value.isPresent()) {
-            if (opt.adapter() != Default.class) {
-               Object parsedValue = parseValue(context, opt.adapter(), target, value.get());
-               setFieldValue(context.currentField, target, parsedValue);
-            } else {
-               String optName = opt.longKey() == null ? "-" + opt.key() : opt.longKey();
-               setCurrentFieldsValue(context, optName, target, value.get());
-            }
-         }
-      } else {
-         Class<?> type = context.currentField.getType();
+   private static void setVarArgsValue(Binding binding, Object target, ParsedArgs parsed) {
+      Class<?> type = binding.type;
+      TypeAdapter<?> adapter = binding.newAdapter();
+      // The plain arguments are scanned before the varargs are assigned, except the deferred ones after --
+      List<String> values = parsed.plainArgs;
+      Iterator<String> deferred = parsed.deferredArgs;
 
-         if (!type.equals(Boolean.TYPE) && !type.equals(Boolean.class)) {
-            String msg = "Option field " + context.currentField.getName()
-                         + " has to be of type boolean or must expect a value.";
+      if (type == Iterator.class) {
+         Iterator<String> iter = deferred == null ? values.iterator() : concat(values.iterator(), deferred);
+         binding.set(target, new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+               return iter.hasNext();
+            }
 
-            throw new InvalidArgTypeException(msg);
+            @Override
+            public Object next() {
+               return adapter.parse(iter.next());
+            }
+         });
+      } else if (type == Stream.class) {
+         Stream<String> stream = deferred == null ? values.stream()
+                                 : StreamSupport.stream(Spliterators.spliteratorUnknownSize(concat(values.iterator(), deferred),
+                                                                                            Spliterator.ORDERED),
+                                                        false);
+         binding.set(target, stream.map(adapter::parse));
+      } else if (type == Consumer.class) {
+         Consumer<Object> consumer = getConsumer(binding, target);
+         for (String value : values)
+            consumer.accept(adapter.parse(value));
+         while (deferred != null && deferred.hasNext())
+            consumer.accept(adapter.parse(deferred.next()));
+      } else {
+         Collection<Object> collection = binding.newCollection();
+         if (values.size() >= parallelVarArgsThreshold) {
+            collection.addAll(Arrays.asList(VarArgsConverter.convertParallel(binding, values)));
+         } else {
+            for (int i = 0; i < values.size(); i++)
+               collection.add(VarArgsConverter.convert(adapter, values, i));
          }
 
-         setFieldValue(context.currentField, target, context.argModel.isOptionPresent(opt.key()));
+         binding.set(target, collection);
       }
    }
 
-   private static Object parseValue(Context<?> context,
-                                    Class<? extends TypeAdapter<?>> adapterType,
-                                    Object target,
-                                    String value) throws InvalidTargetTypeException {
-
-      TypeAdapter<?> adapter;
-      try {
-         adapter = adapterType.newInstance();
-      } catch (InstantiationException | IllegalAccessException e) {
-         String msg = "Could not instantiate value adapter of type "
-                      + adapterType.getName() + " for field "
-                      + context.currentField;
-
-         throw new InvalidTargetTypeException(msg, e);
-      }
+   /**
+    * Iterates over the scanned plain arguments followed by the deferred ones.
+    */
+   private static Iterator<String> concat(Iterator<String> first, Iterator<String> second) {
+      return new Iterator<String>() {
+         @Override
+         public boolean hasNext() {
+            return first.hasNext() || second.hasNext();
+         }
 
-      return adapter.parse(value);
+         @Override
+         public String next() {
+            return first.hasNext() ? first.next() : second.next();
+         }
+      };
    }
 
-   private static void setCurrentFieldsValue(Context<?> context, String argName, Object target, String value) {
-      if (!ReflectionUtils.isPrimitive(context.currentField.getType())) {
-         String msg = "Could not set value " +
-                      value +
-                      " of the command line argument/option " +
-                      argName + " of field " + context.currentField.getName() +
-                      ", because the field was not of a primitive type nor String and " +
-                      "no TypeAdapter was provided.";
+   @SuppressWarnings("unchecked")
+   private static Consumer<Object> getConsumer(Binding binding, Object target) throws InvalidTargetTypeException {
+      Object consumer = binding.get(target);
+      if (consumer == null) {
+         String msg = String.format("VarArgs Consumer field %s of type %s has to be initialized by the target type.",
+                                    binding.name,
+                                    target.getClass().getName());
+
          throw new InvalidTargetTypeException(msg);
       }
 
-      try {
-         ReflectionUtils.setPrimitiveValue(target, context.currentField, value);
-      } catch (IllegalStateException e) {
-         throw new InvalidArgTypeException(e.getMessage(), e);
-      }
+      return (Consumer<Object>) consumer;
    }
 
-   private static void setFieldValue(Field field,
-                                     Object target,
-                                     Object value) throws InvalidArgTypeException {
-      try {
-         field.setAccessible(true);
-         field.set(target, value);
-      } catch (IllegalArgumentException |
-               IllegalAccessException |
-               SecurityException e) {
-
-         throw new InvalidArgTypeException("Could not set value " + value + " to field " + field.getName(), e);
+   private static void setOptValue(ModelPlan<?> plan,
+                                   Binding binding,
+                                   Object target,
+                                   ParsedArgs parsed) throws InvalidTargetTypeException {
+      int count = parsed.counts[binding.index];
+      if (binding.collect == Binding.Collect.COUNT) {
+         binding.set(target, count);
+      } else if (!binding.expectsValue) {
+         binding.set(target, count > 0);
+      } else if (count == 0) {
+         if (binding.hasDefault())
+            binding.set(target, binding.defaultValue());
+      } else if (binding.collectsOccurrences()) {
+         binding.set(target, binding.collect(parsed.occurrences[binding.index]));
+      } else {
+         assign(plan, binding, target, parsed);
       }
    }
 
@@ -443,20 +868,171 @@ public class CLOM<T> {
     * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
     * invalidly annotated
     * @throws IllegalArgumentException if <code>args</code>
+    *
+    * @see #enableResultCache(int)
     */
    public T parse(String... args) throws ArgumentParseException,
                                          InvalidTargetTypeException,
                                          IllegalArgumentException {
-      return parse(parser, context, args);
+      ResultCache<T> cache = resultCache;
+      if (cache == null || args == null)
+         return bind(plan, parseArguments(plan, settings(), args));
+
+      T result = cache.get(args);
+      if (result == null) {
+         result = bind(plan, parseArguments(plan, settings(), args));
+         cache.put(args, result);
+      }
+      return result;
+   }
+
+   /**
+    * Parses the arguments provided by the given iterator into an instance
+    * of the given <code>targetType</code>. The arguments are consumed one by one
+    * while parsing, so they do not have to be present in an array up front.
+    * The arguments following <code>--</code> are only read while varargs of type
+    * {@link Iterator}, {@link Stream} or {@link Consumer} consume them, see {@link CLVarArgs}.
+    *
+    * @param args An iterator over the command line arguments,
+    * e.g. an {@link ArgFileExpander}
+    *
+    * @return An instance of <code>targetType</code> that contains the
+    * values provided by the <code>args</code>
+    *
+    * @throws ArgumentParseException if the given <code>args</code> do not
+    * match the format of <code>targetType</code>
+    * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
+    * invalidly annotated
+    * @throws UncheckedIOException if the <code>args</code> are read from
+    * a source, that fails, e.g. an unreadable argument file
+    */
+   public T parse(PeekableIterator<String> args) throws ArgumentParseException,
+                                                        InvalidTargetTypeException,
+                                                        UncheckedIOException {
+      return bind(plan, parseDeferring(plan, settings(), args));
+   }
+
+   /**
+    * Parses command line arguments given as UTF-8 encoded bytes between the
+    * position and the limit of <code>utf8Args</code> into an instance of the
+    * given <code>targetType</code>, see {@link #parse(Class, ByteBuffer, TokenLayout)}.
+    *
+    * @param utf8Args the command line arguments, whose position is set to
+    * its limit, if they are parsed successfully
+    * @param layout the layout of the arguments in <code>utf8Args</code>
+    *
+    * @return An instance of <code>targetType</code> that contains the
+    * values provided by the <code>utf8Args</code>
+    *
+    * @throws ArgumentParseException if the given <code>utf8Args</code> do not
+    * match the format of <code>targetType</code>
+    * @throws InvalidTargetTypeException if the given <code>tagetType</code> is
+    * invalidly annotated
+    * @throws IllegalArgumentException if the <code>utf8Args</code> do not
+    * match the <code>layout</code>
+    */
+   public T parse(ByteBuffer utf8Args, TokenLayout layout) throws ArgumentParseException,
+                                                                  InvalidTargetTypeException,
+                                                                  IllegalArgumentException {
+      return bind(plan, parseArguments(plan, settings(), utf8Args, layout));
    }
 
    /**
-    * Get the parser, that is used to parse the command line arguments.
-    * Can be modified before parsing.
+    * Provides the candidates to complete the argument at the <code>cursor</code>
+    * position of a partially typed command line, e.g. for tab completion
+    * in a shell. Depending on the position the candidates are
+    * <ul>
+    *    <li>the short keys (<code>-v</code>) and long keys (<code>--verbose</code>)
+    *    of the options starting with the typed argument, if it starts with a dash,</li>
+    *    <li>the constants of an enum value expected by the preceding option
+    *    (<code>-l</code> followed by the value or <code>--level=</code>
+    *    followed by the value),</li>
+    *    <li>the constants of an enum value expected by the next argument
+    *    by its {@link CLArgument#index()}, followed by all options if
+    *    nothing is typed yet.</li>
+    * </ul>
+    * Enum constants are formatted by the {@link TypeAdapter} of the member.
+    * The names are indexed once per target type, so completion does not
+    * slow down with the number of options.
+    *
+    * @param partialArgs the arguments typed so far
+    * @param cursor the index of the argument to be completed. If it equals
+    * the length of <code>partialArgs</code> a new argument is completed.
     *
-    * @return the parser to parse the command line args
+    * @return the candidates in lexicographical order, which may be empty
+    *
+    * @throws IndexOutOfBoundsException if <code>cursor</code> is negative
+    * or greater than the length of <code>partialArgs</code>
+    */
+   public List<String> complete(String[] partialArgs, int cursor) throws IndexOutOfBoundsException {
+      return plan.completion().complete(partialArgs, cursor);
+   }
+
+   /**
+    * Get the parser, that provides the settings to parse the command line
+    * arguments with and the usage. Its settings, i.e. its help arguments and whether
+    * unknown arguments are ignored, can be changed before parsing. The arguments
+    * themselves are scanned by the annotations of the target type, not by the parser.
+    *
+    * @return the parser providing the settings and the usage
     */
    public ArgumentParser getParser() {
+      ArgumentParser parser = this.parser;
+      if (parser == null) {
+         synchronized (this) {
+            parser = this.parser;
+            if (parser == null)
+               this.parser = parser = plan.buildParser(new ArgumentParserBuilder());
+         }
+      }
       return parser;
    }
+
+   /**
+    * Enables a cache of the objects parsed by {@link #parse(String...)}, so
+    * repeated identical command lines are not parsed again. Either the cached
+    * objects themselves are returned, if the target type is immutable,
+    * or copies of them, see {@link ResultCache}. A previously enabled cache
+    * is replaced.
+    *
+    * @param maxEntries the maximum number of cached command lines, beyond
+    * which the least recently used ones are evicted
+    *
+    * @return the cache providing its statistics
+    *
+    * @throws IllegalArgumentException if <code>maxEntries</code> is not positive
+    * @throws InvalidTargetTypeException if the objects of the target type can
+    * not be cached safely, e.g. because its members are assigned by setters
+    */
+   public ResultCache<T> enableResultCache(int maxEntries) throws IllegalArgumentException,
+                                                                  InvalidTargetTypeException {
+      ResultCache<T> cache = new ResultCache<>(plan, maxEntries);
+      resultCache = cache;
+      return cache;
+   }
+
+   /**
+    * Disables the cache enabled by {@link #enableResultCache(int)}.
+    */
+   public void disableResultCache() {
+      resultCache = null;
+   }
+
+   /**
+    * @return the cache enabled by {@link #enableResultCache(int)}
+    * or <code>null</code> if it is not enabled
+    */
+   public ResultCache<T> getResultCache() {
+      return resultCache;
+   }
+
+   /**
+    * The parser providing the settings to parse with. Until the parser is
+    * requested by {@link #getParser()} it can not be modified, so the default
+    * settings are used without building it.
+    */
+   private ArgumentParser settings() {
+      ArgumentParser parser = this.parser;
+      return parser != null ? parser : ModelPlan.DEFAULT_SETTINGS;
+   }
 }
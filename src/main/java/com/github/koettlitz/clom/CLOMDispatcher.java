@@ -0,0 +1,400 @@
+package com.github.koettlitz.clom;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+/**
+ * Dispatches commands to the {@link CLHandler} methods of their target types.
+ * The first argument of a command is its name, by which the target type is
+ * looked up. The remaining arguments are parsed into a new instance of the
+ * target type on the calling thread, so invalid commands fail immediately.
+ * Then the handler of the instance is run by the executor of the dispatcher.
+ * <pre>
+ * try (CLOMDispatcher dispatcher = new CLOMDispatcher()) {
+ *    dispatcher.register("copy", Copy.class)
+ *              .register("move", Move.class);
+ *
+ *    CompletableFuture&lt;Object&gt; result = dispatcher.dispatch("copy", "a.txt", "b.txt");
+ * }
+ * </pre>
+ * The number of commands, that are waiting for or running on the executor,
+ * is bounded by the capacity of the dispatcher. If it is reached,
+ * {@link #dispatch(String...)} blocks until a command completes and
+ * {@link #tryDispatch(String...)} rejects the command, so callers are slowed
+ * down instead of queueing commands without limit. The {@link Latency} of
+ * each command is recorded from its dispatch until its handler returned.<br>
+ * By default the handlers run on virtual threads, if the JVM provides them
+ * (Java 21 and later), or on the common {@link ForkJoinPool} otherwise.
+ * A dispatcher is thread safe.
+ */
+public class CLOMDispatcher implements AutoCloseable {
+   /** The default number of commands, that can be waiting or running at the same time */
+   public static final int DEFAULT_CAPACITY = 1024;
+
+   private static final MethodType HANDLER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+   private final Map<String, Command> commands = new ConcurrentHashMap<>();
+   private final Executor executor;
+   /** The executor created by the dispatcher, which is shut down when it is closed */
+   private final ExecutorService ownExecutor;
+   private final int capacity;
+   private final Semaphore slots;
+
+   /**
+    * Creates a dispatcher with the {@link #DEFAULT_CAPACITY}, that runs the
+    * handlers on virtual threads if available or on the common {@link ForkJoinPool}.
+    */
+   public CLOMDispatcher() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a dispatcher, that runs the handlers on virtual threads if
+    * available or on the common {@link ForkJoinPool}.
+    *
+    * @param capacity the number of commands, that can be waiting or running at the same time
+    *
+    * @throws IllegalArgumentException if <code>capacity</code> is not positive
+    */
+   public CLOMDispatcher(int capacity) throws IllegalArgumentException {
+      // The capacity is checked before an executor is created
+      this(checkCapacity(capacity), virtualThreadExecutor());
+   }
+
+   /**
+    * Creates a dispatcher, that runs the handlers on the given executor.
+    * The executor is not shut down, when the dispatcher is closed.
+    *
+    * @param executor the executor to run the handlers on
+    * @param capacity the number of commands, that can be waiting or running at the same time
+    *
+    * @throws IllegalArgumentException if <code>capacity</code> is not positive
+    */
+   public CLOMDispatcher(Executor executor, int capacity) throws IllegalArgumentException {
+      this(requireNonNull(executor), checkCapacity(capacity), null);
+   }
+
+   /**
+    * @param ownExecutor the executor of virtual threads or <code>null</code>
+    * to run the handlers on the common {@link ForkJoinPool}
+    */
+   private CLOMDispatcher(int capacity, ExecutorService ownExecutor) {
+      this(ownExecutor != null ? ownExecutor : ForkJoinPool.commonPool(), capacity, ownExecutor);
+   }
+
+   private CLOMDispatcher(Executor executor, int capacity, ExecutorService ownExecutor) {
+      this.executor = executor;
+      this.ownExecutor = ownExecutor;
+      this.capacity = capacity;
+      this.slots = new Semaphore(capacity);
+   }
+
+   private static int checkCapacity(int capacity) throws IllegalArgumentException {
+      if (capacity <= 0)
+         throw new IllegalArgumentException("The capacity has to be positive, but is " + capacity);
+
+      return capacity;
+   }
+
+   /**
+    * Registers the given target type as the command with the given name.
+    * A command, that is already registered by the name, is replaced.
+    *
+    * @param name the name of the command, i.e. the first argument
+    * @param targetType the type to parse the remaining arguments into,
+    * which declares a method annotated with {@link CLHandler}
+    *
+    * @return this dispatcher
+    *
+    * @throws InvalidTargetTypeException if <code>targetType</code> is invalidly
+    * annotated or does not declare exactly one valid handler
+    */
+   public CLOMDispatcher register(String name, Class<?> targetType) throws InvalidTargetTypeException {
+      commands.put(requireNonNull(name), new Command(new CLOM<>(targetType), findHandler(targetType)));
+      return this;
+   }
+
+   /**
+    * Parses the given command and runs its handler. If the capacity of the
+    * dispatcher is reached, the call blocks until another command completes.
+    *
+    * @param args the name of the command followed by its arguments
+    *
+    * @return the future result of the handler, which is <code>null</code> for
+    * handlers without return value, or its exception
+    *
+    * @throws ArgumentParseException if the command is unknown or its arguments
+    * do not match its target type
+    * @throws InterruptedException if the thread is interrupted while waiting
+    * for the capacity
+    * @throws IllegalArgumentException if <code>args</code> is <code>null</code> or empty
+    */
+   public CompletableFuture<Object> dispatch(String... args) throws ArgumentParseException,
+                                                                   InterruptedException,
+                                                                   IllegalArgumentException {
+      long start = System.nanoTime();
+      Command command = command(args);
+      Object model = command.parse(args);
+      slots.acquire();
+      return run(command, model, start);
+   }
+
+   /**
+    * Parses the given command and runs its handler, if the capacity of the
+    * dispatcher is not reached.
+    *
+    * @param args the name of the command followed by its arguments
+    *
+    * @return the future result of the handler like {@link #dispatch(String...)} or
+    * <code>null</code> if the command is rejected, because the capacity is reached
+    *
+    * @throws ArgumentParseException if the command is unknown or its arguments
+    * do not match its target type
+    * @throws IllegalArgumentException if <code>args</code> is <code>null</code> or empty
+    */
+   public CompletableFuture<Object> tryDispatch(String... args) throws ArgumentParseException,
+                                                                      IllegalArgumentException {
+      long start = System.nanoTime();
+      Command command = command(args);
+      Object model = command.parse(args);
+      if (!slots.tryAcquire()) {
+         command.latency.rejections.increment();
+         return null;
+      }
+
+      return run(command, model, start);
+   }
+
+   /**
+    * Provides the latency of the command with the given name.
+    *
+    * @return the latency or <code>null</code> if there is no such command
+    */
+   public Latency getLatency(String name) {
+      Command command = commands.get(name);
+      return command == null ? null : command.latency;
+   }
+
+   /**
+    * Provides the number of commands, that are currently waiting for or running on the executor.
+    *
+    * @return the number of pending commands
+    */
+   public int getPending() {
+      return capacity - slots.availablePermits();
+   }
+
+   /**
+    * Provides the number of commands, that can be waiting or running at the same time.
+    *
+    * @return the capacity
+    */
+   public int getCapacity() {
+      return capacity;
+   }
+
+   /**
+    * Shuts the executor down, if it was created by the dispatcher. Commands,
+    * that are already dispatched, are completed. A given executor is left running.
+    */
+   @Override
+   public void close() {
+      if (ownExecutor != null)
+         ownExecutor.shutdown();
+   }
+
+   private Command command(String... args) throws ArgumentParseException, IllegalArgumentException {
+      if (args == null || args.length == 0)
+         throw new IllegalArgumentException("The args have to start with the name of a command.");
+
+      Command command = commands.get(args[0]);
+      if (command == null)
+         throw new UnknownArgumentException(args[0]);
+
+      return command;
+   }
+
+   private CompletableFuture<Object> run(Command command, Object model, long start) {
+      CompletableFuture<Object> result = new CompletableFuture<>();
+      try {
+         executor.execute(() -> {
+            Object value = null;
+            Throwable failure = null;
+            try {
+               value = (Object) command.handler.invokeExact(model);
+            } catch (Throwable e) {
+               failure = e;
+            }
+
+            // The slot is free and the latency recorded before the result is visible
+            command.latency.record(System.nanoTime() - start, failure != null);
+            slots.release();
+            if (failure == null)
+               result.complete(value);
+            else
+               result.completeExceptionally(failure);
+         });
+      } catch (RejectedExecutionException e) {
+         slots.release();
+         command.latency.rejections.increment();
+         throw e;
+      }
+      return result;
+   }
+
+   private static MethodHandle findHandler(Class<?> targetType) throws InvalidTargetTypeException {
+      Method handler = null;
+      for (Method method : targetType.getDeclaredMethods()) {
+         if (!method.isAnnotationPresent(CLHandler.class))
+            continue;
+
+         if (handler != null) {
+            String msg = String.format("Only one method of type %s can be annotated with CLHandler, but %s and %s are.",
+                                       targetType.getName(),
+                                       handler.getName(),
+                                       method.getName());
+
+            throw new InvalidTargetTypeException(msg);
+         }
+
+         if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) {
+            String msg = String.format("Handler method %s of type %s has to be a non static method without parameters.",
+                                       method.getName(),
+                                       targetType.getName());
+
+            throw new InvalidTargetTypeException(msg);
+         }
+         handler = method;
+      }
+
+      if (handler == null)
+         throw new InvalidTargetTypeException("Type " + targetType.getName() + " declares no method annotated with CLHandler.");
+
+      try {
+         handler.setAccessible(true);
+         return MethodHandles.lookup().unreflect(handler).asType(HANDLER_TYPE);
+      } catch (IllegalAccessException | RuntimeException e) {
+         // RuntimeException: SecurityException or, since Java 9, InaccessibleObjectException
+         throw new InvalidTargetTypeException("Could not access handler method " + handler.getName()
+                                              + " of type " + targetType.getName(), e);
+      }
+   }
+
+   /**
+    * Creates an executor, that starts a virtual thread per handler.
+    * It is looked up reflectively, because clom is compiled for Java 8.
+    *
+    * @return the executor or <code>null</code> if virtual threads are not available
+    */
+   private static ExecutorService virtualThreadExecutor() {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         // Before Java 21 the method is missing or a preview feature
+         return null;
+      }
+   }
+
+   private static final class Command {
+      private final CLOM<?> clom;
+      private final MethodHandle handler;
+      private final Latency latency = new Latency();
+
+      Command(CLOM<?> clom, MethodHandle handler) {
+         this.clom = clom;
+         this.handler = handler;
+      }
+
+      Object parse(String... args) throws ArgumentParseException {
+         return clom.parse(Arrays.copyOfRange(args, 1, args.length));
+      }
+   }
+
+   /**
+    * The latency of a command from its dispatch, including the time it waited
+    * for the capacity and for the executor, until its handler returned.
+    * The values are updated concurrently, so they are not a consistent snapshot.
+    */
+   public static final class Latency {
+      private final LongAdder count = new LongAdder();
+      private final LongAdder failures = new LongAdder();
+      private final LongAdder rejections = new LongAdder();
+      private final LongAdder totalNanos = new LongAdder();
+      private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+      private Latency() {}
+
+      void record(long nanos, boolean failed) {
+         count.increment();
+         totalNanos.add(nanos);
+         maxNanos.accumulate(nanos);
+         if (failed)
+            failures.increment();
+      }
+
+      /**
+       * @return the number of completed commands, including the failed ones
+       */
+      public long getCount() {
+         return count.sum();
+      }
+
+      /**
+       * @return the number of commands, whose handler threw an exception
+       */
+      public long getFailures() {
+         return failures.sum();
+      }
+
+      /**
+       * @return the number of commands, that were rejected, because the
+       * capacity was reached or the executor rejected them
+       */
+      public long getRejections() {
+         return rejections.sum();
+      }
+
+      /**
+       * @return the sum of the latencies of all completed commands in nanoseconds
+       */
+      public long getTotalNanos() {
+         return totalNanos.sum();
+      }
+
+      /**
+       * @return the highest latency of a completed command in nanoseconds
+       */
+      public long getMaxNanos() {
+         return maxNanos.get();
+      }
+
+      /**
+       * @return the mean latency of the completed commands in nanoseconds
+       * or 0 if no command completed yet
+       */
+      public long getMeanNanos() {
+         long count = getCount();
+         return count == 0 ? 0 : getTotalNanos() / count;
+      }
+   }
+}
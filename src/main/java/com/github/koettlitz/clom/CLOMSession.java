@@ -0,0 +1,314 @@
+package com.github.koettlitz.clom;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.util.ArrayIterator;
+
+/**
+ * Reads commands line by line, e.g. from standard input of a long running
+ * shell or worker, and parses each of them into an instance of the target type,
+ * that is passed to a handler.
+ * The target type is analyzed and the {@link ArgumentParser} is built once
+ * when the session is created, and the buffers the lines are read and split
+ * into are reused for every line, so the session only allocates the tokens
+ * and the parsed objects themselves.<br>
+ * Each line is split into tokens by the same rules that apply to argument
+ * files read by {@link ArgFileExpander}: tokens are separated by whitespace,
+ * a <code>#</code> at the beginning of a token starts a comment, text in
+ * quotes may contain whitespace and a backslash escapes the next character.
+ * A line break ends the command, unless it is escaped by a backslash, also within
+ * double quotes. A quote, that is not closed before an unescaped line break, is
+ * reported as an error of that line, and the next line is read as a new command.
+ * Empty lines are skipped. If the first token requests help, e.g. <code>--help</code>,
+ * and {@link CLOM#isPrintUsageOnHelp()} is set, the usage is printed to standardout instead.
+ * <pre>
+ * CLOMSession&lt;MyCommand&gt; session = new CLOMSession&lt;&gt;(MyCommand.class);
+ * session.setErrorHandler((line, e) -&gt; System.err.println(e.getMessage()));
+ * session.run(new InputStreamReader(System.in), command -&gt; command.execute());
+ * </pre>
+ * A session is not thread safe. It can be run multiple times, e.g. for several
+ * readers one after another.
+ *
+ * @param <T> The type of the target objects
+ */
+public class CLOMSession<T> {
+   private static final int BUFFER_SIZE = 8192;
+
+   private final ModelPlan<T> plan;
+   private final ArgumentParser parser;
+   private BiConsumer<String, Exception> errorHandler;
+
+   private final char[] buffer = new char[BUFFER_SIZE];
+   private final StringBuilder token = new StringBuilder();
+   private final StringBuilder line = new StringBuilder();
+   private String[] tokens = new String[16];
+   private int count;
+   private Reader reader;
+   private int position;
+   private int limit;
+
+   /**
+    * Creates a new session, that parses the commands into instances of the
+    * given target type.
+    *
+    * @param targetType The type of the target objects to be parsed from the commands
+    *
+    * @throws InvalidTargetTypeException if <code>targetType</code> is invalidly
+    * annotated
+    */
+   public CLOMSession(Class<T> targetType) throws InvalidTargetTypeException {
+      this.plan = ModelPlan.of(targetType);
+      this.parser = plan.buildParser(new ArgumentParserBuilder());
+   }
+
+   /**
+    * Get the parser, that provides the settings to parse the commands with
+    * and the usage. Its settings, i.e. its help arguments and whether unknown
+    * arguments are ignored, can be changed before running the session. The commands
+    * themselves are scanned by the annotations of the target type, not by the parser.
+    *
+    * @return the parser providing the settings and the usage
+    */
+   public ArgumentParser getParser() {
+      return parser;
+   }
+
+   /**
+    * Sets the handler for commands, that can not be parsed. It receives the
+    * line of the command and the {@link ArgumentParseException} or the
+    * {@link IllegalArgumentException} of a {@link TypeAdapter}, and the session
+    * continues with the next line. Without an error handler the exception
+    * is thrown by {@link #run(Reader, Consumer)} and the session stops.
+    *
+    * @param errorHandler the handler for invalid commands or <code>null</code>
+    *
+    * @return this session
+    */
+   public CLOMSession<T> setErrorHandler(BiConsumer<String, Exception> errorHandler) {
+      this.errorHandler = errorHandler;
+      return this;
+   }
+
+   /**
+    * Reads all commands from the given reader until it is exhausted and passes
+    * the parsed objects to the given handler. The reader is not closed.
+    *
+    * @param reader the reader to read the commands from
+    * @param handler the handler, that receives the parsed objects
+    *
+    * @return the number of commands passed to the <code>handler</code>
+    *
+    * @throws IOException if reading fails
+    * @throws ArgumentParseException if a command can not be parsed and
+    * no error handler is set
+    * @throws IllegalArgumentException if a value can not be parsed by its
+    * {@link TypeAdapter} and no error handler is set
+    */
+   public long run(Reader reader, Consumer<? super T> handler) throws IOException,
+                                                                      ArgumentParseException,
+                                                                      IllegalArgumentException {
+      this.reader = reader;
+      position = 0;
+      limit = 0;
+      long handled = 0;
+      try {
+         while (true) {
+            T result;
+            try {
+               if (!readCommand())
+                  break;
+               if (count == 0)
+                  continue;
+
+               if (CLOM.isPrintUsageOnHelp() && parser.isHelp(tokens[0])) {
+                  parser.printUsage(System.out);
+                  continue;
+               }
+
+               result = CLOM.bind(plan, CLOM.parseArguments(plan, parser, ArrayIterator.of(0, count, tokens)));
+            } catch (ArgumentParseException e) {
+               handleError(e);
+               continue;
+            } catch (IllegalArgumentException e) {
+               handleError(e);
+               continue;
+            }
+
+            handler.accept(result);
+            handled++;
+         }
+      } finally {
+         this.reader = null;
+         Arrays.fill(tokens, 0, count, null);
+      }
+      return handled;
+   }
+
+   /**
+    * Reads all commands from the given channel until it is exhausted and passes
+    * the parsed objects to the given handler. See {@link #run(Reader, Consumer)}.
+    * The channel is not closed.
+    *
+    * @param channel the channel to read the commands from
+    * @param charset the charset the commands are encoded with
+    * @param handler the handler, that receives the parsed objects
+    *
+    * @return the number of commands passed to the <code>handler</code>
+    *
+    * @throws IOException if reading fails
+    * @throws ArgumentParseException if a command can not be parsed and
+    * no error handler is set
+    * @throws IllegalArgumentException if a value can not be parsed by its
+    * {@link TypeAdapter} and no error handler is set
+    */
+   public long run(ReadableByteChannel channel,
+                   Charset charset,
+                   Consumer<? super T> handler) throws IOException,
+                                                       ArgumentParseException,
+                                                       IllegalArgumentException {
+      return run(Channels.newReader(channel, charset.newDecoder(), BUFFER_SIZE), handler);
+   }
+
+   private <E extends Exception> void handleError(E e) throws E {
+      if (errorHandler == null)
+         throw e;
+
+      errorHandler.accept(line.toString().trim(), e);
+   }
+
+   /**
+    * Reads the tokens of the next command into {@link #tokens}.
+    *
+    * @return <code>false</code> if the reader is exhausted
+    */
+   private boolean readCommand() throws IOException, ArgumentParseException {
+      Arrays.fill(tokens, 0, count, null);
+      count = 0;
+      line.setLength(0);
+
+      int c = read();
+      if (c < 0)
+         return false;
+
+      while (true) {
+         while (c >= 0 && c != '\n' && Character.isWhitespace(c))
+            c = read();
+
+         if (c < 0 || c == '\n')
+            return true;
+
+         if (c == '#') {
+            while (c >= 0 && c != '\n')
+               c = read();
+            continue;
+         }
+
+         c = readToken(c);
+         if (count == tokens.length)
+            tokens = Arrays.copyOf(tokens, count * 2);
+
+         tokens[count++] = token.toString();
+      }
+   }
+
+   /**
+    * Reads the token starting with the given char into {@link #token}.
+    *
+    * @return the first char after the token
+    *
+    * @throws ArgumentParseException if a quote is not closed before the end of the line
+    */
+   private int readToken(int c) throws IOException, ArgumentParseException {
+      token.setLength(0);
+      char quote = 0;
+      for (; c >= 0; c = read()) {
+         if (quote != 0) {
+            if (c == quote)
+               quote = 0;
+            else if (c == '\n')
+               break;
+            else if (c == '\\' && quote == '"')
+               appendQuotedEscaped(read());
+            else
+               token.append((char) c);
+         } else if (c == '"' || c == '\'') {
+            quote = (char) c;
+         } else if (c == '\\') {
+            int escaped = read();
+            if (escaped == '\r' && peek() == '\n')
+               read();
+            else if (escaped >= 0 && escaped != '\n' && escaped != '\r')
+               token.append((char) escaped);
+         } else if (Character.isWhitespace(c)) {
+            break;
+         } else {
+            token.append((char) c);
+         }
+      }
+
+      if (quote != 0)
+         throw new ArgumentParseException("Unterminated quote in command: " + line.toString().trim());
+
+      return c;
+   }
+
+   /**
+    * Appends the char escaped within double quotes. An escaped line break
+    * continues the token on the next line.
+    */
+   private void appendQuotedEscaped(int c) throws IOException {
+      if (c == '\r' && peek() == '\n')
+         read();
+      else if (c != '\n')
+         appendEscaped(c);
+   }
+
+   private void appendEscaped(int c) {
+      switch (c) {
+         case 'n':
+            token.append('\n');
+            break;
+         case 't':
+            token.append('\t');
+            break;
+         case 'r':
+            token.append('\r');
+            break;
+         case -1:
+            break;
+         default:
+            token.append((char) c);
+      }
+   }
+
+   private int read() throws IOException {
+      int c = peek();
+      if (c >= 0) {
+         position++;
+         line.append((char) c);
+      }
+      return c;
+   }
+
+   private int peek() throws IOException {
+      if (position == limit) {
+         int read = reader.read(buffer, 0, buffer.length);
+         if (read <= 0)
+            return -1;
+
+         position = 0;
+         limit = read;
+      }
+      return buffer[position];
+   }
+}
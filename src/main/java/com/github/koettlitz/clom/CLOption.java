@@ -1,10 +1,12 @@
 package com.github.koettlitz.clom;
 
 import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.util.function.Supplier;
 
 import com.github.koettlitz.clom.TypeAdapter.Default;
 import com.github.koettlitz.opt.ArgumentParser;
@@ -12,6 +14,26 @@ import com.github.koettlitz.opt.ArgumentParser;
 /**
  * Annotates a field to represent a command line option.
  * The field value can then be set by {@link CLOM}.
+ * Alternatively a setter method with exactly one parameter can be annotated.
+ * Then the value is passed to the setter, so the target type can validate it
+ * or keep derived state consistent. The name of the option is derived from
+ * the setter by the bean convention, e.g. <code>setLevel</code> results in <code>level</code>.<br>
+ * If the option is repeated, the value of its last occurrence is assigned.
+ * Members of the following types receive all occurrences instead, unless the
+ * {@link #adapter()} converts a value to the type of the member itself:
+ * <ul>
+ *    <li>A <code>List&lt;E&gt;</code> or an array of an option expecting a value
+ *    receives the values of all occurrences in their order, e.g. <code>-I a -I b</code>.</li>
+ *    <li>A <code>Map&lt;String, V&gt;</code> of an option expecting a value receives
+ *    <code>-Dname=value</code> properties. Each occurrence is split at its first
+ *    <code>=</code> into the key and the value. The value of a map option can be
+ *    attached to its key like in <code>-Dname=value</code> or be given as the
+ *    next argument like in <code>-D name=value</code>.</li>
+ *    <li>An <code>int</code> of a switch receives the number of its occurrences,
+ *    e.g. 3 for <code>-vvv</code>.</li>
+ * </ul>
+ * The elements and values are converted by the {@link #adapter()} or as primitive values.
+ * Integral values can be given with units like <code>4GiB</code> or <code>30s</code>, see {@link CLUnits}.
  *
  * @see CLArgument
  *
@@ -19,7 +41,7 @@ import com.github.koettlitz.opt.ArgumentParser;
  * <br>Erstellt am 09.11.2018
  */
 @Retention(RUNTIME)
-@Target(FIELD)
+@Target({FIELD, METHOD})
 public @interface CLOption {
    /**
     * the key (letter) of the command line option
@@ -71,4 +93,27 @@ public @interface CLOption {
     * into a value of the right type
     */
    Class<? extends TypeAdapter<?>> adapter() default Default.class;
+
+   /**
+    * Provides the value of this command line option, if it is absent.
+    * The value is converted by the {@link #adapter()} or as a primitive
+    * value once when the target type is analyzed, so an invalid default
+    * value is reported by an {@link InvalidTargetTypeException} up front.
+    * Only options, that expect a value (see {@link #expectsValue()}), can declare a default value.
+    * By default no value is assigned and the initial value of the member is kept.
+    *
+    * @return the default value as it would be given on the command line
+    */
+   String defaultValue() default CLOM.NO_DEFAULT;
+
+   /**
+    * Provides a supplier of the value of this command line option, if it is
+    * absent, e.g. for default values, that are expensive to create. The supplier
+    * is instantiated by its constructor without parameters and called only
+    * once, when the value is needed for the first time. The value is shared
+    * by all parsed objects. It can not be combined with {@link #defaultValue()}.
+    *
+    * @return the type of the supplier of the default value
+    */
+   Class<? extends Supplier<?>> defaultSupplier() default CLOM.NoDefault.class;
 }
@@ -0,0 +1,74 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import com.github.koettlitz.opt.ExpectedOption;
+
+/**
+ * Declares that an option of the annotated type can only be given together
+ * with other options. If the option is given without all of the required ones,
+ * an {@link OptionConstraintException} is thrown while parsing.
+ * The options are referenced by their keys or long keys, as they are declared
+ * in the annotated type. If the annotated type is a {@link CLGroup}, the
+ * constraint is only checked if the group is given.
+ * <pre>
+ * &#64;CLRequires(key='u', requires={'p'})
+ * public class Login {
+ *    &#64;CLOption(key='u', longKey="user", expectsValue=true)
+ *    private String user;
+ *
+ *    &#64;CLOption(key='p', longKey="password", expectsValue=true)
+ *    private String password;
+ * }
+ * </pre>
+ *
+ * @see CLExclusive
+ * @see CLAtLeastOne
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+@Repeatable(CLRequires.List.class)
+public @interface CLRequires {
+   /**
+    * The key of the option, that requires the other options.
+    * Either the key or the {@link #longKey()} has to be provided.
+    *
+    * @return the key of the requiring option
+    */
+   char key() default ExpectedOption.NO_KEY;
+
+   /**
+    * The long key of the option, that requires the other options.
+    *
+    * @return the long key of the requiring option
+    */
+   String longKey() default "";
+
+   /**
+    * The keys of the required options.
+    *
+    * @return the keys of the required options
+    */
+   char[] requires() default {};
+
+   /**
+    * The long keys of further required options.
+    *
+    * @return the long keys of the required options
+    */
+   String[] requiresLongKeys() default {};
+
+   /**
+    * Holds several {@link CLRequires} constraints of the same type.
+    */
+   @Retention(RUNTIME)
+   @Target(TYPE)
+   @interface List {
+      CLRequires[] value();
+   }
+}
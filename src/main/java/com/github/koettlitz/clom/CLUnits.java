@@ -0,0 +1,81 @@
+package com.github.koettlitz.clom;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotates an argument or option of type <code>int</code> or <code>long</code>
+ * (or their wrappers, lists and arrays) to accept human-friendly numbers.
+ * All formats accept digits separated by underscores like <code>1_000_000</code>
+ * and an optional sign. The formats {@link Format#NUMBER} and {@link Format#SIZE}
+ * accept the radix prefixes <code>0x</code>, <code>0o</code> and <code>0b</code> as well.
+ * Like Java literals, hexadecimal, octal and binary numbers are bit patterns,
+ * so <code>0xFFFFFFFF</code> is <code>-1</code> for an <code>int</code>.
+ * The values are parsed in a single pass without intermediate strings.
+ * A value exceeding the range of the member is rejected.
+ * <pre>
+ * public class Server {
+ *    &#64;CLUnits(Format.SIZE)
+ *    &#64;CLOption(key='x', longKey="heap", expectsValue=true)
+ *    private long heapBytes;
+ *
+ *    &#64;CLUnits(value=Format.DURATION, timeUnit=TimeUnit.SECONDS)
+ *    &#64;CLOption(key='t', longKey="timeout", expectsValue=true)
+ *    private int timeoutSeconds;
+ * }
+ * </pre>
+ * <code>--heap=4GiB --timeout=1m30s</code> results in 4294967296 bytes and 90 seconds.
+ * A member with units can not have a {@link TypeAdapter}.
+ *
+ * @see CLOption
+ * @see CLArgument
+ */
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface CLUnits {
+   /**
+    * The format of the values.
+    *
+    * @return the format of the values
+    */
+   Format value() default Format.NUMBER;
+
+   /**
+    * The unit of the member, if the format is {@link Format#DURATION}.
+    * Durations given in finer units are truncated to this unit.
+    *
+    * @return the time unit of the member
+    */
+   TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+
+   /**
+    * The formats of human-friendly numbers.
+    */
+   enum Format {
+      /** A number without a unit like <code>1_000</code> or <code>0xFF</code> */
+      NUMBER,
+      /**
+       * A number of bytes followed by an optional unit, that is not case sensitive.
+       * The units <code>k</code>, <code>m</code>, <code>g</code>, <code>t</code>,
+       * <code>p</code> and <code>e</code> as well as <code>KiB</code>, <code>MiB</code>
+       * and so on are powers of 1024, like the JVM's <code>-Xmx4g</code>.
+       * The units <code>kB</code>, <code>MB</code> and so on are powers of 1000
+       * and <code>B</code> is one byte. The digits of a hexadecimal number are
+       * read first, so <code>0x1B</code> is 27 and not one byte.
+       */
+      SIZE,
+      /**
+       * One or more decimal numbers each followed by one of the units <code>d</code>,
+       * <code>h</code>, <code>m</code> (or <code>min</code>), <code>s</code>,
+       * <code>ms</code>, <code>us</code> (or <code>&micro;s</code>) and <code>ns</code>
+       * like <code>1h30m</code>. A single number without a unit is given in the
+       * {@link CLUnits#timeUnit()} of the member.
+       */
+      DURATION
+   }
+}
@@ -3,14 +3,48 @@ package com.github.koettlitz.clom;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
+/**
+ * Annotates a field to receive all plain command line arguments.
+ * The field has to be of one of the following types:
+ * <ul>
+ *     <li>a {@link Collection}, which is filled with all converted arguments
+ *     (see {@link #collectionType()}),</li>
+ *     <li>an {@link Iterator} or a {@link Stream}, whose elements are converted
+ *     lazily while they are pulled by the application, so an
+ *     {@link IllegalArgumentException} of the {@link #adapter()} is thrown
+ *     at that time instead of while parsing,</li>
+ *     <li>a {@link Consumer}, that has to be initialized by the target type
+ *     and is called with each converted argument while parsing.</li>
+ * </ul>
+ * Only the latter three avoid holding all converted elements in memory at the same time.
+ * The arguments are still scanned completely before any of them is converted, so
+ * the unconverted tokens are held in memory, and an {@link Iterator} or a
+ * {@link Stream} keeps them until it is exhausted. Only the conversion is lazy.
+ * The exception are the arguments following <code>--</code>, if they are parsed
+ * from a {@link com.github.koettlitz.util.PeekableIterator} like an {@link ArgFileExpander},
+ * e.g. <code>-- @files.txt</code>. No options follow them, so they are read from
+ * the iterator only while the latter three consume them and are never held in memory
+ * as a whole. An {@link Iterator} or a {@link Stream} reads them after parsing,
+ * so the iterator must not be closed before they are exhausted.
+ */
 @Retention(RUNTIME)
 @Target(FIELD)
 public @interface CLVarArgs {
+    /**
+     * Provides the type of the collection, that is instantiated to hold the
+     * converted arguments. It is ignored for fields of type {@link Iterator},
+     * {@link Stream} or {@link Consumer}.
+     *
+     * @return the type of the collection holding the converted arguments
+     */
     Class<? extends Collection> collectionType() default LinkedList.class;
 
     /**
@@ -0,0 +1,107 @@
+package com.github.koettlitz.clom;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.koettlitz.opt.ExpectedOption;
+
+/**
+ * Completes partial command lines of a target type. The names of the options
+ * and the constants of enum values are indexed by {@link PrefixTrie}s once
+ * per {@link ModelPlan}, so completing does not depend on the number of options.
+ */
+final class Completion {
+   private final ModelPlan<?> plan;
+   private final PrefixTrie options = new PrefixTrie();
+   private final Map<Binding, PrefixTrie> values = new IdentityHashMap<>();
+
+   Completion(ModelPlan<?> plan) throws InvalidTargetTypeException {
+      this.plan = plan;
+      for (Binding option : plan.options) {
+         if (option.key != ExpectedOption.NO_KEY)
+            options.add("-" + option.key);
+         if (!option.longKey.isEmpty())
+            options.add("--" + option.longKey);
+         if (option.expectsValue)
+            addValues(option);
+      }
+
+      for (Binding argument : plan.arguments)
+         addValues(argument);
+   }
+
+   private void addValues(Binding binding) throws InvalidTargetTypeException {
+      if (!binding.type.isEnum())
+         return;
+
+      PrefixTrie trie = new PrefixTrie();
+      for (Object constant : binding.type.getEnumConstants())
+         trie.add(binding.format(constant));
+
+      values.put(binding, trie);
+   }
+
+   /**
+    * Provides the candidates for the argument at the <code>cursor</code>
+    * position, see {@link CLOM#complete(String[], int)}.
+    */
+   List<String> complete(String[] partialArgs, int cursor) throws IndexOutOfBoundsException {
+      if (cursor < 0 || cursor > partialArgs.length)
+         throw new IndexOutOfBoundsException("Cursor " + cursor + " is out of the bounds of " + partialArgs.length + " args.");
+
+      boolean plainOnly = false;
+      Binding expectingValue = null;
+      int plainCount = 0;
+      for (int i = 0; i < cursor; i++) {
+         String arg = partialArgs[i];
+         if (expectingValue != null) {
+            expectingValue = null;
+         } else if (plainOnly || arg.length() < 2 || arg.charAt(0) != '-') {
+            plainCount++;
+         } else if (arg.equals("--")) {
+            plainOnly = true;
+         } else if (arg.charAt(1) != '-') {
+            // The last option of a cluster of short options may expect a value
+            Binding option = plan.optionByKey(arg.charAt(arg.length() - 1));
+            if (option != null && option.expectsValue)
+               expectingValue = option;
+         }
+      }
+
+      String prefix = cursor < partialArgs.length ? partialArgs[cursor] : "";
+      List<String> candidates = new ArrayList<>();
+      if (expectingValue != null) {
+         addValues(expectingValue, "", prefix, candidates);
+      } else if (!plainOnly && prefix.startsWith("--") && prefix.indexOf('=') > 0) {
+         int separator = prefix.indexOf('=');
+         Binding option = plan.optionByLongKey(prefix, 2, separator);
+         if (option != null)
+            addValues(option, prefix.substring(0, separator + 1), prefix.substring(separator + 1), candidates);
+      } else if (!plainOnly && prefix.startsWith("-")) {
+         options.complete(prefix, candidates);
+      } else {
+         if (plainCount < plan.arguments.length)
+            addValues(plan.arguments[plainCount], "", prefix, candidates);
+         if (!plainOnly && prefix.isEmpty())
+            options.complete(prefix, candidates);
+      }
+      return candidates;
+   }
+
+   private void addValues(Binding binding, String head, String prefix, List<String> candidates) {
+      PrefixTrie trie = values.get(binding);
+      if (trie == null)
+         return;
+
+      if (head.isEmpty()) {
+         trie.complete(prefix, candidates);
+      } else {
+         int start = candidates.size();
+         trie.complete(prefix, candidates);
+         for (int i = start; i < candidates.size(); i++)
+            candidates.set(i, head + candidates.get(i));
+      }
+   }
+}
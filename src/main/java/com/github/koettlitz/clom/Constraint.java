@@ -0,0 +1,181 @@
+package com.github.koettlitz.clom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.github.koettlitz.opt.ExpectedOption;
+
+/**
+ * A constraint between options declared by {@link CLExclusive}, {@link CLRequires}
+ * or {@link CLAtLeastOne}. The options are resolved to a bit mask by the
+ * {@link Binding#index} of their bindings once, when the {@link ModelPlan}
+ * is compiled, so checking a constraint only combines the mask with the
+ * bits of the options given on the command line.
+ */
+final class Constraint {
+   enum Type {
+      EXCLUSIVE, REQUIRES, AT_LEAST_ONE
+   }
+
+   private final Type type;
+   /** The group declaring the constraint or <code>null</code> for the target type */
+   private final Group group;
+   /** The option requiring the others, only for {@link Type#REQUIRES} */
+   private final long[] trigger;
+   /** The constrained or, for {@link Type#REQUIRES}, the required options */
+   private final long[] mask;
+   private final String message;
+
+   private Constraint(Type type, Group group, long[] trigger, long[] mask, String message) {
+      this.type = type;
+      this.group = group;
+      this.trigger = trigger;
+      this.mask = mask;
+      this.message = message;
+   }
+
+   /**
+    * Resolves the constraints declared by the given type.
+    *
+    * @param group the group of the type or <code>null</code> for the target type
+    * @param options the options declared by the type
+    *
+    * @throws InvalidTargetTypeException if a constraint refers to an undeclared option
+    */
+   static void resolve(Class<?> type,
+                       Group group,
+                       List<Binding> options,
+                       List<Constraint> constraints) throws InvalidTargetTypeException {
+      for (CLExclusive exclusive : type.getAnnotationsByType(CLExclusive.class)) {
+         List<Binding> bindings = find(type, options, exclusive.value(), exclusive.longKeys());
+         if (bindings.size() < 2)
+            throw new InvalidTargetTypeException("CLExclusive of type " + type.getName() + " needs at least two options.");
+
+         constraints.add(new Constraint(Type.EXCLUSIVE,
+                                        group,
+                                        null,
+                                        mask(bindings),
+                                        "The options " + names(bindings) + " can not be combined."));
+      }
+
+      for (CLAtLeastOne atLeastOne : type.getAnnotationsByType(CLAtLeastOne.class)) {
+         List<Binding> bindings = find(type, options, atLeastOne.value(), atLeastOne.longKeys());
+         if (bindings.isEmpty())
+            throw new InvalidTargetTypeException("CLAtLeastOne of type " + type.getName() + " needs at least one option.");
+
+         constraints.add(new Constraint(Type.AT_LEAST_ONE,
+                                        group,
+                                        null,
+                                        mask(bindings),
+                                        "At least one of the options " + names(bindings) + " is required."));
+      }
+
+      for (CLRequires requires : type.getAnnotationsByType(CLRequires.class)) {
+         List<Binding> trigger = find(type, options, new char[] {requires.key()}, new String[] {requires.longKey()});
+         List<Binding> required = find(type, options, requires.requires(), requires.requiresLongKeys());
+         if (trigger.size() != 1 || required.isEmpty()) {
+            throw new InvalidTargetTypeException("CLRequires of type " + type.getName()
+                                                 + " needs exactly one requiring option and at least one required option.");
+         }
+
+         constraints.add(new Constraint(Type.REQUIRES,
+                                        group,
+                                        mask(trigger),
+                                        mask(required),
+                                        "The option " + trigger.get(0).optionName() + " requires " + names(required) + "."));
+      }
+   }
+
+   /**
+    * Checks this constraint against the options given on the command line.
+    *
+    * @throws OptionConstraintException if the constraint is violated
+    */
+   void check(ParsedArgs parsed) throws OptionConstraintException {
+      if (group != null && !parsed.groups[group.index])
+         return;
+
+      long[] present = parsed.present;
+      boolean violated;
+      switch (type) {
+         case EXCLUSIVE:
+            int count = 0;
+            for (int i = 0; i < mask.length; i++)
+               count += Long.bitCount(present[i] & mask[i]);
+            violated = count > 1;
+            break;
+         case AT_LEAST_ONE:
+            violated = true;
+            for (int i = 0; i < mask.length && violated; i++)
+               violated = (present[i] & mask[i]) == 0;
+            break;
+         default:
+            violated = false;
+            if (intersects(present, trigger)) {
+               for (int i = 0; i < mask.length && !violated; i++)
+                  violated = (present[i] & mask[i]) != mask[i];
+            }
+      }
+
+      if (violated)
+         throw new OptionConstraintException(message);
+   }
+
+   private static boolean intersects(long[] present, long[] mask) {
+      for (int i = 0; i < mask.length; i++) {
+         if ((present[i] & mask[i]) != 0)
+            return true;
+      }
+      return false;
+   }
+
+   private static List<Binding> find(Class<?> type,
+                                     List<Binding> options,
+                                     char[] keys,
+                                     String[] longKeys) throws InvalidTargetTypeException {
+      List<Binding> found = new ArrayList<>();
+      for (char key : keys) {
+         if (key != ExpectedOption.NO_KEY)
+            found.add(find(type, options, key, null));
+      }
+      for (String longKey : longKeys) {
+         if (!longKey.isEmpty())
+            found.add(find(type, options, ExpectedOption.NO_KEY, longKey));
+      }
+      return found;
+   }
+
+   private static Binding find(Class<?> type,
+                               List<Binding> options,
+                               char key,
+                               String longKey) throws InvalidTargetTypeException {
+      for (Binding option : options) {
+         if (longKey == null ? option.declaredKey == key : option.declaredLongKey.equals(longKey))
+            return option;
+      }
+
+      String name = longKey == null ? "-" + key : "--" + longKey;
+      throw new InvalidTargetTypeException("The constraint of type " + type.getName()
+                                           + " refers to the undeclared option " + name + ".");
+   }
+
+   /**
+    * Creates the bit mask of the given options, that is long enough
+    * for the highest index of the options.
+    */
+   private static long[] mask(List<Binding> options) {
+      int max = 0;
+      for (Binding option : options)
+         max = Math.max(max, option.index);
+
+      long[] mask = new long[(max >>> 6) + 1];
+      for (Binding option : options)
+         mask[option.index >>> 6] |= 1L << option.index;
+      return mask;
+   }
+
+   private static String names(List<Binding> options) {
+      return options.stream().map(Binding::optionName).collect(Collectors.joining(", "));
+   }
+}
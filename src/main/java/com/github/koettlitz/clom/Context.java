@@ -1,24 +1,23 @@
 package com.github.koettlitz.clom;
 
-import com.github.koettlitz.opt.ArgumentModel;
-import com.github.koettlitz.opt.ArgumentParserBuilder;
-
 import static java.util.Objects.requireNonNull;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.util.TreeSet;
 
-public class Context<T> {
+class Context<T> {
    final Class<T> targetType;
-   final ArgumentParserBuilder builder;
-   Field currentField;
-   ArgumentModel argModel;
-   Object target;
+   Member currentMember;
    TreeSet<ArgumentAdder> argAdders = new TreeSet<>();
+   /** The number of bindings created so far */
+   int bindingCount;
+   /** The number of groups created so far */
+   int groupCount;
+   /** The group whose members are currently resolved or <code>null</code> for the target type */
+   Group currentGroup;
 
-   Context(Class<T> targetType, ArgumentParserBuilder builder) {
+   Context(Class<T> targetType) {
       this.targetType = requireNonNull(targetType);
-      this.builder = requireNonNull(builder);
    }
 
    public Class<T> getTargetType() {
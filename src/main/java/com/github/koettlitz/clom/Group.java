@@ -0,0 +1,134 @@
+package com.github.koettlitz.clom;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A field annotated with {@link CLGroup}, whose options are flattened into
+ * the {@link ModelPlan} of the target type. The bindings of the options of
+ * the group refer to it, to reach the object of the group from the target
+ * object. The object of the group is created when the first value is assigned.
+ */
+final class Group {
+   private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+   private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+   /** The position of this group in {@link ModelPlan#groups} */
+   final int index;
+   /** The group containing this group or <code>null</code> for a field of the target type */
+   final Group parent;
+   /** The name of the field */
+   final String name;
+   /** The type of the field */
+   final Class<?> type;
+   /** The class declaring the field */
+   final Class<?> declaringClass;
+   /** The concatenated prefixes of this group and its parents */
+   final String prefix;
+   private final MethodHandle setter;
+   private final MethodHandle getter;
+   private final MethodHandle constructor;
+
+   Group(Context<?> context, Group parent, Field field, CLGroup annotation) throws InvalidTargetTypeException {
+      this.index = context.groupCount++;
+      this.parent = parent;
+      this.name = field.getName();
+      this.type = field.getType();
+      this.declaringClass = field.getDeclaringClass();
+      String prefix = CLOM.get(annotation.prefix(), field.getName() + ".");
+      this.prefix = parent == null ? prefix : parent.prefix + prefix;
+
+      if (Modifier.isStatic(field.getModifiers())) {
+         throw new InvalidTargetTypeException("Group " + describe() + " can not be static.");
+      }
+
+      try {
+         field.setAccessible(true);
+         MethodHandles.Lookup lookup = MethodHandles.lookup();
+         setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+         getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+
+         Constructor<?> constructor = type.getDeclaredConstructor();
+         constructor.setAccessible(true);
+         this.constructor = lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         String msg = "Could not access group " + describe()
+                      + ". Its type has to provide a constructor without parameters.";
+
+         throw new InvalidTargetTypeException(msg, e);
+      }
+   }
+
+   /**
+    * Provides the object of this group within the given target object.
+    * Missing objects of this group and its parents are created.
+    */
+   Object owner(Object target) throws InvalidTargetTypeException {
+      Object owner = parent == null ? target : parent.owner(target);
+      try {
+         Object value = (Object) getter.invokeExact(owner);
+         if (value == null) {
+            value = (Object) constructor.invokeExact();
+            setter.invokeExact(owner, value);
+         }
+         return value;
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidTargetTypeException("Could not create the object of group " + describe(), (Exception) e);
+      }
+   }
+
+   /**
+    * Provides the object of this group within the given target object
+    * without creating it.
+    *
+    * @return the object or <code>null</code> if it does not exist
+    */
+   Object find(Object target) throws InvalidTargetTypeException {
+      Object owner = parent == null ? target : parent.find(target);
+      if (owner == null)
+         return null;
+
+      return read(owner);
+   }
+
+   /**
+    * Assigns a new object of this group or <code>null</code> to the given
+    * object of the parent group or the target object.
+    */
+   void reset(Object owner, boolean create) throws InvalidTargetTypeException {
+      try {
+         setter.invokeExact(owner, create ? (Object) constructor.invokeExact() : null);
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidTargetTypeException("Could not reset group " + describe(), (Exception) e);
+      }
+   }
+
+   Object read(Object owner) throws InvalidTargetTypeException {
+      try {
+         return (Object) getter.invokeExact(owner);
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidTargetTypeException("Could not read group " + describe(), (Exception) e);
+      }
+   }
+
+   /**
+    * Whether the given field is the field of this group.
+    */
+   boolean is(Field field) {
+      return field.getDeclaringClass() == declaringClass && field.getName().equals(name);
+   }
+
+   String describe() {
+      return name + " of type " + declaringClass.getName();
+   }
+}
@@ -33,10 +33,10 @@ public class InvalidArgTypeException extends InvalidTargetTypeException {
    }
 
    private static String msgCanOnlyBeOneOfEither(String annotationA, String annotationB, Context<?> context) {
-      return String.format("A field can only represent either %s or %s. The field %s of class %s was annotated both.",
+      return String.format("A member can only represent either %s or %s. The member %s of class %s was annotated both.",
                            annotationA,
                            annotationB,
-                           context.currentField.getName(),
+                           context.currentMember.getName(),
                            context.targetType.getName());
    }
 }
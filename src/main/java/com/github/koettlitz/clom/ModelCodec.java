@@ -0,0 +1,455 @@
+package com.github.koettlitz.clom;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Encodes objects of an annotated target type into a compact binary form
+ * and decodes them again, e.g. to pass a parsed command line from one
+ * process to another without parsing it again.
+ * Only the members annotated with {@link CLArgument}, {@link CLOption}
+ * and {@link CLVarArgs} are encoded:
+ * <ul>
+ *    <li>primitive values are written directly in the byte order of the buffer,</li>
+ *    <li>Strings are written as length-prefixed UTF-8,</li>
+ *    <li>values of other types (and varargs elements) are written as the
+ *    String their {@link TypeAdapter#format(Object)} provides and are parsed
+ *    by the adapter when they are decoded,</li>
+ *    <li>repeatable options are written as the number of their occurrences
+ *    followed by the value of each occurrence, e.g. <code>key=value</code> for maps,</li>
+ *    <li>wrapper types, Strings and other objects are preceded by a byte
+ *    that indicates whether the value is <code>null</code>.</li>
+ * </ul>
+ * Every encoded object starts with a fingerprint of the annotated members of
+ * the target type, so decoding an object that was encoded for a differently
+ * declared type fails instead of producing garbage. Varargs of type
+ * {@link java.util.Iterator} or {@link java.util.stream.Stream} can not be
+ * encoded without consuming them, varargs of type {@link Consumer} are skipped.
+ * <pre>
+ * ModelCodec&lt;MyArgModel&gt; codec = new ModelCodec&lt;&gt;(MyArgModel.class);
+ * ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(model));
+ * codec.encode(model, buffer);
+ * buffer.flip();
+ * MyArgModel copy = codec.decode(buffer);
+ * </pre>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @param <T> The target type
+ */
+public final class ModelCodec<T> {
+   private enum ValueType {
+      BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, FORMATTED, VAR_ARGS, REPEATED
+   }
+
+   private static final byte NULL = 0;
+   private static final byte PRESENT = 1;
+
+   private final ModelPlan<T> plan;
+   private final Binding[] bindings;
+   private final ValueType[] valueTypes;
+   private final long fingerprint;
+
+   /**
+    * Creates a new codec for objects of the given target type.
+    *
+    * @param targetType the annotated type of the objects to be encoded
+    *
+    * @throws InvalidTargetTypeException if <code>targetType</code> is invalidly
+    * annotated or an annotated member can not be read, e.g. a setter without
+    * a getter
+    */
+   public ModelCodec(Class<T> targetType) throws InvalidTargetTypeException {
+      this.plan = ModelPlan.of(targetType);
+      this.bindings = plan.bindings.clone();
+      this.valueTypes = new ValueType[bindings.length];
+
+      long hash = hash(0xcbf29ce484222325L, targetType.getName());
+      for (int i = 0; i < bindings.length; i++) {
+         Binding binding = bindings[i];
+         if (!binding.isReadable()) {
+            throw new InvalidTargetTypeException("The " + binding.describe()
+                                                 + " can not be encoded, because it has no getter.");
+         }
+
+         valueTypes[i] = valueType(binding);
+         hash = hash(hash, binding.kind.name());
+         hash = hash(hash, binding.group == null ? binding.name : binding.group.prefix + binding.name);
+         hash = hash(hash, binding.type.getName());
+      }
+      this.fingerprint = hash;
+   }
+
+   /**
+    * Provides the fingerprint of the annotated members of the target type,
+    * that every encoded object starts with.
+    *
+    * @return the fingerprint of the target type
+    */
+   public long getFingerprint() {
+      return fingerprint;
+   }
+
+   /**
+    * Calculates the number of bytes the given model is encoded into.
+    *
+    * @param model the object to be encoded
+    *
+    * @return the number of bytes {@link #encode(Object, ByteBuffer)} writes
+    *
+    * @throws InvalidTargetTypeException if varargs of type {@link java.util.Iterator}
+    * or {@link java.util.stream.Stream} are set
+    */
+   public int encodedSize(T model) throws InvalidTargetTypeException {
+      int size = Long.BYTES;
+      for (int i = 0; i < bindings.length; i++) {
+         Binding binding = bindings[i];
+         Object value = binding.get(model);
+         switch (valueTypes[i]) {
+            case BOOLEAN:
+            case BYTE:
+               size += Byte.BYTES;
+               break;
+            case SHORT:
+               size += Short.BYTES;
+               break;
+            case CHAR:
+               size += Character.BYTES;
+               break;
+            case INT:
+               size += Integer.BYTES;
+               break;
+            case LONG:
+               size += Long.BYTES;
+               break;
+            case FLOAT:
+               size += Float.BYTES;
+               break;
+            case DOUBLE:
+               size += Double.BYTES;
+               break;
+            case STRING:
+               size += value == null ? 0 : stringSize((String) value);
+               break;
+            case FORMATTED:
+               size += value == null ? 0 : stringSize(binding.format(value));
+               break;
+            case VAR_ARGS:
+               Collection<?> elements = varArgs(binding, value);
+               size += Integer.BYTES;
+               if (elements != null) {
+                  TypeAdapter<Object> adapter = adapter(binding);
+                  for (Object element : elements)
+                     size += stringSize(adapter.format(element));
+               }
+               break;
+            case REPEATED:
+               if (value != null) {
+                  size += Integer.BYTES;
+                  for (String occurrence : binding.occurrences(value))
+                     size += stringSize(occurrence);
+               }
+               break;
+         }
+
+         if (isNullable(binding, valueTypes[i]))
+            size += Byte.BYTES;
+      }
+      return size;
+   }
+
+   /**
+    * Encodes the given model into the given buffer, starting at its current position.
+    *
+    * @param model the object to be encoded
+    * @param buffer the buffer to write to
+    *
+    * @return the given <code>buffer</code>
+    *
+    * @throws BufferOverflowException if the buffer has not enough space remaining,
+    * see {@link #encodedSize(Object)}
+    * @throws InvalidTargetTypeException if varargs of type {@link java.util.Iterator}
+    * or {@link java.util.stream.Stream} are set
+    * @throws IllegalArgumentException if a value can not be formatted by its {@link TypeAdapter}
+    */
+   public ByteBuffer encode(T model, ByteBuffer buffer) throws BufferOverflowException,
+                                                               InvalidTargetTypeException,
+                                                               IllegalArgumentException {
+      requireNonNull(model);
+      buffer.putLong(fingerprint);
+      for (int i = 0; i < bindings.length; i++) {
+         Binding binding = bindings[i];
+         ValueType valueType = valueTypes[i];
+         Object value = binding.get(model);
+         if (isNullable(binding, valueType)) {
+            buffer.put(value == null ? NULL : PRESENT);
+            if (value == null)
+               continue;
+         }
+
+         switch (valueType) {
+            case BOOLEAN:
+               buffer.put((Boolean) value ? PRESENT : NULL);
+               break;
+            case BYTE:
+               buffer.put((Byte) value);
+               break;
+            case SHORT:
+               buffer.putShort((Short) value);
+               break;
+            case CHAR:
+               buffer.putChar((Character) value);
+               break;
+            case INT:
+               buffer.putInt((Integer) value);
+               break;
+            case LONG:
+               buffer.putLong((Long) value);
+               break;
+            case FLOAT:
+               buffer.putFloat((Float) value);
+               break;
+            case DOUBLE:
+               buffer.putDouble((Double) value);
+               break;
+            case STRING:
+               putString(buffer, (String) value);
+               break;
+            case FORMATTED:
+               putString(buffer, binding.format(value));
+               break;
+            case VAR_ARGS:
+               Collection<?> elements = varArgs(binding, value);
+               if (elements == null) {
+                  buffer.putInt(-1);
+               } else {
+                  TypeAdapter<Object> adapter = adapter(binding);
+                  buffer.putInt(elements.size());
+                  for (Object element : elements)
+                     putString(buffer, adapter.format(element));
+               }
+               break;
+            case REPEATED:
+               List<String> occurrences = binding.occurrences(value);
+               buffer.putInt(occurrences.size());
+               for (String occurrence : occurrences)
+                  putString(buffer, occurrence);
+               break;
+         }
+      }
+      return buffer;
+   }
+
+   /**
+    * Decodes an object of the target type from the given buffer,
+    * starting at its current position.
+    *
+    * @param buffer the buffer to read from
+    *
+    * @return the decoded object
+    *
+    * @throws IllegalArgumentException if the buffer does not contain an object
+    * encoded for the target type, i.e. the fingerprint does not match, or
+    * a value can not be parsed by its {@link TypeAdapter}
+    * @throws BufferUnderflowException if the buffer ends before the object is complete
+    * @throws InvalidTargetTypeException if the target type can not be instantiated
+    */
+   public T decode(ByteBuffer buffer) throws IllegalArgumentException,
+                                             BufferUnderflowException,
+                                             InvalidTargetTypeException {
+      long actual = buffer.getLong();
+      if (actual != fingerprint) {
+         String msg = String.format("The buffer does not contain an object of type %s (fingerprint %016x instead of %016x).",
+                                    plan.targetType.getName(),
+                                    actual,
+                                    fingerprint);
+
+         throw new IllegalArgumentException(msg);
+      }
+
+      T model = plan.newInstance();
+      for (int i = 0; i < bindings.length; i++) {
+         Binding binding = bindings[i];
+         ValueType valueType = valueTypes[i];
+         if (isNullable(binding, valueType) && buffer.get() == NULL) {
+            // The object of a group is only created for the values it contains
+            if (binding.group == null)
+               binding.set(model, null);
+            continue;
+         }
+
+         switch (valueType) {
+            case BOOLEAN:
+               binding.set(model, buffer.get() != NULL);
+               break;
+            case BYTE:
+               binding.set(model, buffer.get());
+               break;
+            case SHORT:
+               binding.set(model, buffer.getShort());
+               break;
+            case CHAR:
+               binding.set(model, buffer.getChar());
+               break;
+            case INT:
+               binding.set(model, buffer.getInt());
+               break;
+            case LONG:
+               binding.set(model, buffer.getLong());
+               break;
+            case FLOAT:
+               binding.set(model, buffer.getFloat());
+               break;
+            case DOUBLE:
+               binding.set(model, buffer.getDouble());
+               break;
+            case STRING:
+               binding.set(model, getString(buffer));
+               break;
+            case FORMATTED:
+               binding.set(model, binding.convert(getString(buffer)));
+               break;
+            case VAR_ARGS:
+               decodeVarArgs(binding, model, buffer);
+               break;
+            case REPEATED:
+               int count = buffer.getInt();
+               if (count < 0 || count > buffer.remaining() / Integer.BYTES)
+                  throw new BufferUnderflowException();
+               List<String> occurrences = new ArrayList<>(count);
+               for (int j = 0; j < count; j++)
+                  occurrences.add(getString(buffer));
+
+               binding.set(model, binding.collect(occurrences));
+               break;
+         }
+      }
+      return model;
+   }
+
+   private void decodeVarArgs(Binding binding, T model, ByteBuffer buffer) throws InvalidTargetTypeException {
+      int size = buffer.getInt();
+      if (size < 0) {
+         if (Collection.class.isAssignableFrom(binding.type))
+            binding.set(model, null);
+         return;
+      }
+
+      Collection<Object> collection = binding.newCollection();
+      TypeAdapter<?> adapter = binding.newAdapter();
+      for (int j = 0; j < size; j++)
+         collection.add(adapter.parse(getString(buffer)));
+
+      binding.set(model, collection);
+   }
+
+   @SuppressWarnings("unchecked")
+   private static TypeAdapter<Object> adapter(Binding binding) throws InvalidTargetTypeException {
+      return (TypeAdapter<Object>) binding.newAdapter();
+   }
+
+   private static Collection<?> varArgs(Binding binding, Object value) throws InvalidTargetTypeException {
+      if (value == null || value instanceof Consumer)
+         return null;
+      if (value instanceof Collection)
+         return (Collection<?>) value;
+
+      String msg = "VarArgs " + binding.describe() + " can not be encoded without consuming them.";
+      throw new InvalidTargetTypeException(msg);
+   }
+
+   private static boolean isNullable(Binding binding, ValueType valueType) {
+      // The values of groups, whose objects do not exist, are null
+      return valueType != ValueType.VAR_ARGS && (binding.group != null || !binding.type.isPrimitive());
+   }
+
+   private static ValueType valueType(Binding binding) {
+      if (binding.kind == Binding.Kind.VAR_ARGS)
+         return ValueType.VAR_ARGS;
+      if (binding.collectsOccurrences())
+         return ValueType.REPEATED;
+
+      Class<?> type = binding.type;
+      if (type == Boolean.TYPE || type == Boolean.class)
+         return ValueType.BOOLEAN;
+      if (type == Byte.TYPE || type == Byte.class)
+         return ValueType.BYTE;
+      if (type == Short.TYPE || type == Short.class)
+         return ValueType.SHORT;
+      if (type == Character.TYPE || type == Character.class)
+         return ValueType.CHAR;
+      if (type == Integer.TYPE || type == Integer.class)
+         return ValueType.INT;
+      if (type == Long.TYPE || type == Long.class)
+         return ValueType.LONG;
+      if (type == Float.TYPE || type == Float.class)
+         return ValueType.FLOAT;
+      if (type == Double.TYPE || type == Double.class)
+         return ValueType.DOUBLE;
+      if (type == String.class)
+         return ValueType.STRING;
+
+      return ValueType.FORMATTED;
+   }
+
+   private static int stringSize(String value) {
+      int size = Integer.BYTES;
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         if (c < 0x80) {
+            size += 1;
+         } else if (c < 0x800) {
+            size += 2;
+         } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+            size += 4;
+            i++;
+         } else if (Character.isSurrogate(c)) {
+            // An unpaired surrogate is replaced by '?'
+            size += 1;
+         } else {
+            size += 3;
+         }
+      }
+      return size;
+   }
+
+   private static void putString(ByteBuffer buffer, String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+   }
+
+   private static String getString(ByteBuffer buffer) throws BufferUnderflowException {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining())
+         throw new BufferUnderflowException();
+
+      if (buffer.hasArray()) {
+         int offset = buffer.arrayOffset() + buffer.position();
+         buffer.position(buffer.position() + length);
+         return new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+      }
+
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   private static long hash(long hash, String value) {
+      // FNV-1a over the chars of the value and a separator
+      for (int i = 0; i < value.length(); i++) {
+         hash ^= value.charAt(i);
+         hash *= 0x100000001b3L;
+      }
+      hash ^= 0xff;
+      return hash * 0x100000001b3L;
+   }
+}
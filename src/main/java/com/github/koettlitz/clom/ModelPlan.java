@@ -0,0 +1,651 @@
+package com.github.koettlitz.clom;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.ExpectedOption;
+import com.github.koettlitz.opt.OptionBuilder;
+
+/**
+ * The compiled form of an annotated target type. All annotated members of
+ * the target type are resolved to {@link Binding}s and validated once, when
+ * the plan is compiled. The options of {@link CLGroup}s are flattened into the
+ * same bindings, so nested types are not analyzed again while parsing.
+ * Plans are cached per target type, so each type is only analyzed by reflection once.
+ * A plan retains its bindings and groups, whose strings are interned, and
+ * {@link MethodHandle}s to assign and construct the members. The values of
+ * the annotations are copied into their fields and members are read by
+ * handles looked up on the first read, so neither the annotations and reflected
+ * members nor a built {@link ArgumentParser} are retained. A plan holds no
+ * state per thread, the pooled {@link ParsedArgs} are shared by all plans.
+ *
+ * @param <T> The target type
+ */
+final class ModelPlan<T> {
+   private static final ClassValue<ModelPlan<?>> PLANS = new ClassValue<ModelPlan<?>>() {
+      @Override
+      protected ModelPlan<?> computeValue(Class<?> type) {
+         return new ModelPlan<>(type);
+      }
+   };
+
+   /**
+    * A parser without arguments and options, that only provides the default settings
+    * like the help arguments. It is shared, so it must not be modified.
+    */
+   static final ArgumentParser DEFAULT_SETTINGS = new ArgumentParserBuilder().buildAndGet();
+   /** Marks a mutable default value, that is read from a new instance on every reset */
+   private static final Object FRESH = new Object();
+   private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+         String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+         Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class,
+         File.class, URI.class, Class.class));
+
+   final Class<T> targetType;
+   /** All bindings in declaration order, fields first, followed by the bindings of their groups */
+   final Binding[] bindings;
+   /** All groups, parents before their nested groups */
+   final Group[] groups;
+   /** The constraints between options declared by the target type and its groups */
+   final Constraint[] constraints;
+   /** The argument bindings ordered by their index */
+   final Binding[] arguments;
+   final Binding[] options;
+   final Binding varArgs;
+   /** The keys of the options in ascending order, see {@link #optionByKey(char)} */
+   private final char[] keys;
+   /** The options by the position of their keys in {@link #keys} */
+   private final Binding[] optionsByKey;
+   /** The options by the hash of their long keys with linear probing, see {@link #optionByLongKey(String, int, int)} */
+   private final Binding[] longKeyTable;
+   private final MethodHandle constructor;
+   /**
+    * A new instance of the target type, whose values are omitted when writing args.
+    * None of its values is assigned to another object, unless it is immutable.
+    */
+   private volatile Object prototype;
+   /** The immutable values of the prototype or {@link #FRESH} by the index of their bindings */
+   private volatile Object[] defaults;
+   /** Whether the groups of the prototype exist by the index of the groups */
+   private boolean[] defaultGroups;
+   private volatile Completion completion;
+   private volatile Suggestions suggestions;
+
+   private ModelPlan(Class<T> targetType) throws InvalidTargetTypeException {
+      this.targetType = targetType;
+      Context<T> context = new Context<>(targetType);
+
+      List<Binding> bindings = new ArrayList<>();
+      List<Group> groups = new ArrayList<>();
+      List<Constraint> constraints = new ArrayList<>();
+      collect(context, targetType, null, bindings, groups, constraints);
+
+      List<Binding> options = new ArrayList<>();
+      Map<Character, Binding> optionsByKey = new TreeMap<>();
+      Map<String, Binding> optionsByLongKey = new HashMap<>();
+      Binding varArgs = null;
+      for (Binding binding : bindings) {
+         switch (binding.kind) {
+            case ARGUMENT:
+               try {
+                  context.argAdders.add(new ArgumentAdder(binding));
+               } catch (IllegalStateException e) {
+                  // Exception comes from the compare method of the argadder
+                  throw new InvalidTargetTypeException(e.getMessage(), e);
+               }
+               break;
+            case VAR_ARGS:
+               if (varArgs != null) {
+                  String msg = String.format("Only one field of type %s can be annotated with CLVarArgs, but %s and %s are.",
+                                             targetType.getName(),
+                                             varArgs.name,
+                                             binding.name);
+
+                  throw new InvalidTargetTypeException(msg);
+               }
+               varArgs = binding;
+               break;
+            default:
+               options.add(binding);
+               if (binding.key != ExpectedOption.NO_KEY)
+                  checkKey("key " + binding.key, optionsByKey.put(binding.key, binding), binding);
+               if (!binding.longKey.isEmpty())
+                  checkKey("long key " + binding.longKey, optionsByLongKey.put(binding.longKey, binding), binding);
+         }
+      }
+
+      this.bindings = bindings.toArray(new Binding[0]);
+      this.groups = groups.toArray(new Group[0]);
+      this.constraints = constraints.toArray(new Constraint[0]);
+      this.arguments = checkArgs(context);
+      this.options = options.toArray(new Binding[0]);
+      this.keys = new char[optionsByKey.size()];
+      this.optionsByKey = optionsByKey.values().toArray(new Binding[0]);
+      for (int i = 0; i < keys.length; i++)
+         keys[i] = this.optionsByKey[i].key;
+      this.longKeyTable = longKeyTable(optionsByLongKey.values());
+      this.varArgs = varArgs;
+      this.constructor = findConstructor(targetType);
+
+      if (varArgs != null && arguments.length > 0) {
+         String msg = String.format("VarArgs field %s of type %s can not be combined with CLArguments.",
+                                    varArgs.name,
+                                    targetType.getName());
+
+         throw new InvalidTargetTypeException(msg);
+      }
+   }
+
+   /**
+    * Checks that no two options, including the flattened options of groups, share a key.
+    *
+    * @param previous the option, that was assigned the key before, or <code>null</code>
+    */
+   private static void checkKey(String key, Binding previous, Binding binding) throws InvalidTargetTypeException {
+      if (previous != null) {
+         String msg = String.format("The options %s and %s have the same %s.",
+                                    previous.describe(),
+                                    binding.describe(),
+                                    key);
+
+         throw new InvalidTargetTypeException(msg);
+      }
+   }
+
+   /**
+    * Resolves the bindings and constraints of the given type and, recursively, of its groups.
+    */
+   private static void collect(Context<?> context,
+                               Class<?> type,
+                               Group group,
+                               List<Binding> bindings,
+                               List<Group> groups,
+                               List<Constraint> constraints) throws InvalidTargetTypeException {
+      int first = bindings.size();
+      for (Field field : type.getDeclaredFields()) {
+         CLGroup annotation = field.getDeclaredAnnotation(CLGroup.class);
+         if (annotation == null) {
+            context.currentGroup = group;
+            add(bindings, Binding.of(context, field));
+            continue;
+         }
+
+         context.currentMember = field;
+         checkGroup(context, group, field);
+         Group nested = new Group(context, group, field, annotation);
+         groups.add(nested);
+         collect(context, field.getType(), nested, bindings, groups, constraints);
+      }
+
+      context.currentGroup = group;
+      for (Method method : type.getDeclaredMethods())
+         add(bindings, Binding.of(context, method));
+
+      List<Binding> options = new ArrayList<>();
+      for (Binding binding : bindings.subList(first, bindings.size())) {
+         if (binding.group == group && binding.kind == Binding.Kind.OPTION)
+            options.add(binding);
+      }
+      Constraint.resolve(type, group, options, constraints);
+   }
+
+   private static void checkGroup(Context<?> context, Group group, Field field) throws InvalidTargetTypeException {
+      String msg = null;
+      if (field.isAnnotationPresent(CLOption.class)
+          || field.isAnnotationPresent(CLArgument.class)
+          || field.isAnnotationPresent(CLVarArgs.class)) {
+         msg = "The group " + field.getName() + " of type " + field.getDeclaringClass().getName()
+               + " can not be annotated as argument or option as well.";
+      } else if (field.getType() == context.targetType) {
+         msg = "The group " + field.getName() + " contains the target type " + context.targetType.getName() + " itself.";
+      }
+
+      for (Group parent = group; parent != null && msg == null; parent = parent.parent) {
+         if (parent.type == field.getType())
+            msg = "The group " + field.getName() + " of type " + field.getDeclaringClass().getName() + " contains itself.";
+      }
+
+      if (msg != null)
+         throw new InvalidTargetTypeException(msg);
+   }
+
+   /**
+    * Creates a hash table of the given options by their long keys, that is at
+    * most half full, so a probe always ends at an empty slot.
+    */
+   private static Binding[] longKeyTable(Collection<Binding> options) {
+      int size = 2;
+      while (size < options.size() * 2)
+         size <<= 1;
+
+      Binding[] table = new Binding[size];
+      for (Binding option : options) {
+         int i = option.longKey.hashCode() & (size - 1);
+         while (table[i] != null)
+            i = (i + 1) & (size - 1);
+         table[i] = option;
+      }
+      return table;
+   }
+
+   /**
+    * Finds the option with the given key by a binary search.
+    *
+    * @return the option or <code>null</code> if there is no such key
+    */
+   Binding optionByKey(char key) {
+      int i = Arrays.binarySearch(keys, key);
+      return i < 0 ? null : optionsByKey[i];
+   }
+
+   /**
+    * Finds the option, whose long key is the part of the given <code>token</code>
+    * between <code>begin</code> and <code>end</code>, without creating a substring.
+    *
+    * @return the option or <code>null</code> if there is no such long key
+    */
+   Binding optionByLongKey(String token, int begin, int end) {
+      // The same hash as String.hashCode() of the substring
+      int hash = 0;
+      for (int i = begin; i < end; i++)
+         hash = 31 * hash + token.charAt(i);
+
+      int length = end - begin;
+      int mask = longKeyTable.length - 1;
+      for (int i = hash & mask; longKeyTable[i] != null; i = (i + 1) & mask) {
+         String longKey = longKeyTable[i].longKey;
+         if (longKey.length() == length && token.regionMatches(begin, longKey, 0, length))
+            return longKeyTable[i];
+      }
+      return null;
+   }
+
+   /**
+    * Finds the option, whose long key are the UTF-8 encoded bytes between
+    * <code>begin</code> and <code>end</code>. ASCII keys are matched on the bytes,
+    * other keys are decoded first.
+    *
+    * @return the option or <code>null</code> if there is no such long key
+    */
+   Binding optionByLongKey(ByteBuffer bytes, int begin, int end) {
+      int hash = 0;
+      for (int i = begin; i < end; i++) {
+         byte b = bytes.get(i);
+         if (b < 0) {
+            String longKey = ByteTokens.decode(bytes, begin, end);
+            return optionByLongKey(longKey, 0, longKey.length());
+         }
+         hash = 31 * hash + b;
+      }
+
+      int mask = longKeyTable.length - 1;
+      for (int i = hash & mask; longKeyTable[i] != null; i = (i + 1) & mask) {
+         if (ByteTokens.equalsAscii(bytes, begin, end, longKeyTable[i].longKey))
+            return longKeyTable[i];
+      }
+      return null;
+   }
+
+   /**
+    * Provides the plan of the given target type. The plan is compiled when
+    * it is requested for the first time and cached afterwards.
+    *
+    * @throws InvalidTargetTypeException if <code>targetType</code> is invalidly annotated
+    */
+   @SuppressWarnings("unchecked")
+   static <T> ModelPlan<T> of(Class<T> targetType) throws InvalidTargetTypeException {
+      return (ModelPlan<T>) PLANS.get(requireNonNull(targetType));
+   }
+
+   /**
+    * Declares the arguments and options of this plan to the given builder
+    * and builds the parser.
+    */
+   ArgumentParser buildParser(ArgumentParserBuilder builder) throws InvalidTargetTypeException {
+      if (varArgs != null) {
+         try {
+            builder.setVarArgs(true);
+         } catch (IllegalStateException e) {
+            String msg = String.format("Error with VarArgs annotation in type %s at field %s: \"%s\"",
+                                       targetType.getName(),
+                                       varArgs.name,
+                                       e.getMessage());
+
+            throw new InvalidTargetTypeException(msg, e);
+         }
+      }
+
+      for (Binding option : options) {
+         OptionBuilder optionBuilder = option.key == ExpectedOption.NO_KEY
+                                       ? builder.buildOption(option.longKey)
+                                       : builder.buildOption(option.key).setLongKey(option.longKey);
+
+         optionBuilder.setDescription(option.description)
+                      .setExpectsValue(option.expectsValue)
+                      .build();
+      }
+
+      for (Binding argument : arguments)
+         new ArgumentAdder(argument).addArgumentTo(builder);
+
+      return builder.buildAndGet();
+   }
+
+   /**
+    * Builds a parser by a default {@link ArgumentParserBuilder}, e.g. to print
+    * the usage. It is not retained, because the plan parses by its bindings and
+    * takes the default settings from {@link #DEFAULT_SETTINGS}.
+    */
+   ArgumentParser defaultParser() throws InvalidTargetTypeException {
+      return buildParser(new ArgumentParserBuilder());
+   }
+
+   /**
+    * Provides the index of the names and values to complete partial
+    * command lines by. It is built when it is requested for the first time.
+    */
+   Completion completion() throws InvalidTargetTypeException {
+      Completion completion = this.completion;
+      if (completion == null)
+         this.completion = completion = new Completion(this);
+
+      return completion;
+   }
+
+   /**
+    * Provides the index of the names and values to suggest instead of
+    * mistyped ones. It is built when it is requested for the first time.
+    */
+   Suggestions suggestions() throws InvalidTargetTypeException {
+      Suggestions suggestions = this.suggestions;
+      if (suggestions == null)
+         this.suggestions = suggestions = new Suggestions(this);
+
+      return suggestions;
+   }
+
+   /**
+    * Creates a new instance of the target type by its constructor without parameters.
+    *
+    * @throws InvalidTargetTypeException if the target type can not be instantiated
+    */
+   @SuppressWarnings("unchecked")
+   T newInstance() throws InvalidTargetTypeException {
+      if (constructor == null)
+         throw new InvalidTargetTypeException("Could not instantiate target object of type " + targetType);
+
+      try {
+         return (T) (Object) constructor.invokeExact();
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new InvalidTargetTypeException("Could not instantiate target object of type " + targetType, (Exception) e);
+      }
+   }
+
+   /**
+    * Writes the command line tokens, that are parsed back into an object
+    * equal to the given <code>model</code>, to the given sink.
+    * Options and optional arguments, whose values equal their declared default
+    * values or the ones of a newly instantiated target object, are omitted,
+    * because parsing assigns the same values if they are absent.
+    *
+    * @throws InvalidTargetTypeException if a member can not be read, e.g. a
+    * setter without a getter or varargs of type {@link Iterator} or {@link Stream}
+    * @throws IllegalArgumentException if a value can not be represented on the
+    * command line, e.g. a missing mandatory argument
+    */
+   void writeArgs(Object model, Consumer<String> sink) throws InvalidTargetTypeException,
+                                                              IllegalArgumentException {
+      Object prototype = prototype();
+      for (Binding option : options) {
+         Object value = option.get(model);
+         if (option.collect == Binding.Collect.COUNT) {
+            if (value != null)
+               writeCount(option, (Integer) value, sink);
+         } else if (!option.expectsValue) {
+            if (Boolean.TRUE.equals(value))
+               writeOption(option, null, sink);
+         } else if (value == null || isDefault(option, value, prototype)) {
+            continue;
+         } else if (option.collectsOccurrences()) {
+            for (String occurrence : option.occurrences(value))
+               writeOption(option, occurrence, sink);
+         } else {
+            writeOption(option, option.format(value), sink);
+         }
+      }
+
+      String[] values = new String[arguments.length];
+      int count = 0;
+      for (int i = 0; i < arguments.length; i++) {
+         Binding argument = arguments[i];
+         Object value = argument.get(model);
+         if (value != null)
+            values[i] = argument.format(value);
+         if (argument.mandatory || value != null && !isDefault(argument, value, prototype))
+            count = i + 1;
+      }
+
+      boolean separated = false;
+      for (int i = 0; i < count; i++) {
+         if (values[i] == null) {
+            String msg = String.format("The argument %s of %s is not set, so the following arguments can not be represented on the command line.",
+                                       arguments[i].argumentName(),
+                                       arguments[i].describe());
+
+            throw new IllegalArgumentException(msg);
+         }
+
+         separated = writePlain(values[i], separated, sink);
+      }
+
+      if (varArgs != null)
+         writeVarArgs(varArgs.get(model), separated, sink);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void writeVarArgs(Object value, boolean separated, Consumer<String> sink) throws InvalidTargetTypeException {
+      if (value instanceof Collection) {
+         TypeAdapter<Object> adapter = (TypeAdapter<Object>) varArgs.newAdapter();
+         for (Object element : (Collection<?>) value)
+            separated = writePlain(adapter.format(element), separated, sink);
+      } else if (value instanceof Iterator || value instanceof Stream) {
+         String msg = "VarArgs " + varArgs.describe()
+                      + " can not be written as command line arguments without consuming them.";
+
+         throw new InvalidTargetTypeException(msg);
+      }
+      // A Consumer only receives the args, so there is nothing to write
+   }
+
+   /**
+    * Writes an option by its key followed by the value as a separate token
+    * or, for options without a key, by its long key joined with the value.
+    *
+    * @param value the formatted value or <code>null</code> for a switch
+    */
+   private static void writeOption(Binding option, String value, Consumer<String> sink) {
+      if (option.key != ExpectedOption.NO_KEY) {
+         sink.accept("-" + option.key);
+         if (value != null)
+            sink.accept(value);
+      } else {
+         sink.accept(value == null ? "--" + option.longKey : "--" + option.longKey + "=" + value);
+      }
+   }
+
+   /**
+    * Writes a counting switch, e.g. <code>-vvv</code> for a count of 3.
+    */
+   private static void writeCount(Binding option, int count, Consumer<String> sink) {
+      if (count <= 0)
+         return;
+
+      if (option.key == ExpectedOption.NO_KEY) {
+         for (int i = 0; i < count; i++)
+            writeOption(option, null, sink);
+      } else {
+         char[] token = new char[count + 1];
+         Arrays.fill(token, option.key);
+         token[0] = '-';
+         sink.accept(new String(token));
+      }
+   }
+
+   /**
+    * Writes a plain argument and precedes it with <code>--</code> if it
+    * would be mistaken for an option or a request for help otherwise.
+    */
+   private static boolean writePlain(String token, boolean separated, Consumer<String> sink) {
+      if (!separated && (token.startsWith("-") || token.equals("?"))) {
+         sink.accept("--");
+         separated = true;
+      }
+
+      sink.accept(token);
+      return separated;
+   }
+
+   private static boolean isDefault(Binding binding, Object value, Object prototype) {
+      if (binding.hasDefault())
+         return value.equals(binding.defaultValue());
+
+      return prototype != null && value.equals(binding.get(prototype));
+   }
+
+   /**
+    * Assigns the default values to all annotated members of the given target,
+    * except the varargs, which are assigned by every parse anyway.
+    * The default values are the ones of a newly instantiated target object.
+    * Immutable default values, e.g. strings, boxed primitives and enums, are
+    * assigned by reference. Mutable default values, e.g. collections and arrays,
+    * are read from a new instance of the target type on every reset, so no two
+    * targets share them.
+    * Groups are replaced by new objects, if they exist in a newly instantiated
+    * target object, or are removed otherwise.
+    *
+    * @throws InvalidTargetTypeException if the target type can not be instantiated
+    * or a default value can not be read, e.g. of a setter without a getter
+    */
+   void reset(Object target) throws InvalidTargetTypeException {
+      Object[] defaults = defaults();
+      Object instance = null;
+      for (int i = 0; i < bindings.length; i++) {
+         if (bindings[i].kind == Binding.Kind.VAR_ARGS || bindings[i].group != null)
+            continue;
+
+         Object value = defaults[i];
+         if (value == FRESH) {
+            if (instance == null)
+               instance = newInstance();
+            value = bindings[i].get(instance);
+         }
+         bindings[i].set(target, value);
+      }
+
+      for (Group group : groups) {
+         if (group.parent == null)
+            group.reset(target, defaultGroups[group.index]);
+      }
+   }
+
+   private Object[] defaults() throws InvalidTargetTypeException {
+      Object[] defaults = this.defaults;
+      if (defaults == null) {
+         Object prototype = constructor == null ? newInstance() : prototype();
+         defaults = new Object[bindings.length];
+         for (int i = 0; i < bindings.length; i++) {
+            if (bindings[i].kind != Binding.Kind.VAR_ARGS && bindings[i].group == null) {
+               Object value = bindings[i].get(prototype);
+               defaults[i] = isImmutable(value) ? value : FRESH;
+            }
+         }
+
+         boolean[] defaultGroups = new boolean[groups.length];
+         for (Group group : groups) {
+            if (group.parent == null)
+               defaultGroups[group.index] = group.read(prototype) != null;
+         }
+         this.defaultGroups = defaultGroups;
+         this.defaults = defaults;
+      }
+      return defaults;
+   }
+
+   /**
+    * Whether the given default value may be shared by all targets.
+    * Anything else, e.g. a collection, map or array, is treated as mutable.
+    */
+   private static boolean isImmutable(Object value) {
+      return value == null || value instanceof Enum || IMMUTABLE_TYPES.contains(value.getClass())
+             || value.getClass().getName().startsWith("java.time.");
+   }
+
+   private Object prototype() {
+      Object prototype = this.prototype;
+      if (prototype == null && constructor != null)
+         this.prototype = prototype = newInstance();
+
+      return prototype;
+   }
+
+   private static void add(List<Binding> bindings, Binding binding) {
+      if (binding != null)
+         bindings.add(binding);
+   }
+
+   private static Binding[] checkArgs(Context<?> context) throws InvalidTargetTypeException {
+      Binding[] arguments = new Binding[context.argAdders.size()];
+      int i = 0;
+      for (ArgumentAdder argAdder : context.argAdders) {
+         if (argAdder.index() != i) {
+            String msg = "Missing index " + i + ". Next index was "
+                         + argAdder.index() + " at field " + argAdder.getBinding().name;
+
+            throw new InvalidTargetTypeException(msg);
+         }
+
+         arguments[i++] = argAdder.getBinding();
+      }
+      return arguments;
+   }
+
+   private static MethodHandle findConstructor(Class<?> targetType) {
+      try {
+         Constructor<?> constructor = targetType.getDeclaredConstructor();
+         constructor.setAccessible(true);
+         return MethodHandles.lookup()
+                             .unreflectConstructor(constructor)
+                             .asType(MethodType.methodType(Object.class));
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         // The target type can not be instantiated by CLOM
+         return null;
+      }
+   }
+}
@@ -0,0 +1,19 @@
+package com.github.koettlitz.clom;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+/**
+ * Thrown by {@link CLOM} if the given options violate a constraint of the
+ * target type, e.g. mutually exclusive options are given together.
+ *
+ * @see CLExclusive
+ * @see CLRequires
+ * @see CLAtLeastOne
+ */
+public class OptionConstraintException extends ArgumentParseException {
+   private static final long serialVersionUID = 5281045392377160243L;
+
+   public OptionConstraintException(String message) {
+      super(message);
+   }
+}
@@ -0,0 +1,575 @@
+package com.github.koettlitz.clom;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ExpectedOption;
+import com.github.koettlitz.opt.ExpectedPlainArgument;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.MissingArgumentException;
+import com.github.koettlitz.opt.ex.MissingOptionValueException;
+import com.github.koettlitz.opt.ex.UnexpectedOptionValueException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+/**
+ * The values of command line arguments, that are scanned in a single pass
+ * by the options and arguments of a {@link ModelPlan}. Unlike the
+ * {@link ArgumentModel} of an {@link ArgumentParser} it keeps every occurrence
+ * of an option, so options can be repeated. The syntax and the exceptions
+ * are the ones of the {@link ArgumentParser}, except that a repeated option
+ * and a token after <code>--</code> starting with a dash are no unknown arguments:
+ * <ul>
+ *    <li>Short options are given by a dash followed by their key. Several of them
+ *    can be combined in one token like <code>-fg</code>. The value of an option is
+ *    the next token, so an option expecting a value has to be the last one of the token.
+ *    Only the value of a map option can be attached to its key like <code>-Dkey=value</code>.</li>
+ *    <li>Long options are given by two dashes followed by their long key. The value
+ *    of an option follows an equals sign like <code>--level=DEBUG</code>.</li>
+ *    <li>All tokens after <code>--</code> are plain arguments.</li>
+ * </ul>
+ * The values are stored by the {@link Binding#index} of their bindings.
+ * Arguments given as UTF-8 encoded bytes are scanned on the bytes. Then the
+ * single values of arguments and options are kept as their bounds in the bytes
+ * and only decoded, if they are not parsed on the bytes by {@link Binding#assign(Object, ByteBuffer, int, int)}.
+ * <p>
+ * Each thread keeps one instance, that is reused by all parses of the thread
+ * into plans without varargs, which are not nested in another one. It is sized
+ * by the largest plan parsed by the thread, so the pool does not grow with the
+ * number of plans. Parsing does not allocate anything but the bound values,
+ * unless a larger plan than before is parsed. The instance is in use from
+ * {@link #scan(ModelPlan, boolean, String[])} until {@link #release()}.
+ * The plain arguments of plans with varargs are assigned to the target
+ * e.g. as an {@link Iterator}, so they get a new instance each time.
+ */
+final class ParsedArgs {
+   /** The reusable instance per thread, see {@link #release()} */
+   private static final ThreadLocal<ParsedArgs> POOL = new ThreadLocal<>();
+
+   /** The value of an argument or the value of the last occurrence of an option */
+   final String[] values;
+   /** The number of occurrences of an option */
+   final int[] counts;
+   /** The values of all occurrences of an option, that collects them */
+   final List<String>[] occurrences;
+   /** The plain arguments, if the target type has varargs */
+   final List<String> plainArgs = new ArrayList<>();
+   /**
+    * The arguments following <code>--</code>, that are left in the given iterator
+    * for varargs consuming them lazily, or <code>null</code>, see
+    * {@link #scanDeferring(ModelPlan, boolean, Iterator)}
+    */
+   Iterator<String> deferredArgs;
+   /** Whether an option of a group or of its nested groups is given by the index of the group */
+   final boolean[] groups;
+   /** The bits of the given options by the index of their bindings, see {@link Constraint} */
+   final long[] present;
+   /**
+    * The bounds of the values given as bytes by the index of their bindings, see
+    * {@link #range(int, int)}, or <code>null</code> until bytes are scanned for the first time
+    */
+   private long[] ranges;
+   /** The reusable iterator over the arguments given as array */
+   private final Tokens tokens = new Tokens();
+   /** The reusable tokens of the arguments given as bytes */
+   private final ByteTokens bytes = new ByteTokens();
+   private final boolean pooled;
+   private boolean inUse;
+
+   @SuppressWarnings("unchecked")
+   private ParsedArgs(int bindingCount, int groupCount, boolean pooled) {
+      this.values = new String[bindingCount];
+      this.counts = new int[bindingCount];
+      this.occurrences = (List<String>[]) new List<?>[bindingCount];
+      this.groups = new boolean[groupCount];
+      this.present = new long[(bindingCount + 63) >>> 6];
+      this.pooled = pooled;
+   }
+
+   /**
+    * Provides the instance of the current thread, if it is not in use, or a new one.
+    * The instance of the thread is replaced by a larger one, if the given plan
+    * has more bindings or groups than it holds.
+    */
+   private static ParsedArgs acquire(ModelPlan<?> plan) {
+      if (plan.varArgs != null)
+         return new ParsedArgs(plan.bindings.length, plan.groups.length, false);
+
+      ParsedArgs parsed = POOL.get();
+      if (parsed != null && parsed.inUse)
+         return new ParsedArgs(plan.bindings.length, plan.groups.length, false);
+
+      if (parsed == null || parsed.values.length < plan.bindings.length || parsed.groups.length < plan.groups.length) {
+         int bindingCount = parsed == null ? plan.bindings.length : Math.max(parsed.values.length, plan.bindings.length);
+         int groupCount = parsed == null ? plan.groups.length : Math.max(parsed.groups.length, plan.groups.length);
+         parsed = new ParsedArgs(bindingCount, groupCount, true);
+         POOL.set(parsed);
+      }
+      parsed.inUse = true;
+      return parsed;
+   }
+
+   /**
+    * Returns a pooled instance to the pool of its thread after its values
+    * are bound. The instance must not be used afterwards.
+    */
+   void release() {
+      if (!pooled || !inUse)
+         return;
+
+      Arrays.fill(values, null);
+      Arrays.fill(counts, 0);
+      Arrays.fill(groups, false);
+      Arrays.fill(present, 0);
+      for (List<String> list : occurrences) {
+         if (list != null)
+            list.clear();
+      }
+      if (ranges != null)
+         Arrays.fill(ranges, 0);
+      tokens.reset(null);
+      bytes.reset(null, null);
+      inUse = false;
+   }
+
+   /**
+    * Scans the given arguments by the options and arguments of the given plan.
+    *
+    * @param ignoreUnknown whether unknown options and surplus arguments are skipped
+    * instead of throwing an {@link UnknownArgumentException}
+    *
+    * @throws ArgumentParseException if the arguments do not match the format of the plan
+    */
+   static ParsedArgs scan(ModelPlan<?> plan,
+                          boolean ignoreUnknown,
+                          String[] args) throws ArgumentParseException {
+      ParsedArgs parsed = acquire(plan);
+      parsed.tokens.reset(args);
+      return parsed.scanAll(plan, ignoreUnknown, parsed.tokens, false);
+   }
+
+   /**
+    * Scans the given arguments by the options and arguments of the given plan.
+    *
+    * @param ignoreUnknown whether unknown options and surplus arguments are skipped
+    * instead of throwing an {@link UnknownArgumentException}
+    *
+    * @throws ArgumentParseException if the arguments do not match the format of the plan
+    */
+   static ParsedArgs scan(ModelPlan<?> plan,
+                          boolean ignoreUnknown,
+                          Iterator<String> args) throws ArgumentParseException {
+      return acquire(plan).scanAll(plan, ignoreUnknown, args, false);
+   }
+
+   /**
+    * Scans the given arguments like {@link #scan(ModelPlan, boolean, Iterator)},
+    * but stops at <code>--</code>, if the varargs of the plan consume their
+    * arguments lazily, see {@link Binding#consumesLazily()}. No options follow
+    * <code>--</code>, so the remaining arguments are left in the iterator as
+    * {@link #deferredArgs} and are only read while the varargs are consumed.
+    *
+    * @throws ArgumentParseException if the arguments do not match the format of the plan
+    */
+   static ParsedArgs scanDeferring(ModelPlan<?> plan,
+                                   boolean ignoreUnknown,
+                                   Iterator<String> args) throws ArgumentParseException {
+      return acquire(plan).scanAll(plan, ignoreUnknown, args, true);
+   }
+
+   /**
+    * Scans the given UTF-8 encoded arguments by the options and arguments of the given plan.
+    * The position of the buffer is set to its limit, if the arguments match the plan.
+    *
+    * @param ignoreUnknown whether unknown options and surplus arguments are skipped
+    * instead of throwing an {@link UnknownArgumentException}
+    *
+    * @throws ArgumentParseException if the arguments do not match the format of the plan
+    * @throws IllegalArgumentException if the tokens do not match the layout
+    */
+   static ParsedArgs scan(ModelPlan<?> plan,
+                          boolean ignoreUnknown,
+                          ByteBuffer args,
+                          TokenLayout layout) throws ArgumentParseException, IllegalArgumentException {
+      ParsedArgs parsed = acquire(plan);
+      parsed.bytes.reset(args, layout);
+      if (parsed.ranges == null)
+         parsed.ranges = new long[parsed.values.length];
+
+      try {
+         parsed.scanBytes(plan, ignoreUnknown);
+      } catch (ArgumentParseException | RuntimeException e) {
+         parsed.release();
+         throw e;
+      }
+
+      args.position(args.limit());
+      return parsed;
+   }
+
+   /**
+    * Takes the values of the options and arguments of the given plan from the
+    * model parsed by an {@link ArgumentParser}, that was built by
+    * {@link ModelPlan#buildParser(com.github.koettlitz.opt.ArgumentParserBuilder)}.
+    * Each option occurs at most once, because the parser rejects repeated options.
+    *
+    * @throws ArgumentParseException if a constraint of the plan is violated
+    */
+   static ParsedArgs of(ModelPlan<?> plan, ArgumentModel argModel) throws ArgumentParseException {
+      ParsedArgs parsed = new ParsedArgs(plan.bindings.length, plan.groups.length, false);
+      for (Binding argument : plan.arguments)
+         parsed.values[argument.index] = argModel.getOptionalArgumentValue(argument.argumentName()).orElse(null);
+
+      if (plan.varArgs != null)
+         parsed.plainArgs.addAll(argModel.getPlainArguments());
+
+      for (Binding option : plan.options) {
+         boolean present = option.key == ExpectedOption.NO_KEY
+                           ? argModel.isOptionPresent(option.longKey)
+                           : argModel.isOptionPresent(option.key);
+         if (!present)
+            continue;
+
+         if (!option.expectsValue)
+            parsed.add(option, null);
+         else if (option.key == ExpectedOption.NO_KEY)
+            parsed.add(option, argModel.getOptionValue(option.longKey));
+         else
+            parsed.add(option, argModel.getOptionValue(option.key));
+      }
+
+      for (Constraint constraint : plan.constraints)
+         constraint.check(parsed);
+      return parsed;
+   }
+
+   private ParsedArgs scanAll(ModelPlan<?> plan,
+                              boolean ignoreUnknown,
+                              Iterator<String> args,
+                              boolean defer) throws ArgumentParseException {
+      try {
+         scanTokens(plan, ignoreUnknown, args, defer);
+         return this;
+      } catch (ArgumentParseException | RuntimeException e) {
+         release();
+         throw e;
+      }
+   }
+
+   private void scanTokens(ModelPlan<?> plan,
+                           boolean ignoreUnknown,
+                           Iterator<String> args,
+                           boolean defer) throws ArgumentParseException {
+      boolean plainOnly = false;
+      int argCount = 0;
+      while (args.hasNext()) {
+         String token = args.next();
+         if (plainOnly || token.isEmpty() || token.charAt(0) != '-') {
+            if (plan.varArgs != null)
+               plainArgs.add(token);
+            else if (argCount < plan.arguments.length)
+               values[plan.arguments[argCount++].index] = token;
+            else if (!ignoreUnknown)
+               throw new UnknownArgumentException(token);
+         } else if (token.equals("--")) {
+            plainOnly = true;
+            if (defer && plan.varArgs != null && plan.varArgs.consumesLazily()) {
+               deferredArgs = args;
+               break;
+            }
+         } else if (token.startsWith("--")) {
+            scanLongOption(plan, token, ignoreUnknown);
+         } else {
+            scanShortOptions(plan, token, args, ignoreUnknown);
+         }
+      }
+
+      checkArguments(plan, argCount);
+      for (Constraint constraint : plan.constraints)
+         constraint.check(this);
+   }
+
+   private void scanLongOption(ModelPlan<?> plan, String token, boolean ignoreUnknown) throws ArgumentParseException {
+      int separator = token.indexOf('=');
+      Binding option = plan.optionByLongKey(token, 2, separator < 0 ? token.length() : separator);
+      if (option == null) {
+         if (!ignoreUnknown)
+            throw new UnknownArgumentException(token);
+         return;
+      }
+
+      if (!option.expectsValue) {
+         if (separator >= 0)
+            throw new UnexpectedOptionValueException(expected(option), token);
+         add(option, null);
+      } else if (separator < 0) {
+         throw new MissingOptionValueException(expected(option));
+      } else {
+         add(option, token.substring(separator + 1));
+      }
+   }
+
+   private void scanShortOptions(ModelPlan<?> plan,
+                                 String token,
+                                 Iterator<String> args,
+                                 boolean ignoreUnknown) throws ArgumentParseException {
+      // A token with an unknown key is rejected or skipped as a whole
+      if (token.length() == 1) {
+         if (!ignoreUnknown)
+            throw new UnknownArgumentException(token);
+         return;
+      }
+
+      int end = token.length();
+      for (int i = 1; i < end; i++) {
+         Binding option = plan.optionByKey(token.charAt(i));
+         if (option == null) {
+            if (!ignoreUnknown)
+               throw new UnknownArgumentException(token);
+            return;
+         }
+         if (option.collect == Binding.Collect.MAP)
+            end = i + 1;
+         else if (option.expectsValue && i + 1 < end)
+            throw new InvalidOptionFormatException(token, option.key);
+      }
+
+      for (int i = 1; i < end; i++) {
+         Binding option = plan.optionByKey(token.charAt(i));
+         if (!option.expectsValue) {
+            add(option, null);
+         } else if (i + 1 < token.length()) {
+            // Only the value of a map option is attached to its key
+            add(option, token.substring(i + 1));
+         } else if (args.hasNext()) {
+            add(option, args.next());
+         } else {
+            throw new MissingOptionValueException(expected(option));
+         }
+      }
+   }
+
+   private void scanBytes(ModelPlan<?> plan, boolean ignoreUnknown) throws ArgumentParseException {
+      boolean plainOnly = false;
+      int argCount = 0;
+      while (bytes.advance()) {
+         int begin = bytes.begin;
+         int end = bytes.end;
+         if (plainOnly || begin == end || bytes.byteAt(begin) != '-') {
+            if (plan.varArgs != null)
+               plainArgs.add(bytes.decode(begin, end));
+            else if (argCount < plan.arguments.length)
+               ranges[plan.arguments[argCount++].index] = range(begin, end);
+            else if (!ignoreUnknown)
+               throw new UnknownArgumentException(bytes.decode(begin, end));
+         } else if (end - begin == 2 && bytes.byteAt(begin + 1) == '-') {
+            plainOnly = true;
+         } else if (end - begin > 2 && bytes.byteAt(begin + 1) == '-') {
+            scanLongOption(plan, begin, end, ignoreUnknown);
+         } else {
+            scanShortOptions(plan, begin, end, ignoreUnknown);
+         }
+      }
+
+      checkArguments(plan, argCount);
+      for (Constraint constraint : plan.constraints)
+         constraint.check(this);
+   }
+
+   private void scanLongOption(ModelPlan<?> plan, int begin, int end, boolean ignoreUnknown) throws ArgumentParseException {
+      int separator = bytes.indexOf('=', begin + 2, end);
+      Binding option = plan.optionByLongKey(bytes.buffer(), begin + 2, separator < 0 ? end : separator);
+      if (option == null) {
+         if (!ignoreUnknown)
+            throw new UnknownArgumentException(bytes.decode(begin, end));
+         return;
+      }
+
+      if (!option.expectsValue) {
+         if (separator >= 0)
+            throw new UnexpectedOptionValueException(expected(option), bytes.decode(begin, end));
+         add(option, null);
+      } else if (separator < 0) {
+         throw new MissingOptionValueException(expected(option));
+      } else {
+         add(option, separator + 1, end);
+      }
+   }
+
+   private void scanShortOptions(ModelPlan<?> plan, int begin, int end, boolean ignoreUnknown) throws ArgumentParseException {
+      // A token with an unknown key is rejected or skipped as a whole
+      if (end - begin == 1) {
+         if (!ignoreUnknown)
+            throw new UnknownArgumentException("-");
+         return;
+      }
+
+      int last = end;
+      for (int i = begin + 1; i < last; i++) {
+         byte key = bytes.byteAt(i);
+         if (key < 0) {
+            // Keys, that are no ASCII characters, can only be matched by the decoded token
+            scanShortOptions(plan, bytes.decode(begin, end), bytes, ignoreUnknown);
+            return;
+         }
+
+         Binding option = plan.optionByKey((char) key);
+         if (option == null) {
+            if (!ignoreUnknown)
+               throw new UnknownArgumentException(bytes.decode(begin, end));
+            return;
+         }
+         if (option.collect == Binding.Collect.MAP)
+            last = i + 1;
+         else if (option.expectsValue && i + 1 < last)
+            throw new InvalidOptionFormatException(bytes.decode(begin, end), option.key);
+      }
+
+      for (int i = begin + 1; i < last; i++) {
+         Binding option = plan.optionByKey((char) bytes.byteAt(i));
+         if (!option.expectsValue) {
+            add(option, null);
+         } else if (i + 1 < end) {
+            // Only the value of a map option is attached to its key
+            add(option, bytes.decode(i + 1, end));
+         } else if (bytes.advance()) {
+            add(option, bytes.begin, bytes.end);
+         } else {
+            throw new MissingOptionValueException(expected(option));
+         }
+      }
+   }
+
+   /**
+    * Adds an occurrence of an option, whose value is given by its bounds in the bytes.
+    * The values of options collecting their occurrences are decoded.
+    */
+   private void add(Binding option, int begin, int end) {
+      if (option.collectsOccurrences()) {
+         add(option, bytes.decode(begin, end));
+      } else {
+         add(option, null);
+         ranges[option.index] = range(begin, end);
+      }
+   }
+
+   /**
+    * Encodes the bounds of a value in the bytes into a <code>long</code>, that
+    * is never 0, so 0 indicates the absence of a value.
+    */
+   private static long range(int begin, int end) {
+      return (long) begin << 32 | (end - begin + 1);
+   }
+
+   /**
+    * Whether the value of the binding with the given index is given, as String or as bytes.
+    */
+   boolean hasValue(int index) {
+      return values[index] != null || ranges != null && ranges[index] != 0;
+   }
+
+   /**
+    * Provides the value of the binding with the given index. A value given as bytes is decoded.
+    *
+    * @return the value or <code>null</code> if it is not given
+    */
+   String value(int index) {
+      if (values[index] != null || ranges == null || ranges[index] == 0)
+         return values[index];
+
+      int begin = (int) (ranges[index] >>> 32);
+      return bytes.decode(begin, begin + (int) ranges[index] - 1);
+   }
+
+   /**
+    * Assigns the value of the given binding to the target by
+    * {@link Binding#assign(Object, ByteBuffer, int, int)}, if it is given as bytes,
+    * or by {@link Binding#assign(Object, String)} otherwise.
+    *
+    * @throws IllegalArgumentException if the value can not be converted
+    */
+   void assign(Binding binding, Object target) throws IllegalArgumentException, InvalidTargetTypeException {
+      int index = binding.index;
+      if (values[index] != null || ranges == null || ranges[index] == 0) {
+         binding.assign(target, values[index]);
+         return;
+      }
+
+      int begin = (int) (ranges[index] >>> 32);
+      binding.assign(target, bytes.buffer(), begin, begin + (int) ranges[index] - 1);
+   }
+
+   private void add(Binding option, String value) {
+      int index = option.index;
+      counts[index]++;
+      present[index >>> 6] |= 1L << index;
+      for (Group group = option.group; group != null && !groups[group.index]; group = group.parent)
+         groups[group.index] = true;
+
+      if (option.collectsOccurrences()) {
+         if (occurrences[index] == null)
+            occurrences[index] = new ArrayList<>();
+         occurrences[index].add(value);
+      } else {
+         values[index] = value;
+         if (ranges != null)
+            ranges[index] = 0;
+      }
+   }
+
+   private static void checkArguments(ModelPlan<?> plan, int argCount) throws MissingArgumentException {
+      List<ExpectedPlainArgument> missing = null;
+      for (int i = argCount; i < plan.arguments.length; i++) {
+         Binding argument = plan.arguments[i];
+         if (argument.mandatory) {
+            if (missing == null)
+               missing = new ArrayList<>();
+            missing.add(new ExpectedPlainArgument(i, argument.argumentName(), true, argument.description));
+         }
+      }
+
+      if (missing != null)
+         throw new MissingArgumentException(missing);
+   }
+
+   private static ExpectedOption expected(Binding option) {
+      ExpectedOption expected = new ExpectedOption(option.index,
+                                                   option.key,
+                                                   option.longKey,
+                                                   option.description);
+      expected.setExpectsValue(option.expectsValue);
+      return expected;
+   }
+
+   /**
+    * An iterator over an array of arguments, that is reset for each parse.
+    */
+   private static final class Tokens implements Iterator<String> {
+      private String[] args;
+      private int position;
+
+      void reset(String[] args) {
+         this.args = args;
+         this.position = 0;
+      }
+
+      @Override
+      public boolean hasNext() {
+         return position < args.length;
+      }
+
+      @Override
+      public String next() {
+         if (position >= args.length)
+            throw new NoSuchElementException();
+
+         return args[position++];
+      }
+   }
+}
@@ -0,0 +1,76 @@
+package com.github.koettlitz.clom;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A set of words, that can be searched by prefix. The words starting with
+ * a prefix are found in the time it takes to walk the prefix plus the
+ * number of matching words, no matter how many words the trie contains.
+ * It is filled once and only read afterwards, so it can be shared between threads.
+ */
+final class PrefixTrie {
+   private static final char[] NO_KEYS = new char[0];
+   private static final PrefixTrie[] NO_CHILDREN = new PrefixTrie[0];
+
+   /** The chars of the edges to the children in ascending order */
+   private char[] keys = NO_KEYS;
+   private PrefixTrie[] children = NO_CHILDREN;
+   /** The word ending at this node or <code>null</code> */
+   private String word;
+
+   void add(String word) {
+      PrefixTrie node = this;
+      for (int i = 0; i < word.length(); i++)
+         node = node.childOrCreate(word.charAt(i));
+
+      node.word = word;
+   }
+
+   /**
+    * Adds all words starting with the given prefix to the given collection
+    * in lexicographical order.
+    */
+   void complete(String prefix, Collection<? super String> words) {
+      PrefixTrie node = this;
+      for (int i = 0; i < prefix.length() && node != null; i++)
+         node = node.child(prefix.charAt(i));
+
+      if (node != null)
+         node.collect(words);
+   }
+
+   private void collect(Collection<? super String> words) {
+      if (word != null)
+         words.add(word);
+
+      for (PrefixTrie child : children)
+         child.collect(words);
+   }
+
+   private PrefixTrie child(char c) {
+      int i = Arrays.binarySearch(keys, c);
+      return i < 0 ? null : children[i];
+   }
+
+   private PrefixTrie childOrCreate(char c) {
+      int i = Arrays.binarySearch(keys, c);
+      if (i >= 0)
+         return children[i];
+
+      i = -i - 1;
+      char[] newKeys = new char[keys.length + 1];
+      PrefixTrie[] newChildren = new PrefixTrie[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, i);
+      System.arraycopy(children, 0, newChildren, 0, i);
+      System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+      System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+
+      PrefixTrie child = new PrefixTrie();
+      newKeys[i] = c;
+      newChildren[i] = child;
+      keys = newKeys;
+      children = newChildren;
+      return child;
+   }
+}
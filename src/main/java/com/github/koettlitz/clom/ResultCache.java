@@ -0,0 +1,328 @@
+package com.github.koettlitz.clom;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.github.koettlitz.util.ReflectionUtils;
+
+/**
+ * A bounded cache of the objects parsed by a {@link CLOM} instance from
+ * repeated command lines, see {@link CLOM#enableResultCache(int)}.
+ * The command lines are looked up by the hash of their tokens and compared
+ * token by token, so only identical command lines share a result. If the
+ * cache is full, the least recently used command line is evicted.<br>
+ * A cached object must not be affected by the objects handed out, so the
+ * target type is checked when the cache is created:
+ * <ul>
+ *    <li>If all instance fields of the target type and its groups are final
+ *    and hold immutable values like primitives, Strings, enums or
+ *    <code>java.time</code> types, the cached object itself is returned
+ *    ({@link #isShared()}).</li>
+ *    <li>Otherwise a copy of the cached object is returned, whose members are
+ *    assigned the values of the cached object. Repeatable options and varargs
+ *    are copied into new collections, arrays and maps.</li>
+ *    <li>Target types, whose members are assigned by setters or are static,
+ *    which hold values of possibly mutable types or varargs of type
+ *    {@link java.util.Iterator}, {@link java.util.stream.Stream} or
+ *    {@link java.util.function.Consumer} can not be cached.</li>
+ * </ul>
+ * Parsed objects depend on the settings of {@link CLOM#getParser()}, so the
+ * cache has to be {@link #clear() cleared} when they are changed.
+ * A cache is thread safe.
+ *
+ * @param <T> The target type
+ */
+public final class ResultCache<T> {
+   /** Types of immutable values besides primitives, their wrappers, Strings, enums and <code>java.time</code> types */
+   private static final Set<Class<?>> VALUE_TYPES = new HashSet<>(Arrays.asList(
+         BigInteger.class, BigDecimal.class, UUID.class, URI.class, File.class,
+         Path.class, Pattern.class, Locale.class, Charset.class, Currency.class));
+
+   private final ModelPlan<T> plan;
+   private final int maxEntries;
+   private final boolean shared;
+   private final LinkedHashMap<Key, T> entries;
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+
+   /**
+    * @throws IllegalArgumentException if <code>maxEntries</code> is not positive
+    * @throws InvalidTargetTypeException if the parsed objects can not be cached safely
+    */
+   ResultCache(ModelPlan<T> plan, int maxEntries) throws IllegalArgumentException, InvalidTargetTypeException {
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("The maximum number of entries has to be positive, but is " + maxEntries);
+
+      this.plan = plan;
+      this.maxEntries = maxEntries;
+      this.shared = checkBindings(plan) && isImmutable(plan);
+      this.entries = new LinkedHashMap<Key, T>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Key, T> eldest) {
+            if (size() <= ResultCache.this.maxEntries)
+               return false;
+
+            evictions.increment();
+            return true;
+         }
+      };
+   }
+
+   /**
+    * Looks up the object parsed from the given command line.
+    *
+    * @return the cached object or a copy of it or <code>null</code> if it is not cached
+    */
+   T get(String[] args) throws InvalidTargetTypeException {
+      T cached;
+      synchronized (entries) {
+         cached = entries.get(new Key(args));
+      }
+
+      if (cached == null) {
+         misses.increment();
+         return null;
+      }
+
+      hits.increment();
+      return shared ? cached : copy(cached);
+   }
+
+   /**
+    * Caches the object parsed from the given command line. A copy of it is
+    * cached, unless it is {@link #isShared() shared}, because it is handed out.
+    */
+   void put(String[] args, T parsed) throws InvalidTargetTypeException {
+      T cached = shared ? parsed : copy(parsed);
+      Key key = new Key(args.clone());
+      synchronized (entries) {
+         entries.put(key, cached);
+      }
+   }
+
+   private T copy(T model) throws InvalidTargetTypeException {
+      T copy = plan.newInstance();
+      for (Binding binding : plan.bindings) {
+         // Groups, that do not exist in the model, are not created in the copy either
+         if (binding.group == null || binding.group.find(model) != null)
+            binding.set(copy, copyValue(binding, binding.get(model)));
+      }
+      return copy;
+   }
+
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private static Object copyValue(Binding binding, Object value) throws InvalidTargetTypeException {
+      if (value == null)
+         return null;
+
+      if (binding.kind == Binding.Kind.VAR_ARGS) {
+         Collection<Object> collection = binding.newCollection();
+         collection.addAll((Collection<?>) value);
+         return collection;
+      }
+
+      switch (binding.collect) {
+         case LIST:
+            return new ArrayList<>((Collection<?>) value);
+         case ARRAY:
+            int length = Array.getLength(value);
+            Object array = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, array, 0, length);
+            return array;
+         case MAP:
+            return new LinkedHashMap<>((Map) value);
+         default:
+            return value;
+      }
+   }
+
+   /**
+    * Checks whether the values of the bindings can be copied without side effects.
+    *
+    * @return whether all values are immutable themselves, so they can be shared
+    *
+    * @throws InvalidTargetTypeException if the values can not be copied
+    */
+   private static boolean checkBindings(ModelPlan<?> plan) throws InvalidTargetTypeException {
+      boolean immutable = true;
+      for (Binding binding : plan.bindings) {
+         if (!binding.isInstanceField())
+            throw notCacheable(plan, binding, "is not an instance field, so assigning it may have side effects");
+
+         Class<?> valueType = binding.elementType;
+         if (binding.kind == Binding.Kind.VAR_ARGS) {
+            if (!Collection.class.isAssignableFrom(binding.type))
+               throw notCacheable(plan, binding, "is no collection, so its values can not be copied");
+            valueType = binding.adaptedType();
+         }
+
+         if (!isValueType(valueType))
+            throw notCacheable(plan, binding, "may hold mutable values");
+
+         if (binding.kind == Binding.Kind.VAR_ARGS || binding.collectsOccurrences())
+            immutable = false;
+      }
+      return immutable;
+   }
+
+   /**
+    * Whether all instance fields of the target type and its groups are final
+    * and hold immutable values or objects of the groups.
+    */
+   private static boolean isImmutable(ModelPlan<?> plan) {
+      if (!isImmutable(plan.targetType, plan.groups))
+         return false;
+
+      for (Group group : plan.groups) {
+         if (!isImmutable(group.type, plan.groups))
+            return false;
+      }
+      return true;
+   }
+
+   private static boolean isImmutable(Class<?> type, Group[] groups) {
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+         for (Field field : c.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || field.isSynthetic())
+               continue;
+
+            if (!Modifier.isFinal(modifiers) || !isGroup(field, groups) && !isValueType(field.getType()))
+               return false;
+         }
+      }
+      return true;
+   }
+
+   private static boolean isGroup(Field field, Group[] groups) {
+      for (Group group : groups) {
+         if (group.is(field))
+            return true;
+      }
+      return false;
+   }
+
+   private static boolean isValueType(Class<?> type) {
+      return type != null
+             && (ReflectionUtils.isPrimitive(type)
+                 || type.isEnum()
+                 || VALUE_TYPES.contains(type)
+                 || type.getName().startsWith("java.time.") && Modifier.isFinal(type.getModifiers()));
+   }
+
+   private static InvalidTargetTypeException notCacheable(ModelPlan<?> plan, Binding binding, String reason) {
+      return new InvalidTargetTypeException("The objects of type " + plan.targetType.getName()
+                                            + " can not be cached, because the " + binding.describe()
+                                            + " " + reason + ".");
+   }
+
+   /**
+    * @return the maximum number of cached command lines
+    */
+   public int getMaxEntries() {
+      return maxEntries;
+   }
+
+   /**
+    * @return <code>true</code> if the objects of the target type are immutable,
+    * so the cached objects are returned themselves<br>
+    * <code>false</code> if copies of the cached objects are returned
+    */
+   public boolean isShared() {
+      return shared;
+   }
+
+   /**
+    * @return the number of cached command lines
+    */
+   public int getSize() {
+      synchronized (entries) {
+         return entries.size();
+      }
+   }
+
+   /**
+    * @return the number of command lines, whose objects were found in the cache
+    */
+   public long getHits() {
+      return hits.sum();
+   }
+
+   /**
+    * @return the number of command lines, that had to be parsed
+    */
+   public long getMisses() {
+      return misses.sum();
+   }
+
+   /**
+    * @return the number of command lines evicted to make room for others
+    */
+   public long getEvictions() {
+      return evictions.sum();
+   }
+
+   /**
+    * @return the share of the command lines, whose objects were found in
+    * the cache, or <code>0</code> if there were none yet
+    */
+   public double getHitRate() {
+      long hits = getHits();
+      long lookups = hits + getMisses();
+      return lookups == 0 ? 0 : (double) hits / lookups;
+   }
+
+   /**
+    * Removes all cached command lines. The statistics are kept.
+    */
+   public void clear() {
+      synchronized (entries) {
+         entries.clear();
+      }
+   }
+
+   /**
+    * A command line compared token by token, whose hash is computed once.
+    */
+   private static final class Key {
+      private final String[] args;
+      private final int hash;
+
+      Key(String[] args) {
+         this.args = args;
+         this.hash = Arrays.hashCode(args);
+      }
+
+      @Override
+      public int hashCode() {
+         return hash;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         return obj instanceof Key && hash == ((Key) obj).hash && Arrays.equals(args, ((Key) obj).args);
+      }
+   }
+}
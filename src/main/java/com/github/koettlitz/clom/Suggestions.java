@@ -0,0 +1,100 @@
+package com.github.koettlitz.clom;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+/**
+ * Suggests declared names for mistyped options and enum values. The long keys
+ * of the options and the constants of enum values are indexed by {@link BKTree}s
+ * once per {@link ModelPlan}, so a failure does not compare the mistyped name
+ * with every declared one.
+ */
+final class Suggestions {
+   private static final int LIMIT = 3;
+
+   private final BKTree longKeys = new BKTree();
+   private final Map<Binding, BKTree> values = new IdentityHashMap<>();
+
+   Suggestions(ModelPlan<?> plan) throws InvalidTargetTypeException {
+      for (Binding option : plan.options) {
+         if (!option.longKey.isEmpty())
+            longKeys.add(option.longKey);
+         if (option.expectsValue)
+            addValues(option);
+      }
+
+      for (Binding argument : plan.arguments)
+         addValues(argument);
+   }
+
+   private void addValues(Binding binding) throws InvalidTargetTypeException {
+      if (!binding.type.isEnum())
+         return;
+
+      BKTree tree = new BKTree();
+      for (Object constant : binding.type.getEnumConstants())
+         tree.add(binding.format(constant));
+
+      values.put(binding, tree);
+   }
+
+   /**
+    * Adds suggestions to the given exception, if the unknown argument is
+    * an option.
+    *
+    * @return an {@link UnknownOptionException} or the given exception if
+    * the unknown argument is no option
+    */
+   ArgumentParseException unknownArgument(UnknownArgumentException e) {
+      String arg = e.getUnknownArg();
+      if (arg == null || arg.length() < 2 || arg.charAt(0) != '-' || arg.equals("--"))
+         return e;
+
+      String name = arg.startsWith("--") ? arg.substring(2) : arg.substring(1);
+      int separator = name.indexOf('=');
+      if (separator >= 0)
+         name = name.substring(0, separator);
+
+      List<String> suggestions = name.length() < 2
+                                 ? Collections.<String>emptyList()
+                                 : longKeys.search(name, maxDistance(name), LIMIT);
+
+      for (int i = 0; i < suggestions.size(); i++)
+         suggestions.set(i, "--" + suggestions.get(i));
+
+      UnknownOptionException result = new UnknownOptionException(arg, suggestions);
+      result.initCause(e);
+      return result;
+   }
+
+   /**
+    * Adds suggestions to the given exception of the adapter of an enum value.
+    *
+    * @return an exception with suggestions in its message or the given
+    * exception if there are no suggestions
+    */
+   IllegalArgumentException invalidValue(Binding binding, String value, IllegalArgumentException e) {
+      BKTree tree = values.get(binding);
+      if (tree == null)
+         return e;
+
+      List<String> suggestions = tree.search(value, maxDistance(value), LIMIT);
+      if (suggestions.isEmpty())
+         return e;
+
+      String msg = "Invalid value \"" + value + "\" for " + binding.name
+                   + ". Did you mean " + String.join(" or ", suggestions) + "?";
+
+      return new IllegalArgumentException(msg, e);
+   }
+
+   private static int maxDistance(String name) {
+      // A transposition of two chars counts as a distance of 2
+      return name.length() <= 3 ? 1 : Math.max(2, name.length() / 3);
+   }
+}
@@ -0,0 +1,20 @@
+package com.github.koettlitz.clom;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The layouts of command line arguments given as UTF-8 encoded bytes,
+ * see {@link CLOM#parse(Class, ByteBuffer, TokenLayout)}.
+ */
+public enum TokenLayout {
+   /**
+    * Each token is terminated by a NUL byte like in <code>/proc/&lt;pid&gt;/cmdline</code>.
+    * The NUL byte after the last token may be omitted.
+    */
+   NUL_DELIMITED,
+   /**
+    * Each token is preceded by its length in bytes as a 4 byte <code>int</code>
+    * in the byte order of the buffer, like the Strings written by {@link ModelCodec}.
+    */
+   LENGTH_PREFIXED
+}
@@ -24,6 +24,25 @@ public interface TypeAdapter<T> {
     */
    T parse(String argValue) throws IllegalArgumentException;
 
+   /**
+    * Formats the given value into the command line token, that
+    * {@link #parse(String)} parses back into an equal value.
+    * It is used to serialize a target object back into command line
+    * arguments by {@link CLOM#toArgs(Object)}. The default implementation
+    * uses {@link String#valueOf(Object)}, which is only correct if the
+    * <code>toString</code> method of the value is the inverse of {@link #parse(String)}.
+    *
+    * @param value the value of the corresponding command line argument/option
+    *
+    * @return the command line token that represents the given <code>value</code>
+    *
+    * @throws IllegalArgumentException if the given <code>value</code>
+    * can not be represented as a command line token.
+    */
+   default String format(T value) throws IllegalArgumentException {
+      return String.valueOf(value);
+   }
+
    static final class Default implements TypeAdapter<Object> {
       @Override
       public Object parse(String t) {
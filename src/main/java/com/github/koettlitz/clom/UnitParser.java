@@ -0,0 +1,208 @@
+package com.github.koettlitz.clom;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.github.koettlitz.clom.CLUnits.Format;
+
+/**
+ * Parses the numbers of members annotated with {@link CLUnits}. The text is read
+ * in a single pass from left to right. Digits are accumulated straight into a
+ * <code>long</code> and units are compared in place, so no substrings are created.
+ */
+final class UnitParser {
+   private static final String[] SIZE_UNITS = {"b",
+                                               "k", "kib", "kb",
+                                               "m", "mib", "mb",
+                                               "g", "gib", "gb",
+                                               "t", "tib", "tb",
+                                               "p", "pib", "pb",
+                                               "e", "eib", "eb"};
+   private static final long[] SIZE_FACTORS = new long[SIZE_UNITS.length];
+   private static final String[] DURATION_UNITS = {"ns", "us", "\u00b5s", "ms", "s", "m", "min", "h", "d"};
+   private static final TimeUnit[] TIME_UNITS = {NANOSECONDS,
+                                                 MICROSECONDS,
+                                                 MICROSECONDS,
+                                                 MILLISECONDS,
+                                                 SECONDS,
+                                                 MINUTES,
+                                                 MINUTES,
+                                                 HOURS,
+                                                 DAYS};
+
+   static {
+      SIZE_FACTORS[0] = 1;
+      long si = 1;
+      for (int i = 1; i < SIZE_UNITS.length; i += 3) {
+         si *= 1000;
+         SIZE_FACTORS[i] = 1L << (10 * (i / 3 + 1));
+         SIZE_FACTORS[i + 1] = SIZE_FACTORS[i];
+         SIZE_FACTORS[i + 2] = si;
+      }
+   }
+
+   private UnitParser() {}
+
+   /**
+    * Parses the given text by the given format of {@link CLUnits}.
+    *
+    * @param timeUnit the unit of a {@link Format#DURATION} without a unit
+    * @param isInt whether the value has to be in the range of an <code>int</code>
+    *
+    * @return the value, that is in the range of an <code>int</code> if <code>isInt</code> is set
+    *
+    * @throws NumberFormatException if the text does not match the format
+    * or the value is out of range
+    */
+   static long parse(String text, Format format, TimeUnit timeUnit, boolean isInt) throws NumberFormatException {
+      int length = text.length();
+      int i = 0;
+      boolean negative = false;
+      if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+         negative = text.charAt(0) == '-';
+         i++;
+      }
+
+      int radix = 10;
+      if (format != Format.DURATION && i + 1 < length && text.charAt(i) == '0') {
+         // A prefix without digits is a zero followed by a unit, e.g. 0b bytes
+         radix = radix(text.charAt(i + 1));
+         if (radix != 10 && i + 2 < length && digit(text.charAt(i + 2), radix) >= 0)
+            i += 2;
+         else
+            radix = 10;
+      }
+
+      long total = 0;
+      boolean first = true;
+      try {
+         do {
+            int start = i;
+            boolean separated = false;
+            long value = 0;
+            for (; i < length; i++) {
+               char c = text.charAt(i);
+               if (c == '_' && i > start) {
+                  separated = true;
+                  continue;
+               }
+
+               int digit = digit(c, radix);
+               if (digit < 0)
+                  break;
+
+               value = radix == 10 ? Math.addExact(Math.multiplyExact(value, 10), digit) : shift(value, radix, digit);
+               separated = false;
+            }
+            if (i == start || separated)
+               throw invalid(text, format);
+
+            int unit = i;
+            while (i < length && Character.isLetter(text.charAt(i)))
+               i++;
+
+            if (format == Format.NUMBER) {
+               if (unit < i)
+                  throw invalid(text, format);
+               total = value;
+            } else if (format == Format.SIZE) {
+               total = unit == i ? value : Math.multiplyExact(value, SIZE_FACTORS[find(SIZE_UNITS, text, unit, i, format)]);
+            } else if (unit < i) {
+               long converted = timeUnit.convert(value, TIME_UNITS[find(DURATION_UNITS, text, unit, i, format)]);
+               if (converted == Long.MAX_VALUE)
+                  throw new ArithmeticException();
+               total = Math.addExact(total, converted);
+            } else if (first && i == length) {
+               total = value;
+            } else {
+               throw invalid(text, format);
+            }
+            first = false;
+         } while (format == Format.DURATION && i < length);
+      } catch (ArithmeticException e) {
+         throw outOfRange(text);
+      }
+
+      if (i < length)
+         throw invalid(text, format);
+
+      // Like Java literals non decimal numbers are the bit pattern of an int
+      if (isInt && radix != 10) {
+         if ((total & 0xFFFFFFFF00000000L) != 0)
+            throw outOfRange(text);
+         total = (int) total;
+      }
+
+      long result = negative ? -total : total;
+      if (isInt && (int) result != result)
+         throw outOfRange(text);
+
+      return result;
+   }
+
+   private static int radix(char prefix) {
+      switch (prefix) {
+         case 'x':
+         case 'X':
+            return 16;
+         case 'o':
+         case 'O':
+            return 8;
+         case 'b':
+         case 'B':
+            return 2;
+         default:
+            return 10;
+      }
+   }
+
+   private static int digit(char c, int radix) {
+      int digit;
+      if (c >= '0' && c <= '9')
+         digit = c - '0';
+      else if (c >= 'a' && c <= 'f')
+         digit = c - 'a' + 10;
+      else if (c >= 'A' && c <= 'F')
+         digit = c - 'A' + 10;
+      else
+         return -1;
+
+      return digit < radix ? digit : -1;
+   }
+
+   /**
+    * Appends a digit of a hexadecimal, octal or binary number to its bit pattern.
+    */
+   private static long shift(long value, int radix, int digit) {
+      int bits = radix == 16 ? 4 : radix == 8 ? 3 : 1;
+      if (value >>> (64 - bits) != 0)
+         throw new ArithmeticException();
+
+      return value << bits | digit;
+   }
+
+   private static int find(String[] units, String text, int begin, int end, Format format) {
+      int length = end - begin;
+      for (int i = 0; i < units.length; i++) {
+         if (units[i].length() == length && text.regionMatches(true, begin, units[i], 0, length))
+            return i;
+      }
+      throw invalid(text, format);
+   }
+
+   private static NumberFormatException invalid(String text, Format format) {
+      return new NumberFormatException("Invalid " + format.name().toLowerCase(Locale.ROOT) + " \"" + text + "\"");
+   }
+
+   private static NumberFormatException outOfRange(String text) {
+      return new NumberFormatException("The value \"" + text + "\" is out of range");
+   }
+}
@@ -0,0 +1,40 @@
+package com.github.koettlitz.clom;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+/**
+ * Thrown by {@link CLOM} if a command line argument looks like an option,
+ * but the target type does not declare it. It provides the names of the
+ * declared options, that are most similar to the unknown one, e.g.
+ * <code>--length</code> for <code>--lenght</code>.
+ */
+public class UnknownOptionException extends UnknownArgumentException {
+   private static final long serialVersionUID = -3320181945311904613L;
+
+   private final List<String> suggestions;
+
+   public UnknownOptionException(String arg, List<String> suggestions) {
+      super(arg);
+      this.suggestions = Collections.unmodifiableList(suggestions);
+   }
+
+   /**
+    * Provides the declared options most similar to the unknown argument.
+    *
+    * @return the suggested options, most similar first, which may be empty
+    */
+   public List<String> getSuggestions() {
+      return suggestions;
+   }
+
+   @Override
+   public String getMessage() {
+      if (suggestions.isEmpty())
+         return super.getMessage();
+
+      return super.getMessage() + ". Did you mean " + String.join(" or ", suggestions) + "?";
+   }
+}
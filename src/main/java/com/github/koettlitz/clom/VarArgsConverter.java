@@ -0,0 +1,95 @@
+package com.github.koettlitz.clom;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Converts the plain arguments of a varargs collection by its {@link TypeAdapter}.
+ * Large numbers of arguments are split into chunks, that are converted in parallel
+ * on the common {@link ForkJoinPool} into a pre-sized array, so the order of the
+ * arguments is kept. Each chunk uses an adapter of its own, because adapters do
+ * not have to be thread safe.<br>
+ * If arguments can not be converted, the failure of the first one is reported
+ * regardless of the chunk it belongs to, just like a sequential conversion does.
+ */
+final class VarArgsConverter {
+   /** The number of arguments each chunk converts at least, so the adapters are worth their creation */
+   private static final int MIN_CHUNK_SIZE = 1024;
+   /** The number of chunks per thread of the pool to balance chunks of different costs */
+   private static final int CHUNKS_PER_THREAD = 4;
+
+   private VarArgsConverter() {}
+
+   /**
+    * Converts the argument at the given index.
+    *
+    * @throws IllegalArgumentException if the argument can not be converted,
+    * naming its index
+    */
+   static Object convert(TypeAdapter<?> adapter, List<String> values, int index) throws IllegalArgumentException {
+      String value = values.get(index);
+      try {
+         return adapter.parse(value);
+      } catch (IllegalArgumentException e) {
+         throw new IllegalArgumentException("Could not convert the varargs element \"" + value
+                                            + "\" at index " + index + ": " + e.getMessage(), e);
+      }
+   }
+
+   /**
+    * Converts all arguments in parallel chunks.
+    *
+    * @return the converted arguments in their order
+    *
+    * @throws IllegalArgumentException if an argument can not be converted,
+    * naming the index of the first one
+    */
+   static Object[] convertParallel(Binding binding, List<String> values) throws IllegalArgumentException,
+                                                                              InvalidTargetTypeException {
+      Object[] results = new Object[values.size()];
+      int threads = ForkJoinPool.getCommonPoolParallelism();
+      int chunkSize = Math.max(MIN_CHUNK_SIZE, ceilDiv(results.length, threads * CHUNKS_PER_THREAD));
+      int chunks = ceilDiv(results.length, chunkSize);
+
+      // The first failing index and its exception, chunks behind it are skipped
+      AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+      AtomicReferenceArray<RuntimeException> failures = new AtomicReferenceArray<>(chunks);
+      IntStream.range(0, chunks).parallel().forEach(chunk -> {
+         int begin = chunk * chunkSize;
+         int end = Math.min(begin + chunkSize, results.length);
+         if (begin > firstFailure.get())
+            return;
+
+         try {
+            TypeAdapter<?> adapter = binding.newAdapter();
+            for (int i = begin; i < end; i++) {
+               try {
+                  results[i] = convert(adapter, values, i);
+               } catch (RuntimeException e) {
+                  firstFailure.accumulateAndGet(i, Math::min);
+                  failures.set(chunk, e);
+                  return;
+               }
+            }
+         } catch (InvalidTargetTypeException e) {
+            firstFailure.accumulateAndGet(begin, Math::min);
+            failures.set(chunk, e);
+         }
+      });
+
+      // Each chunk stops at its first failure, so the first failing chunk holds the first failure
+      for (int chunk = 0; chunk < chunks; chunk++) {
+         RuntimeException failure = failures.get(chunk);
+         if (failure != null)
+            throw failure;
+      }
+      return results;
+   }
+
+   private static int ceilDiv(int dividend, int divisor) {
+      return (dividend + divisor - 1) / divisor;
+   }
+}
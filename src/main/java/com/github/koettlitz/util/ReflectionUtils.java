@@ -1,11 +1,14 @@
 package com.github.koettlitz.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 
 /**
@@ -14,6 +17,19 @@ import java.util.function.Function;
  */
 public final class ReflectionUtils {
     private static final List<Primitive<?>> PRIMITIVES;
+    private static final Map<Class<?>, Primitive<?>> PRIMITIVE_TYPES = new HashMap<>();
+    private static final ClassValue<Members> MEMBERS = new ClassValue<Members>() {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members(type);
+        }
+    };
+    private static final ClassValue<FormatPlan> FORMAT_PLANS = new ClassValue<FormatPlan>() {
+        @Override
+        protected FormatPlan computeValue(Class<?> type) {
+            return new FormatPlan(type);
+        }
+    };
 
     static {
         PRIMITIVES = Arrays.asList(new Primitive<>(Byte.TYPE,
@@ -52,6 +68,11 @@ public final class ReflectionUtils {
                         String.class,
                         s -> s,
                         ""));
+
+        for (Primitive<?> p : PRIMITIVES) {
+            PRIMITIVE_TYPES.put(p.type, p);
+            PRIMITIVE_TYPES.put(p.boxType, p);
+        }
     }
 
     private ReflectionUtils() {}
@@ -66,96 +87,219 @@ public final class ReflectionUtils {
      *
      * @return The object as a String
      *
-     * <code>object</code> contains a private field
+     * @see #toString(Object, Appendable)
      */
     public static String toString(Object object) {
-        return toString(object, new StringBuilder(), 0).toString();
+        StringBuilder builder = new StringBuilder();
+        try {
+            return toString(object, builder).toString();
+        } catch (IOException e) {
+            // A StringBuilder does not throw IOExceptions
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private static StringBuilder toString(Object object,
-                                          StringBuilder builder,
-                                          int tabCount) {
-        if (object == null)
-            return builder.append("null");
-
-        Class<?> type = object.getClass();
-        if (ReflectionUtils.isPrimitive(type)) {
-            if (type.equals(String.class)) {
-                return builder.append('\"')
-                        .append(object.toString())
-                        .append('\"');
-            } else {
-                return builder.append(object.toString());
+    /**
+     * Writes the <code>object</code> to the given <code>appendable</code> in the
+     * same format as {@link #toString(Object)} without building the whole String first.
+     * The reflective structure of each class is analyzed only once and cached.
+     * Objects that reference themselves, directly or indirectly, are written as
+     * <code>SimpleName &lt;cycle&gt;</code> at the point where the cycle closes.
+     *
+     * @param object The object to be written
+     * @param appendable The destination to write the object to
+     * @param <A> The type of the destination
+     *
+     * @return The given <code>appendable</code>
+     *
+     * @throws IOException if writing to the <code>appendable</code> fails
+     */
+    public static <A extends Appendable> A toString(Object object, A appendable) throws IOException {
+        new Formatter(appendable).format(object, 0);
+        return appendable;
+    }
+
+    /**
+     * Writes objects according to the cached {@link FormatPlan}s of their classes.
+     */
+    private static final class Formatter {
+        private static final String INDENT = "                                                                ";
+
+        private final Appendable out;
+        private Set<Object> path;
+
+        private Formatter(Appendable out) {
+            this.out = out;
+        }
+
+        private void format(Object object, int depth) throws IOException {
+            if (object == null) {
+                out.append("null");
+                return;
             }
-        } else if (type.isArray()) {
-            return arrayToString(object, builder);
-        } else if (type.isEnum()) {
-            return builder.append(object.toString());
-        }
-
-        StringBuilder tabBuilder = new StringBuilder(tabCount * 2);
-        for (int i = 0; i < tabCount; i++)
-            tabBuilder.append("  ");
-
-        builder.append(type.getSimpleName());
-        Collection<Field> fields = ReflectionUtils.getAllFieldsOf(type);
-        if (fields.isEmpty())
-            return builder;
-
-        builder.append(" {\n");
-        Iterator<Field> iter = fields.iterator();
-        while (iter.hasNext()) {
-            Field f = iter.next();
-            builder.append(tabBuilder.toString())
-                    .append("  ")
-                    .append(f.getName())
-                    .append('=');
-            try {
-                f.setAccessible(true);
-                toString(f.get(object), builder, tabCount + 1);
-            } catch (SecurityException | IllegalAccessException e) {
-                builder.append("<not accessible>");
+
+            FormatPlan plan = FORMAT_PLANS.get(object.getClass());
+            switch (plan.kind) {
+                case FormatPlan.STRING:
+                    out.append('\"').append(object.toString()).append('\"');
+                    break;
+                case FormatPlan.PRIMITIVE:
+                case FormatPlan.ENUM:
+                    out.append(object.toString());
+                    break;
+                case FormatPlan.PRIMITIVE_ARRAY:
+                    formatPrimitiveArray(object);
+                    break;
+                case FormatPlan.ARRAY:
+                    if (enter(object, plan)) {
+                        formatArray((Object[]) object);
+                        path.remove(object);
+                    }
+                    break;
+                default:
+                    if (enter(object, plan)) {
+                        formatObject(object, plan, depth);
+                        path.remove(object);
+                    }
             }
+        }
+
+        private boolean enter(Object object, FormatPlan plan) throws IOException {
+            if (path == null)
+                path = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            if (path.add(object))
+                return true;
+
+            out.append(plan.simpleName).append(" <cycle>");
+            return false;
+        }
 
-            if (iter.hasNext()) {
-                builder.append(",\n");
+        private void formatObject(Object object, FormatPlan plan, int depth) throws IOException {
+            out.append(plan.simpleName);
+            Field[] fields = plan.fields;
+            if (fields.length == 0)
+                return;
+
+            out.append(" {\n");
+            for (int i = 0; i < fields.length; i++) {
+                indent(depth + 1);
+                out.append(plan.labels[i]);
+                if (plan.accessible[i]) {
+                    try {
+                        format(fields[i].get(object), depth + 1);
+                    } catch (IllegalAccessException e) {
+                        out.append("<not accessible>");
+                    }
+                } else {
+                    out.append("<not accessible>");
+                }
+
+                if (i < fields.length - 1)
+                    out.append(",\n");
             }
+            out.append('\n');
+            indent(depth);
+            out.append('}');
         }
-        return builder.append('\n')
-                .append(tabBuilder.toString())
-                .append('}');
-    }
 
-    private static StringBuilder arrayToString(Object array,
-                                               StringBuilder builder) {
-        Class<?> type = array.getClass()
-                .getComponentType();
+        private void formatArray(Object[] array) throws IOException {
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0)
+                    out.append(", ");
 
-        builder.append('[');
-        int length = Array.getLength(array);
+                format(array[i], 0);
+            }
+            out.append(']');
+        }
 
-        Consumer<Object> appender;
-        if (ReflectionUtils.isPrimitive(type)) {
-            if (type.equals(String.class)) {
-                appender = s -> builder.append('\"')
-                        .append(s.toString())
-                        .append('\"');
-            } else {
-                appender = p -> builder.append(p.toString());
+        private void formatPrimitiveArray(Object array) throws IOException {
+            out.append('[');
+            int length = Array.getLength(array);
+            for (int i = 0; i < length; i++) {
+                if (i > 0)
+                    out.append(", ");
+
+                if (array instanceof int[])
+                    out.append(Integer.toString(((int[]) array)[i]));
+                else if (array instanceof long[])
+                    out.append(Long.toString(((long[]) array)[i]));
+                else if (array instanceof char[])
+                    out.append(((char[]) array)[i]);
+                else if (array instanceof byte[])
+                    out.append(Byte.toString(((byte[]) array)[i]));
+                else if (array instanceof boolean[])
+                    out.append(Boolean.toString(((boolean[]) array)[i]));
+                else
+                    out.append(String.valueOf(Array.get(array, i)));
             }
-        } else {
-            appender = o -> builder.append(toString(o));
+            out.append(']');
         }
-        for (int i = 0; i < length; i++) {
-            try {
-                appender.accept(Array.get(array, i));
-            } catch (NullPointerException e) {
-                // Nothing to do here
+
+        private void indent(int depth) throws IOException {
+            int length = depth * 2;
+            while (length > INDENT.length()) {
+                out.append(INDENT);
+                length -= INDENT.length();
+            }
+            out.append(INDENT, 0, length);
+        }
+    }
+
+    /**
+     * The precomputed structure of a class, that is needed to convert
+     * its instances into Strings.
+     */
+    private static final class FormatPlan {
+        private static final int STRING = 0;
+        private static final int PRIMITIVE = 1;
+        private static final int ENUM = 2;
+        private static final int PRIMITIVE_ARRAY = 3;
+        private static final int ARRAY = 4;
+        private static final int OBJECT = 5;
+
+        private final int kind;
+        private final String simpleName;
+        private final Field[] fields;
+        private final String[] labels;
+        private final boolean[] accessible;
+
+        private FormatPlan(Class<?> type) {
+            simpleName = type.getSimpleName();
+            if (type == String.class) {
+                kind = STRING;
+            } else if (isPrimitive(type)) {
+                kind = PRIMITIVE;
+            } else if (type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+                kind = ENUM;
+            } else if (type.isArray()) {
+                kind = type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : ARRAY;
+            } else {
+                kind = OBJECT;
+            }
+
+            if (kind != OBJECT) {
+                fields = new Field[0];
+                labels = new String[0];
+                accessible = new boolean[0];
+                return;
+            }
+
+            fields = getAllFieldsOf(type).toArray(new Field[0]);
+            labels = new String[fields.length];
+            accessible = new boolean[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                labels[i] = fields[i].getName() + '=';
+                try {
+                    fields[i].setAccessible(true);
+                    accessible[i] = true;
+                } catch (RuntimeException e) {
+                    // SecurityException or, since Java 9, InaccessibleObjectException
+                    accessible[i] = false;
+                }
             }
-            if (i < length - 1)
-                builder.append(", ");
         }
-        return builder.append(']');
     }
 
     /**
@@ -182,6 +326,21 @@ public final class ReflectionUtils {
         return isSubclass(sub.getSuperclass(), sup);
     }
 
+    /**
+     * Invokes the getter method of the given <code>field</code> on the <code>entity</code>.
+     * The getter is named by the bean convention (<code>isFoo</code> for boolean fields,
+     * <code>getFoo</code> otherwise). It is looked up only once per class and field.
+     *
+     * @param entity The object to invoke the getter on
+     * @param field The field whose getter should be invoked
+     * @param <T> The type of the fields value
+     *
+     * @return The value returned by the getter
+     *
+     * @throws NoSuchMethodException if the class of <code>entity</code> declares no such getter
+     * @throws IllegalAccessException if the getter is not accessible
+     * @throws InvocationTargetException if the getter throws an exception
+     */
     @SuppressWarnings("unchecked")
     public static <T> T invokeGetter(Object entity, Field field) throws NoSuchMethodException,
             SecurityException,
@@ -189,33 +348,70 @@ public final class ReflectionUtils {
             IllegalArgumentException,
             InvocationTargetException,
             ClassCastException {
-        String prefix = "get";
-        Primitive<?> primitive = Primitive.of(field.getType());
-        if (primitive != null)
-            prefix = primitive.equals(Primitive.of(Boolean.TYPE)) ? "is" : "get";
-
-        String name = prefix + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
-        Method getter = getMethod(entity.getClass(), name);
-        return (T) getter.invoke(entity);
+        return (T) MEMBERS.get(entity.getClass())
+                .getter(field)
+                .invoke(entity);
     }
 
+    /**
+     * Invokes the setter method (<code>setFoo</code>) of the given <code>field</code> on
+     * the <code>target</code>. The setter is looked up only once per class and field.
+     *
+     * @param target The object to invoke the setter on
+     * @param field The field whose setter should be invoked
+     * @param value The value to pass to the setter
+     *
+     * @throws NoSuchMethodException if the class of <code>target</code> declares no such setter
+     * @throws IllegalAccessException if the setter is not accessible
+     * @throws InvocationTargetException if the setter throws an exception
+     */
     public static void invokeSetter(Object target, Field field, Object value) throws NoSuchMethodException,
             SecurityException,
             IllegalAccessException,
             IllegalArgumentException,
             InvocationTargetException {
-        String name = "set" + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
-        Method setter = getMethod(target.getClass(), name, field.getType());
-        setter.invoke(target, value);
+        MEMBERS.get(target.getClass())
+                .setter(field)
+                .invoke(target, value);
     }
 
     public static void invokePrimitiveSetter(Object target,
                                              Field field,
                                              Object value,
                                              Class<?> primitiveClass) throws ReflectiveOperationException {
-        String name = "set" + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1);
-        Method setter = getMethod(target.getClass(), name, field.getType());
-        setter.invoke(target, value);
+        invokeSetter(target, field, value);
+    }
+
+    /**
+     * Provides the name of the getter method of the given field by the bean convention.
+     *
+     * @param field The field to get the getter name of
+     *
+     * @return <code>isFoo</code> for a boolean field <code>foo</code>, otherwise <code>getFoo</code>
+     */
+    public static String getterName(Field field) {
+        Class<?> type = field.getType();
+        String prefix = type == Boolean.TYPE || type == Boolean.class ? "is" : "get";
+        return accessorName(prefix, field.getName());
+    }
+
+    /**
+     * Provides the name of the setter method of the given field by the bean convention.
+     *
+     * @param field The field to get the setter name of
+     *
+     * @return <code>setFoo</code> for a field <code>foo</code>
+     */
+    public static String setterName(Field field) {
+        return accessorName("set", field.getName());
+    }
+
+    private static String accessorName(String prefix, String name) {
+        return new StringBuilder(prefix.length() + name.length())
+                .append(prefix)
+                .append(Character.toUpperCase(name.charAt(0)))
+                .append(name, 1, name.length())
+                .toString();
     }
 
     public static <E extends Enum<E>> Enum<E> parseEnumValue(Class<Enum<E>> type, String value) throws IllegalArgumentException {
@@ -256,24 +452,171 @@ public final class ReflectionUtils {
         return result;
     }
 
+    /**
+     * Finds the field with the given name declared by <code>type</code> or
+     * one of its superclasses. Results, including the absence of a field,
+     * are cached per class.
+     *
+     * @param type The type to search the field in
+     * @param fieldName The name of the field
+     *
+     * @return The found field
+     *
+     * @throws NoSuchFieldException if neither <code>type</code> nor
+     * any of its superclasses declares such a field
+     */
     public static Field getField(Class<?> type, String fieldName) throws NoSuchFieldException, SecurityException {
-        return getMetaObject(type, t -> t.getDeclaredField(fieldName));
+        Field field = MEMBERS.get(type).field(fieldName);
+        if (field == null)
+            throw new NoSuchFieldException(fieldName + " in " + type.getName());
+
+        return field;
     }
 
+    /**
+     * Finds the method with the given name and parameter types declared by
+     * <code>type</code> or one of its superclasses. Results, including the
+     * absence of a method, are cached per class.
+     *
+     * @param type The type to search the method in
+     * @param methodName The name of the method
+     * @param params The parameter types of the method
+     *
+     * @return The found method
+     *
+     * @throws NoSuchMethodException if neither <code>type</code> nor
+     * any of its superclasses declares such a method
+     */
     public static Method getMethod(Class<?> type, String methodName, Class<?>... params) throws NoSuchMethodException {
-        return getMetaObject(type, (t) -> t.getDeclaredMethod(methodName, params));
+        Method method = findMethod(type, methodName, params);
+        if (method == null)
+            throw new NoSuchMethodException(methodName + Arrays.toString(params) + " in " + type.getName());
+
+        return method;
     }
 
-    private static <T, E extends Exception> T getMetaObject(Class<?> type,
-                                                            UnsafeFunction<Class<?>, ? extends T, E> metaObjectRetriever)
-            throws E {
-        try {
-            return metaObjectRetriever.apply(type);
-        } catch (Exception e) {
-            if (type.getSuperclass() == null)
-                throw e;
+    /**
+     * Finds the method with the given name and parameter types declared by
+     * <code>type</code> or one of its superclasses like {@link #getMethod(Class, String, Class[])},
+     * but returns <code>null</code> instead of throwing an exception if there is no such method.
+     *
+     * @param type The type to search the method in
+     * @param methodName The name of the method
+     * @param params The parameter types of the method
+     *
+     * @return The found method or <code>null</code>
+     */
+    public static Method findMethod(Class<?> type, String methodName, Class<?>... params) {
+        return MEMBERS.get(type).method(new MethodKey(methodName, params));
+    }
 
-            return getMetaObject(type.getSuperclass(), metaObjectRetriever);
+    /**
+     * Caches the fields, methods and accessors of a class, that have been
+     * looked up. Absent members are cached as well, so repeated misses neither
+     * scan the class hierarchy again nor create exceptions.
+     */
+    private static final class Members {
+        private final Class<?> type;
+        private final ConcurrentMap<String, Optional<Field>> fields = new ConcurrentHashMap<>();
+        private final ConcurrentMap<MethodKey, Optional<Method>> methods = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Field, Optional<Method>> getters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Field, Optional<Method>> setters = new ConcurrentHashMap<>();
+
+        private Members(Class<?> type) {
+            this.type = type;
+        }
+
+        private Field field(String name) {
+            Optional<Field> field = fields.get(name);
+            if (field == null)
+                field = fields.computeIfAbsent(name, n -> Optional.ofNullable(lookupField(n)));
+
+            return field.orElse(null);
+        }
+
+        private Field lookupField(String name) {
+            for (Field f : type.getDeclaredFields()) {
+                if (f.getName().equals(name))
+                    return f;
+            }
+
+            Class<?> superclass = type.getSuperclass();
+            return superclass == null ? null : MEMBERS.get(superclass).field(name);
+        }
+
+        private Method method(MethodKey key) {
+            Optional<Method> method = methods.get(key);
+            if (method == null)
+                method = methods.computeIfAbsent(key, k -> Optional.ofNullable(lookupMethod(k)));
+
+            return method.orElse(null);
+        }
+
+        private Method lookupMethod(MethodKey key) {
+            Method result = null;
+            for (Method m : type.getDeclaredMethods()) {
+                if (m.getName().equals(key.name) && Arrays.equals(m.getParameterTypes(), key.params)) {
+                    // Prefer the most specific return type like Class.getDeclaredMethod does
+                    if (result == null || result.getReturnType().isAssignableFrom(m.getReturnType()))
+                        result = m;
+                }
+            }
+            if (result != null)
+                return result;
+
+            Class<?> superclass = type.getSuperclass();
+            return superclass == null ? null : MEMBERS.get(superclass).method(key);
+        }
+
+        private Method getter(Field field) throws NoSuchMethodException {
+            return accessor(getters, field, f -> new MethodKey(getterName(f)));
+        }
+
+        private Method setter(Field field) throws NoSuchMethodException {
+            return accessor(setters, field, f -> new MethodKey(setterName(f), f.getType()));
+        }
+
+        private Method accessor(ConcurrentMap<Field, Optional<Method>> cache,
+                                Field field,
+                                Function<Field, MethodKey> keyFunction) throws NoSuchMethodException {
+            Optional<Method> accessor = cache.get(field);
+            if (accessor == null)
+                accessor = cache.computeIfAbsent(field, f -> Optional.ofNullable(method(keyFunction.apply(f))));
+
+            if (!accessor.isPresent()) {
+                MethodKey key = keyFunction.apply(field);
+                throw new NoSuchMethodException(key.name + Arrays.toString(key.params) + " in " + type.getName());
+            }
+
+            return accessor.get();
+        }
+    }
+
+    private static final class MethodKey {
+        private final String name;
+        private final Class<?>[] params;
+        private final int hash;
+
+        private MethodKey(String name, Class<?>... params) {
+            this.name = name;
+            this.params = params;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof MethodKey))
+                return false;
+
+            MethodKey other = (MethodKey) o;
+            return hash == other.hash && name.equals(other.name) && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
@@ -313,8 +656,7 @@ public final class ReflectionUtils {
      * <code>false</code> if it's a Type of Object except String.
      */
     public static boolean isPrimitive(Class<?> type) {
-        return PRIMITIVES.stream()
-                .anyMatch(p -> p.type.equals(type) || p.boxType.equals(type));
+        return PRIMITIVE_TYPES.containsKey(type);
     }
 
     /**
@@ -353,13 +695,11 @@ public final class ReflectionUtils {
          *
          */
         public static <P> Primitive<P> of(Class<P> type) throws IllegalArgumentException {
-            for (Primitive<?> p : PRIMITIVES) {
-                if (p.type.equals(type) || p.boxType.equals(type)) {
-                    @SuppressWarnings("unchecked")
-                    Primitive<P> returnVal = (Primitive<P>) p;
-                    return returnVal;
-                }
-            }
+            @SuppressWarnings("unchecked")
+            Primitive<P> primitive = (Primitive<P>) PRIMITIVE_TYPES.get(type);
+            if (primitive != null)
+                return primitive;
+
             throw new IllegalArgumentException(type + " is not a primitive, primitive wrapper, nor String.");
         }
 
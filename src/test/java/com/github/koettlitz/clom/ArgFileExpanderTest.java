@@ -0,0 +1,135 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class ArgFileExpanderTest {
+   private Path dir;
+
+   @BeforeEach
+   public void createDirectory() throws IOException {
+      dir = Files.createTempDirectory("clom-argfiles");
+   }
+
+   @AfterEach
+   public void deleteDirectory() throws IOException {
+      Files.walk(dir)
+           .sorted((a, b) -> b.compareTo(a))
+           .forEach(p -> p.toFile().delete());
+   }
+
+   private Path write(String name, String content) throws IOException {
+      return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static List<String> expand(ArgFileExpander expander) throws IOException {
+      List<String> result = new ArrayList<>();
+      try (ArgFileExpander e = expander) {
+         while (e.hasNext())
+            result.add(e.next());
+      }
+      return result;
+   }
+
+   @Test
+   public void args_without_files_are_returned_unchanged() throws IOException {
+      assertEquals(Arrays.asList("foo", "-f", "@@bar"),
+                   expand(new ArgFileExpander("foo", "-f", "@@@bar")));
+   }
+
+   @Test
+   public void argument_file_is_split_into_tokens() throws IOException {
+      Path file = write("args.txt", "first  second\n\tthird # a comment\n#another comment\r\nfourth");
+      assertEquals(Arrays.asList("before", "first", "second", "third", "fourth", "after"),
+                   expand(new ArgFileExpander("before", "@" + file, "after")));
+   }
+
+   @Test
+   public void quoted_tokens_keep_their_whitespace() throws IOException {
+      Path file = write("args.txt", "\"a b\" 'c \\d' --name=\"multi\nline\" \"esc\\\"aped\" '' x\\ y");
+      assertEquals(Arrays.asList("a b", "c \\d", "--name=multi\nline", "esc\"aped", "", "x y"),
+                   expand(new ArgFileExpander("@" + file)));
+   }
+
+   @Test
+   public void nested_argument_files_are_expanded_relative_to_their_parent() throws IOException {
+      write("inner.txt", "inner1 inner2");
+      Path outer = write("outer.txt", "outer1 @inner.txt '@inner.txt' outer2");
+
+      assertEquals(Arrays.asList("outer1", "inner1", "inner2", "@inner.txt", "outer2"),
+                   expand(new ArgFileExpander("@" + outer)));
+      assertEquals(Arrays.asList("outer1", "@inner.txt", "@inner.txt", "outer2"),
+                   expand(new ArgFileExpander("@" + outer).setNestedExpansion(false)));
+   }
+
+   @Test
+   public void recursive_argument_files_throw_exception() throws IOException {
+      Path file = write("self.txt", "a @self.txt");
+      ArgFileExpander expander = new ArgFileExpander("@" + file);
+      assertEquals("a", expander.next());
+      assertThrows(UncheckedIOException.class, expander::next);
+      expander.close();
+   }
+
+   @Test
+   public void large_argument_files_are_streamed() throws IOException {
+      StringBuilder content = new StringBuilder();
+      int count = 20000;
+      for (int i = 0; i < count; i++)
+         content.append("path/to/file-").append(i).append('\n');
+
+      Path file = write("large.txt", content.toString());
+      List<String> result = expand(new ArgFileExpander("@" + file));
+      assertEquals(count, result.size());
+      assertEquals("path/to/file-0", result.get(0));
+      assertEquals("path/to/file-" + (count - 1), result.get(count - 1));
+   }
+
+   @Test
+   public void argument_files_are_parsed_by_clom() throws IOException, ArgumentParseException {
+      Path file = write("args.txt", "foo 15\n-b 1024");
+      ArgumentModel result;
+      try (ArgFileExpander expander = new ArgFileExpander("@" + file, "-f")) {
+         result = CLOM.parse(ArgumentModel.class, expander);
+      }
+
+      assertEquals("foo", result.getArg0());
+      assertEquals(15, result.getArg1());
+      assertEquals(1024, result.getBar());
+      assertTrue(result.isFlag());
+   }
+
+   @Test
+   public void argument_file_after_separator_is_read_while_varargs_are_consumed() throws IOException,
+                                                                                       ArgumentParseException {
+      Path file = write("ids.txt", "2\n3\n-4");
+      try (ArgFileExpander expander = new ArgFileExpander("-f", "1", "--", "@" + file)) {
+         IteratorVarArgsModel result = CLOM.parse(IteratorVarArgsModel.class, expander);
+         assertTrue(result.isForce());
+         assertTrue(expander.hasNext());
+         assertEquals("2", expander.peek());
+
+         List<Integer> ids = new ArrayList<>();
+         result.getIds().forEachRemaining(ids::add);
+         assertEquals(Arrays.asList(1, 2, 3, -4), ids);
+         assertFalse(expander.hasNext());
+      }
+   }
+}
@@ -0,0 +1,89 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.MissingArgumentException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+public class CLOMDispatcherTest {
+
+   @Test
+   public void commands_are_routed_to_their_handlers() throws Exception {
+      try (CLOMDispatcher dispatcher = new CLOMDispatcher()) {
+         dispatcher.register("greet", GreetCommand.class)
+                   .register("toggle", ToggleCommand.class);
+
+         assertEquals("Hello World", dispatcher.dispatch("greet", "World").get());
+         assertEquals("HELLO WORLD", dispatcher.dispatch("greet", "-l", "World").get());
+         assertNull(dispatcher.dispatch("toggle", "--on").get());
+
+         CLOMDispatcher.Latency latency = dispatcher.getLatency("greet");
+         assertEquals(2, latency.getCount());
+         assertEquals(0, latency.getFailures());
+         assertTrue(latency.getMaxNanos() > 0);
+         assertTrue(latency.getMeanNanos() <= latency.getMaxNanos());
+         assertNull(dispatcher.getLatency("unknown"));
+      }
+   }
+
+   @Test
+   public void invalid_commands_fail_before_they_are_dispatched() {
+      CLOMDispatcher dispatcher = new CLOMDispatcher(Runnable::run, 1).register("greet", GreetCommand.class);
+
+      assertThrows(UnknownArgumentException.class, () -> dispatcher.dispatch("great", "World"));
+      assertThrows(MissingArgumentException.class, () -> dispatcher.dispatch("greet"));
+      assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch());
+      assertEquals(0, dispatcher.getPending());
+   }
+
+   @Test
+   public void exceptions_of_handlers_complete_the_result() throws ArgumentParseException, InterruptedException {
+      CLOMDispatcher dispatcher = new CLOMDispatcher(Runnable::run, 1).register("greet", GreetCommand.class);
+
+      CompletableFuture<Object> result = dispatcher.dispatch("greet", "nobody");
+
+      ExecutionException e = assertThrows(ExecutionException.class, result::get);
+      assertTrue(e.getCause() instanceof IllegalStateException);
+      assertEquals(1, dispatcher.getLatency("greet").getFailures());
+      assertEquals(0, dispatcher.getPending());
+   }
+
+   @Test
+   public void commands_are_rejected_when_the_capacity_is_reached() throws Exception {
+      List<Runnable> queue = new ArrayList<>();
+      CLOMDispatcher dispatcher = new CLOMDispatcher(queue::add, 2).register("greet", GreetCommand.class);
+
+      CompletableFuture<Object> first = dispatcher.tryDispatch("greet", "first");
+      assertNotNull(dispatcher.tryDispatch("greet", "second"));
+      assertEquals(2, dispatcher.getPending());
+      assertNull(dispatcher.tryDispatch("greet", "third"));
+      assertEquals(1, dispatcher.getLatency("greet").getRejections());
+
+      queue.remove(0).run();
+      assertEquals("Hello first", first.get());
+      assertEquals(1, dispatcher.getPending());
+      assertNotNull(dispatcher.tryDispatch("greet", "third"));
+      assertEquals(2, queue.size());
+   }
+
+   @Test
+   public void handlers_have_to_be_valid() {
+      CLOMDispatcher dispatcher = new CLOMDispatcher(Runnable::run, 1);
+
+      assertThrows(InvalidTargetTypeException.class, () -> dispatcher.register("invalid", InvalidHandlerModel.class));
+      assertThrows(InvalidTargetTypeException.class, () -> dispatcher.register("args", ArgumentModel.class));
+      assertThrows(IllegalArgumentException.class, () -> new CLOMDispatcher(Runnable::run, 0));
+   }
+}
@@ -0,0 +1,110 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+public class CLOMSessionTest {
+
+   @Test
+   public void each_line_is_parsed_into_a_model() throws IOException, ArgumentParseException {
+      String input = "first 1 -f\n"
+                     + "\n"
+                     + "  # a comment\n"
+                     + "\"second command\" 2 -b 1024 # trailing comment\r\n"
+                     + "third \\\n"
+                     + "3";
+
+      List<ArgumentModel> results = new ArrayList<>();
+      long handled = new CLOMSession<>(ArgumentModel.class).run(new StringReader(input), results::add);
+
+      assertEquals(3, handled);
+      assertEquals("first", results.get(0).getArg0());
+      assertEquals(1, results.get(0).getArg1());
+      assertTrue(results.get(0).isFlag());
+
+      assertEquals("second command", results.get(1).getArg0());
+      assertEquals(2, results.get(1).getArg1());
+      assertEquals(1024, results.get(1).getBar());
+
+      assertEquals("third", results.get(2).getArg0());
+      assertEquals(3, results.get(2).getArg1());
+   }
+
+   @Test
+   public void invalid_lines_are_passed_to_error_handler() throws IOException, ArgumentParseException {
+      List<String> invalidLines = new ArrayList<>();
+      List<ArgumentModel> results = new ArrayList<>();
+      CLOMSession<ArgumentModel> session = new CLOMSession<>(ArgumentModel.class)
+            .setErrorHandler((line, e) -> invalidLines.add(line));
+
+      session.run(new StringReader("valid\n-x\nfoo bar\nvalid 'again"), results::add);
+
+      assertEquals(1, results.size());
+      assertEquals("valid", results.get(0).getArg0());
+      assertEquals(3, invalidLines.size());
+      assertEquals("-x", invalidLines.get(0));
+      assertEquals("foo bar", invalidLines.get(1));
+   }
+
+   @Test
+   public void unterminated_quote_ends_at_line_break() throws IOException, ArgumentParseException {
+      List<String> invalidLines = new ArrayList<>();
+      List<ArgumentModel> results = new ArrayList<>();
+      CLOMSession<ArgumentModel> session = new CLOMSession<>(ArgumentModel.class)
+            .setErrorHandler((line, e) -> invalidLines.add(line));
+
+      String input = "\"open 1\n"
+                     + "first 1\n"
+                     + "\"second \\\ncommand\" 2\n"
+                     + "'third 3\r\n"
+                     + "fourth 4";
+      session.run(new StringReader(input), results::add);
+
+      assertEquals(2, invalidLines.size());
+      assertEquals("\"open 1", invalidLines.get(0));
+      assertEquals("'third 3", invalidLines.get(1));
+      assertEquals(3, results.size());
+      assertEquals("first", results.get(0).getArg0());
+      assertEquals("second command", results.get(1).getArg0());
+      assertEquals(2, results.get(1).getArg1());
+      assertEquals("fourth", results.get(2).getArg0());
+   }
+
+   @Test
+   public void invalid_line_without_error_handler_throws_exception() {
+      CLOMSession<ArgumentModel> session = new CLOMSession<>(ArgumentModel.class);
+      assertThrows(UnknownArgumentException.class, () -> session.run(new StringReader("-x"), r -> { }));
+   }
+
+   @Test
+   public void commands_are_read_from_channel() throws IOException, ArgumentParseException {
+      StringBuilder input = new StringBuilder();
+      int count = 10000;
+      for (int i = 0; i < count; i++)
+         input.append("grüße ").append(i % 100).append('\n');
+
+      byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+      List<ArgumentModel> results = new ArrayList<>();
+      long handled = new CLOMSession<>(ArgumentModel.class).run(Channels.newChannel(new ByteArrayInputStream(bytes)),
+                                                                 StandardCharsets.UTF_8,
+                                                                 results::add);
+
+      assertEquals(count, handled);
+      assertEquals("grüße", results.get(count - 1).getArg0());
+      assertEquals(99, results.get(count - 1).getArg1());
+   }
+}
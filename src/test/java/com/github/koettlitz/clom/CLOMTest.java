@@ -1,18 +1,33 @@
 package com.github.koettlitz.clom;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
 import com.github.koettlitz.opt.ArgumentParserBuilder;
 import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
 import com.github.koettlitz.opt.ex.MissingArgumentException;
 import com.github.koettlitz.opt.ex.MissingOptionValueException;
 
@@ -99,6 +114,24 @@ public class CLOMTest {
                    () -> CLOM.parse(ArgumentModel.class, new ArgumentParserBuilder()));
    }
 
+   @Test
+   public void options_of_the_builder_are_accepted() throws ArgumentParseException {
+      ArgumentParserBuilder builder = new ArgumentParserBuilder().addOption('x');
+      builder.buildOption('y').setExpectsValue(true).build();
+
+      ArgumentModel result = CLOM.parse(ArgumentModel.class, builder, ARG0, "-x", "-y", "5", "-fb", "7");
+      assertEquals(ARG0, result.getArg0());
+      assertEquals(-1, result.getArg1());
+      assertTrue(result.isFlag());
+      assertEquals(7, result.getBar());
+   }
+
+   @Test
+   public void value_attached_to_short_key_throws_exception() {
+      assertThrows(InvalidOptionFormatException.class, () -> CLOM.parse(ArgumentModel.class, ARG0, "-b5"));
+      assertThrows(InvalidOptionFormatException.class, () -> CLOM.parse(ArgumentModel.class, ARG0, "-bf"));
+   }
+
    @Test
    public void missing_option_value_throws_exception() {
       assertThrows(MissingOptionValueException.class, () -> CLOM.parse(ArgumentModel.class, ARG0, "-" + BAR_KEY));
@@ -148,4 +181,508 @@ public class CLOMTest {
       IllegalArgumentException e = assertThrows(IllegalArgumentException.class, parseCall);
       assertEquals(ModelWithAdapters.INVALID_DATE_ERROR_MSG, e.getMessage());
    }
+
+   @Test
+   public void primitive_option_throws_exception_at_invalid_number() {
+      Executable parseCall = () -> CLOM.parse(PrimitiveModel.class, "server", "-p", "80a");
+
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, parseCall);
+      assertEquals("Could not parse \"80a\" to int", e.getMessage());
+   }
+
+   @Test
+   public void primitive_option_throws_exception_at_empty_char() {
+      Executable parseCall = () -> CLOM.parse(PrimitiveModel.class, "server", "-m", "");
+
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, parseCall);
+      assertEquals("Could not parse \"\" to char", e.getMessage());
+   }
+
+   @Test
+   public void iterator_var_args_are_converted_lazily() throws ArgumentParseException {
+      IteratorVarArgsModel result = CLOM.parse(IteratorVarArgsModel.class, "1", "-f", "2", "x");
+      assertTrue(result.isForce());
+
+      Iterator<Integer> ids = result.getIds();
+      assertEquals(Integer.valueOf(1), ids.next());
+      assertEquals(Integer.valueOf(2), ids.next());
+      assertThrows(NumberFormatException.class, ids::next);
+   }
+
+   @Test
+   public void stream_var_args_are_converted() throws ArgumentParseException {
+      StreamVarArgsModel result = CLOM.parse(StreamVarArgsModel.class, "1", "2", "3");
+      assertEquals(6, result.getIds().mapToInt(Integer::intValue).sum());
+   }
+
+   @Test
+   public void consumer_var_args_receive_each_value() throws ArgumentParseException {
+      ConsumerVarArgsModel result = CLOM.parse(ConsumerVarArgsModel.class, "3", "2", "1");
+      assertEquals(Arrays.asList(3, 2, 1), result.getReceived());
+   }
+
+   @Test
+   public void large_var_args_are_converted_in_parallel_in_order() throws ArgumentParseException {
+      String[] args = new String[50_000];
+      List<Integer> expected = new ArrayList<>(args.length);
+      for (int i = 0; i < args.length; i++) {
+         args[i] = String.valueOf(args.length - i);
+         expected.add(args.length - i);
+      }
+
+      CLOM.setParallelVarArgsThreshold(1_000);
+      try {
+         assertEquals(expected, CLOM.parse(ListVarArgsModel.class, args).getIds());
+      } finally {
+         CLOM.setParallelVarArgsThreshold(CLOM.DEFAULT_PARALLEL_VARARGS_THRESHOLD);
+      }
+   }
+
+   @Test
+   public void first_invalid_var_arg_is_reported() {
+      String[] args = new String[50_000];
+      Arrays.fill(args, "1");
+      args[31_000] = "x";
+      args[42_000] = "y";
+
+      for (int threshold : new int[] {1_000, Integer.MAX_VALUE}) {
+         CLOM.setParallelVarArgsThreshold(threshold);
+         try {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                                                      () -> CLOM.parse(ListVarArgsModel.class, args));
+            assertTrue(e.getMessage().contains("\"x\" at index 31000"), e.getMessage());
+            assertTrue(e.getCause() instanceof NumberFormatException);
+         } finally {
+            CLOM.setParallelVarArgsThreshold(CLOM.DEFAULT_PARALLEL_VARARGS_THRESHOLD);
+         }
+      }
+   }
+
+   @Test
+   public void nul_delimited_bytes_are_parsed() throws ArgumentParseException {
+      ByteBuffer args = nulDelimited("gr\u00fc\u00dfe", "-svv", "--port=8080", "--timeout=-5000",
+                                     "-b", "12", "-m", "x", "--user=J\u00f6rg");
+
+      PrimitiveModel result = CLOM.parse(PrimitiveModel.class, args, TokenLayout.NUL_DELIMITED);
+      assertEquals("gr\u00fc\u00dfe", result.getName());
+      assertEquals(8080, result.getPort());
+      assertEquals(-5000, result.getTimeout());
+      assertEquals(12, result.getBacklog());
+      assertEquals('x', result.getMode());
+      assertEquals("J\u00f6rg", result.getUser());
+      assertTrue(result.isSsl());
+      assertEquals(2, result.getVerbosity());
+      assertFalse(args.hasRemaining());
+   }
+
+   @Test
+   public void length_prefixed_bytes_are_parsed() throws ArgumentParseException {
+      ByteBuffer args = lengthPrefixed("-f", "-b", "9223372036854775807", "--", "-a", "-128",
+                                       "32767", "-2147483648", "123456789012", "1.5", "-2.25");
+
+      ArgumentModel result = CLOM.parse(ArgumentModel.class, args, TokenLayout.LENGTH_PREFIXED);
+      assertTrue(result.isFlag());
+      assertEquals("-a", result.getArg0());
+      assertEquals(-128, result.getArg1());
+      assertEquals(32767, result.getArg2());
+      assertEquals(Integer.MIN_VALUE, result.getArg3());
+      assertEquals(123456789012L, result.getArg4());
+      assertEquals(1.5f, result.getArg5());
+      assertEquals(-2.25, result.getArg6());
+   }
+
+   @Test
+   public void invalid_bytes_are_rejected() {
+      assertThrows(IllegalArgumentException.class,
+                   () -> CLOM.parse(ArgumentModel.class, nulDelimited("a", "128"), TokenLayout.NUL_DELIMITED));
+      assertThrows(ArgumentParseException.class,
+                   () -> CLOM.parse(ArgumentModel.class, nulDelimited("a", "-x"), TokenLayout.NUL_DELIMITED));
+
+      ByteBuffer truncated = lengthPrefixed("a", "1");
+      truncated.limit(truncated.limit() - 1);
+      assertThrows(IllegalArgumentException.class,
+                   () -> CLOM.parse(ArgumentModel.class, truncated, TokenLayout.LENGTH_PREFIXED));
+      assertEquals(0, truncated.position());
+   }
+
+   private static ByteBuffer nulDelimited(String... args) {
+      return ByteBuffer.wrap((String.join("\0", args) + "\0").getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static ByteBuffer lengthPrefixed(String... args) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+      for (String arg : args) {
+         byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+         buffer.putInt(bytes.length).put(bytes);
+      }
+      buffer.flip();
+      return buffer;
+   }
+
+   @Test
+   public void annotated_setters_receive_values() throws ArgumentParseException {
+      SetterModel result = CLOM.parse(SetterModel.class, " input ", "-v", "--level=7");
+      assertEquals("input", result.getInput());
+      assertEquals(7, result.getLevel());
+      assertTrue(result.isVerbose());
+      assertEquals(3, result.getSetterCalls());
+   }
+
+   @Test
+   public void exception_of_annotated_setter_is_propagated() {
+      Executable parseCall = () -> CLOM.parse(SetterModel.class, "input", "-l", "12");
+
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, parseCall);
+      assertEquals(SetterModel.INVALID_LEVEL_ERROR_MSG, e.getMessage());
+   }
+
+   @Test
+   public void annotated_method_with_multiple_parameters_throws_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(InvalidSetterModel.class));
+   }
+
+   @Test
+   public void model_is_serialized_back_to_args() throws ArgumentParseException {
+      ArgumentModel model = parse(ARG0, "-" + BAR_KEY, Long.toString(BAR_VALUE), "-" + FOO_KEY, Byte.toString(ARG1));
+      String[] args = CLOM.toArgs(model);
+      assertArrayEquals(new String[] {"-" + FOO_KEY, "-" + BAR_KEY, Long.toString(BAR_VALUE), ARG0, Byte.toString(ARG1)}, args);
+
+      ArgumentModel result = parse(args);
+      assertEquals(ARG0, result.getArg0());
+      assertEquals(ARG1, result.getArg1());
+      assertEquals(-1, result.getArg2());
+      assertEquals(BAR_VALUE, result.getBar());
+      assertTrue(result.isFlag());
+   }
+
+   @Test
+   public void serialized_args_are_separated_from_options() {
+      ArgumentModel model = parse("--", "-x");
+      assertArrayEquals(new String[] {"--", "-x"}, CLOM.toArgs(model));
+      assertEquals("-x", parse(CLOM.toArgs(model)).getArg0());
+   }
+
+   @Test
+   public void serialized_values_are_formatted_by_adapters() throws ArgumentParseException {
+      ModelWithAdapters model = CLOM.parse(ModelWithAdapters.class, "20181024", "-w", "first second third");
+      List<String> args = CLOM.toArgs(model, new ArrayList<>(Arrays.asList("app")));
+      assertEquals(Arrays.asList("app", "-w", "first second third", "20181024"), args);
+
+      StringBuilder commandLine = CLOM.toArgs(model, new StringBuilder("app"));
+      assertEquals("app -w \"first second third\" 20181024", commandLine.toString());
+   }
+
+   @Test
+   public void values_of_annotated_setters_are_serialized_by_getters() throws ArgumentParseException {
+      SetterModel model = CLOM.parse(SetterModel.class, "input", "-l", "7");
+      assertArrayEquals(new String[] {"-l", "7", "input"}, CLOM.toArgs(model));
+   }
+
+   @Test
+   public void prewarm_compiles_valid_types() {
+      CLOM.prewarm(ArgumentModel.class, ModelWithAdapters.class, SetterModel.class, ListVarArgsModel.class);
+      assertEquals(ARG0, parse(ARG0).getArg0());
+   }
+
+   @Test
+   public void prewarm_reports_all_invalid_types() {
+      InvalidTargetTypeException e = assertThrows(InvalidTargetTypeException.class,
+                                                  () -> CLOM.prewarm(ArgumentModel.class,
+                                                                     InvalidSetterModel.class,
+                                                                     SwitchOptionNotBoolean.class));
+
+      assertTrue(e.getMessage().startsWith("2 of 3 target types are invalid"), e.getMessage());
+      assertEquals(1, e.getSuppressed().length);
+   }
+
+   @Test
+   public void async_prewarm_completes_exceptionally_for_invalid_types() {
+      CLOM.prewarmAsync(ArgumentModel.class, SetterModel.class).join();
+
+      CompletableFuture<Void> future = CLOM.prewarmAsync(InvalidSetterModel.class);
+      CompletionException e = assertThrows(CompletionException.class, future::join);
+      assertTrue(e.getCause() instanceof InvalidTargetTypeException);
+   }
+
+   @Test
+   public void options_are_completed_by_prefix() {
+      CLOM<EnumModel> clom = new CLOM<>(EnumModel.class);
+      assertEquals(Arrays.asList("--length", "--level"), clom.complete(new String[] {"copy", "--le"}, 1));
+      assertEquals(Arrays.asList("--length", "--level", "--verbose", "-L", "-l", "-v"),
+                   clom.complete(new String[] {"-"}, 0));
+      assertEquals(Collections.emptyList(), clom.complete(new String[] {"--x"}, 0));
+   }
+
+   @Test
+   public void enum_values_are_completed_by_position() {
+      CLOM<EnumModel> clom = new CLOM<>(EnumModel.class);
+      assertEquals(Arrays.asList("merge", "move"), clom.complete(new String[] {"-v", "m"}, 1));
+      assertEquals(Arrays.asList("ERROR"), clom.complete(new String[] {"-vl", "E"}, 1));
+      assertEquals(Arrays.asList("--level=WARN"), clom.complete(new String[] {"--level=W"}, 0));
+      assertEquals(Arrays.asList("DEBUG", "ERROR", "INFO", "WARN"), clom.complete(new String[] {"-l"}, 1));
+      assertEquals(Collections.emptyList(), clom.complete(new String[] {"copy", "-L", ""}, 2));
+      assertEquals(Collections.emptyList(), clom.complete(new String[] {"copy", "t"}, 1));
+   }
+
+   @Test
+   public void mistyped_option_throws_exception_with_suggestions() {
+      UnknownOptionException e = assertThrows(UnknownOptionException.class,
+                                               () -> CLOM.parse(EnumModel.class, "copy", "--lenght=5"));
+      assertEquals(Arrays.asList("--length"), e.getSuggestions());
+      assertTrue(e.getMessage().endsWith("Did you mean --length?"), e.getMessage());
+
+      e = assertThrows(UnknownOptionException.class, () -> CLOM.parse(EnumModel.class, "copy", "--lvel=INFO"));
+      assertEquals(Arrays.asList("--level"), e.getSuggestions());
+
+      e = assertThrows(UnknownOptionException.class, () -> CLOM.parse(EnumModel.class, "copy", "--colour=red"));
+      assertEquals(Collections.emptyList(), e.getSuggestions());
+   }
+
+   @Test
+   public void mistyped_enum_value_throws_exception_with_suggestions() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                                                () -> CLOM.parse(EnumModel.class, "copy", "-l", "WRAN"));
+      assertTrue(e.getMessage().endsWith("Did you mean WARN?"), e.getMessage());
+   }
+
+   @Test
+   public void parse_into_reuses_and_resets_target() throws ArgumentParseException {
+      ArgumentModel target = new ArgumentModel();
+      assertSame(target, CLOM.parseInto(target, ARG0, Byte.toString(ARG1), "-" + FOO_KEY, "-" + BAR_KEY, "5"));
+      assertEquals(ARG1, target.getArg1());
+      assertEquals(5, target.getBar());
+      assertTrue(target.isFlag());
+
+      assertSame(target, CLOM.parseInto(target, "other"));
+      assertEquals("other", target.getArg0());
+      assertEquals(-1, target.getArg1());
+      assertEquals(-1, target.getBar());
+      assertFalse(target.isFlag());
+   }
+
+   @Test
+   public void parse_into_leaves_target_unchanged_on_parse_error() throws ArgumentParseException {
+      ArgumentModel target = CLOM.parseInto(new ArgumentModel(), ARG0, "-" + BAR_KEY, "5");
+      assertThrows(UnknownOptionException.class, () -> CLOM.parseInto(target, "other", "-x"));
+      assertEquals(ARG0, target.getArg0());
+      assertEquals(5, target.getBar());
+   }
+
+   @Test
+   public void declared_defaults_are_assigned_to_absent_values() throws ArgumentParseException {
+      DefaultsModel result = CLOM.parse(DefaultsModel.class, "-n", "7");
+      assertEquals("out.txt", result.getTarget());
+      assertEquals(7, result.getCount());
+      assertEquals(LocalDate.of(2020, 1, 1), result.getDate());
+      assertEquals(Arrays.asList("default", "words"), result.getWords());
+
+      result = CLOM.parse(DefaultsModel.class, "in.txt", "--date=20181024", "-w", "given");
+      assertEquals("in.txt", result.getTarget());
+      assertEquals(42, result.getCount());
+      assertEquals(LocalDate.of(2018, 10, 24), result.getDate());
+      assertEquals(Arrays.asList("given"), result.getWords());
+
+      assertEquals(1, DefaultsModel.SUPPLIER_CALLS.get());
+      assertArrayEquals(new String[] {"-n", "7"}, CLOM.toArgs(CLOM.parse(DefaultsModel.class, "-n", "7")));
+   }
+
+   @Test
+   public void mutable_defaults_are_not_shared_by_reset_targets() throws ArgumentParseException {
+      DefaultsModel first = CLOM.parseInto(new DefaultsModel(), "-n", "7");
+      first.getIncludes().add("leak");
+
+      DefaultsModel second = CLOM.parseInto(new DefaultsModel(), "-n", "7");
+      assertEquals(Collections.emptyList(), second.getIncludes());
+      assertNotSame(first.getIncludes(), second.getIncludes());
+      assertArrayEquals(new String[] {"-n", "7", "-I", "leak"}, CLOM.toArgs(first));
+      assertArrayEquals(new String[] {"-n", "7"}, CLOM.toArgs(second));
+   }
+
+   @Test
+   public void invalid_default_value_throws_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(InvalidDefaultModel.class));
+   }
+
+   @Test
+   public void map_options_collect_all_occurrences() throws ArgumentParseException {
+      PropertiesModel result = CLOM.parse(PropertiesModel.class,
+                                          "-Dhost=example.org",
+                                          "-vD", "url=http://example.org/?a=b",
+                                          "--define=empty",
+                                          "-Dhost=localhost",
+                                          "-T", "read=30",
+                                          "--timeout=write=60",
+                                          "-dstart=20181024");
+
+      Map<String, String> properties = new HashMap<>();
+      properties.put("host", "localhost");
+      properties.put("url", "http://example.org/?a=b");
+      properties.put("empty", "");
+      assertEquals(properties, result.getProperties());
+
+      Map<String, Integer> timeouts = new HashMap<>();
+      timeouts.put("read", 30);
+      timeouts.put("write", 60);
+      assertEquals(timeouts, result.getTimeouts());
+      assertEquals(Collections.singletonMap("start", LocalDate.of(2018, 10, 24)), result.getDeadlines());
+      assertTrue(result.isVerbose());
+
+      assertThrows(IllegalArgumentException.class, () -> CLOM.parse(PropertiesModel.class, "-Tread=soon"));
+   }
+
+   @Test
+   public void map_options_are_serialized_back_to_args() throws ArgumentParseException {
+      PropertiesModel model = CLOM.parse(PropertiesModel.class, "-Dhost=example.org", "--define=port=8080", "-Tread=30");
+      String[] args = {"-D", "host=example.org", "-D", "port=8080", "-T", "read=30"};
+      assertArrayEquals(args, CLOM.toArgs(model));
+      assertEquals(model.getProperties(), CLOM.parse(PropertiesModel.class, args).getProperties());
+      assertEquals(0, CLOM.toArgs(CLOM.parse(PropertiesModel.class)).length);
+   }
+
+   @Test
+   public void map_option_with_non_string_keys_throws_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(InvalidMapModel.class));
+   }
+
+   @Test
+   public void repeated_options_are_collected_in_order() throws ArgumentParseException {
+      RepeatedOptionsModel result = CLOM.parse(RepeatedOptionsModel.class,
+                                               "-I", "src", "-vp", "80", "--include=lib",
+                                               "-vv", "-p", "443", "-I", "test",
+                                               "-d", "20181024", "-w", "one two", "-w", "three");
+
+      assertEquals(Arrays.asList("src", "lib", "test"), result.getIncludes());
+      assertArrayEquals(new int[] {80, 443}, result.getPorts());
+      assertArrayEquals(new LocalDate[] {LocalDate.of(2018, 10, 24)}, result.getDates());
+      assertEquals(Arrays.asList("three"), result.getWords());
+      assertEquals(3, result.getVerbosity());
+
+      result = CLOM.parse(RepeatedOptionsModel.class, "-I", "src");
+      assertEquals(0, result.getVerbosity());
+      assertEquals(null, result.getPorts());
+   }
+
+   @Test
+   public void repeated_options_are_serialized_back_to_args() throws ArgumentParseException {
+      String[] args = {"-I", "src", "-I", "lib", "-p", "80", "-p", "443", "-vvv"};
+      assertArrayEquals(args, CLOM.toArgs(CLOM.parse(RepeatedOptionsModel.class, args)));
+   }
+
+   @Test
+   public void group_options_are_flattened_by_prefix() throws ArgumentParseException {
+      GroupModel result = CLOM.parse(GroupModel.class,
+                                     "--db.host=example.org",
+                                     "-v",
+                                     "--db.replica.host=replica.example.org",
+                                     "--cache.size=64");
+
+      assertTrue(result.isVerbose());
+      assertEquals("example.org", result.getDatabase().getHost());
+      assertEquals(4, result.getDatabase().getPoolSize());
+      assertFalse(result.getDatabase().isSsl());
+      assertEquals("replica.example.org", result.getDatabase().getReplica().getHost());
+      assertEquals(64, result.getCache().getSize());
+
+      result = CLOM.parse(GroupModel.class, "--db.pool-size=8");
+      assertEquals(8, result.getDatabase().getPoolSize());
+      assertEquals(null, result.getDatabase().getReplica());
+      assertEquals(null, result.getCache());
+
+      assertEquals(Arrays.asList("--db.pool-size"), new CLOM<>(GroupModel.class).complete(new String[] {"--db.p"}, 0));
+      UnknownOptionException e = assertThrows(UnknownOptionException.class,
+                                              () -> CLOM.parse(GroupModel.class, "--db.hots=example.org"));
+      assertEquals(Arrays.asList("--db.host"), e.getSuggestions());
+   }
+
+   @Test
+   public void group_options_are_serialized_back_to_args() throws ArgumentParseException {
+      String[] args = {"-v", "--db.host=example.org", "--db.pool-size=8", "--db.replica.host=r1"};
+      assertArrayEquals(args, CLOM.toArgs(CLOM.parse(GroupModel.class, args)));
+
+      GroupModel target = CLOM.parseInto(CLOM.parse(GroupModel.class, args), "--cache.size=1");
+      assertEquals(null, target.getDatabase());
+      assertEquals(1, target.getCache().getSize());
+   }
+
+   @Test
+   public void cyclic_group_throws_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(CyclicGroupModel.class));
+   }
+
+   @Test
+   public void duplicate_keys_throw_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(DuplicateKeyModel.class));
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(DuplicateLongKeyModel.class));
+   }
+
+   @Test
+   public void satisfied_constraints_are_accepted() throws ArgumentParseException {
+      ConstraintModel result = CLOM.parse(ConstraintModel.class, "-q", "-u", "admin", "-p", "secret", "-i", "in.txt");
+      assertTrue(result.isQuiet());
+      assertEquals("admin", result.getUser());
+      assertEquals("in.txt", result.getInput());
+
+      result = CLOM.parse(ConstraintModel.class, "--stdin", "-v", "--proxy.port=8080");
+      assertTrue(result.isVerbose());
+      assertEquals(null, result.getProxy().getHost());
+   }
+
+   @Test
+   public void violated_constraints_throw_exception() {
+      OptionConstraintException e = assertThrows(OptionConstraintException.class,
+                                                 () -> CLOM.parse(ConstraintModel.class, "--stdin", "-qv"));
+      assertEquals("The options -q, -v can not be combined.", e.getMessage());
+
+      assertThrows(OptionConstraintException.class, () -> CLOM.parse(ConstraintModel.class, "--stdin", "-j", "--xml"));
+
+      e = assertThrows(OptionConstraintException.class, () -> CLOM.parse(ConstraintModel.class, "--stdin", "-u", "admin"));
+      assertEquals("The option -u requires -p.", e.getMessage());
+
+      e = assertThrows(OptionConstraintException.class, () -> CLOM.parse(ConstraintModel.class, "-q"));
+      assertEquals("At least one of the options -i, -s is required.", e.getMessage());
+
+      e = assertThrows(OptionConstraintException.class,
+                       () -> CLOM.parse(ConstraintModel.class, "--stdin", "--proxy.host=example.org"));
+      assertEquals("The option --proxy.host requires --proxy.port.", e.getMessage());
+   }
+
+   @Test
+   public void constraint_with_undeclared_option_throws_exception() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(InvalidConstraintModel.class));
+   }
+
+   @Test
+   public void numbers_with_units_are_parsed() throws ArgumentParseException {
+      UnitsModel result = CLOM.parse(UnitsModel.class,
+                                     "1_000_000",
+                                     "--heap=4GiB",
+                                     "-t", "1m30s",
+                                     "-m", "0xFFFFFFFF",
+                                     "-b", "64k", "-b", "2MB", "-b", "0b101");
+
+      assertEquals(1_000_000L, result.getCount());
+      assertEquals(4L << 30, result.getHeap());
+      assertEquals(90, result.getTimeout());
+      assertEquals(-1, result.getMask());
+      assertEquals(Arrays.asList(64 * 1024, 2_000_000, 5), result.getBuffers());
+      assertEquals(Long.valueOf(1000), result.getDelay());
+
+      result = CLOM.parse(UnitsModel.class, "-x", "512", "-t", "45", "-d", "1h2m3s4ms", "--", "-0o17");
+      assertEquals(-15, result.getCount());
+      assertEquals(512, result.getHeap());
+      assertEquals(45, result.getTimeout());
+      assertEquals(Long.valueOf(3_723_004), result.getDelay());
+   }
+
+   @Test
+   public void invalid_numbers_with_units_throw_exception() {
+      String[][] invalid = {{"1__"}, {"_1"}, {"1k"}, {"1", "-x", "4XB"}, {"1", "-t", "1h30"},
+                            {"1", "-m", "0x1FFFFFFFF"}, {"1", "-m", "2147483648"},
+                            {"9223372036854775808"}, {"1", "-x", "16EiB"}};
+
+      for (String[] args : invalid)
+         assertThrows(NumberFormatException.class, () -> CLOM.parse(UnitsModel.class, args), Arrays.toString(args));
+
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(InvalidUnitsModel.class));
+   }
 }
@@ -0,0 +1,67 @@
+package com.github.koettlitz.clom;
+
+@CLExclusive({'q', 'v'})
+@CLExclusive(value={'j'}, longKeys="xml")
+@CLRequires(key='u', requires={'p'})
+@CLAtLeastOne(value={'i'}, longKeys="stdin")
+public class ConstraintModel {
+   @CLOption(key='q', longKey="quiet")
+   private boolean quiet;
+
+   @CLOption(key='v', longKey="verbose")
+   private boolean verbose;
+
+   @CLOption(key='j', longKey="json")
+   private boolean json;
+
+   @CLOption(key='x', longKey="xml")
+   private boolean xml;
+
+   @CLOption(key='u', longKey="user", expectsValue=true)
+   private String user;
+
+   @CLOption(key='p', longKey="password", expectsValue=true)
+   private String password;
+
+   @CLOption(key='i', longKey="input", expectsValue=true)
+   private String input;
+
+   @CLOption(key='s', longKey="stdin")
+   private boolean stdin;
+
+   @CLGroup(prefix="proxy.")
+   private Proxy proxy;
+
+   public boolean isQuiet() {
+      return quiet;
+   }
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+
+   public String getUser() {
+      return user;
+   }
+
+   public String getInput() {
+      return input;
+   }
+
+   public Proxy getProxy() {
+      return proxy;
+   }
+
+   @CLRequires(longKey="host", requiresLongKeys="port")
+   public static class Proxy {
+      @CLOption(key='h', longKey="host", expectsValue=true)
+      private String host;
+
+      @CLOption(key='p', longKey="port", expectsValue=true)
+      private int port;
+
+      public String getHost() {
+         return host;
+      }
+   }
+}
@@ -0,0 +1,18 @@
+package com.github.koettlitz.clom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.github.koettlitz.clom.IteratorVarArgsModel.IntParser;
+
+public class ConsumerVarArgsModel {
+   private final List<Integer> received = new ArrayList<>();
+
+   @CLVarArgs(adapter=IntParser.class)
+   private Consumer<Integer> ids = received::add;
+
+   public List<Integer> getReceived() {
+      return received;
+   }
+}
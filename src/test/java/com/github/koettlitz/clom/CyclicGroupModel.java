@@ -0,0 +1,9 @@
+package com.github.koettlitz.clom;
+
+public class CyclicGroupModel {
+   @CLOption(key='v')
+   private boolean verbose;
+
+   @CLGroup
+   private CyclicGroupModel nested;
+}
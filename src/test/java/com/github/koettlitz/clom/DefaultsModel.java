@@ -0,0 +1,55 @@
+package com.github.koettlitz.clom;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class DefaultsModel {
+   static final AtomicInteger SUPPLIER_CALLS = new AtomicInteger();
+
+   @CLArgument(index=0, mandatory=false, defaultValue="out.txt")
+   private String target;
+
+   @CLOption(key='n', longKey="count", expectsValue=true, defaultValue="42")
+   private int count;
+
+   @CLOption(key='d', longKey="date", expectsValue=true, adapter=ModelWithAdapters.DateParser.class, defaultValue="20200101")
+   private LocalDate date;
+
+   @CLOption(key='w', longKey="words", expectsValue=true, adapter=ModelWithAdapters.WordParser.class, defaultSupplier=WordsSupplier.class)
+   private List<String> words;
+
+   @CLOption(key='I', longKey="include", expectsValue=true)
+   private List<String> includes = new ArrayList<>();
+
+   public String getTarget() {
+      return target;
+   }
+
+   public int getCount() {
+      return count;
+   }
+
+   public LocalDate getDate() {
+      return date;
+   }
+
+   public List<String> getWords() {
+      return words;
+   }
+
+   public List<String> getIncludes() {
+      return includes;
+   }
+
+   public static class WordsSupplier implements Supplier<List<String>> {
+      @Override
+      public List<String> get() {
+         SUPPLIER_CALLS.incrementAndGet();
+         return Arrays.asList("default", "words");
+      }
+   }
+}
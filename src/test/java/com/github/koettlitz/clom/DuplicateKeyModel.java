@@ -0,0 +1,9 @@
+package com.github.koettlitz.clom;
+
+public class DuplicateKeyModel {
+   @CLOption(key='v', longKey="verbose")
+   private boolean verbose;
+
+   @CLOption(key='v', longKey="version")
+   private boolean version;
+}
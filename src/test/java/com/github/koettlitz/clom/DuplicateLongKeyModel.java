@@ -0,0 +1,9 @@
+package com.github.koettlitz.clom;
+
+public class DuplicateLongKeyModel {
+   @CLOption(key='H', longKey="db.host", expectsValue=true)
+   private String host;
+
+   @CLGroup(prefix="db.")
+   private GroupModel.Database database;
+}
@@ -0,0 +1,61 @@
+package com.github.koettlitz.clom;
+
+public class EnumModel {
+   public enum Mode { COPY, MOVE, MERGE }
+
+   public enum Level { DEBUG, INFO, WARN, ERROR }
+
+   @CLArgument(index=0, adapter=ModeParser.class)
+   private Mode mode;
+
+   @CLArgument(index=1, mandatory=false)
+   private String target;
+
+   @CLOption(key='l', longKey="level", expectsValue=true, adapter=LevelParser.class)
+   private Level level = Level.INFO;
+
+   @CLOption(key='L', longKey="length", expectsValue=true)
+   private int length;
+
+   @CLOption(key='v', longKey="verbose")
+   private boolean verbose;
+
+   public Mode getMode() {
+      return mode;
+   }
+
+   public String getTarget() {
+      return target;
+   }
+
+   public Level getLevel() {
+      return level;
+   }
+
+   public int getLength() {
+      return length;
+   }
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+
+   public static class ModeParser implements TypeAdapter<Mode> {
+      @Override
+      public Mode parse(String argValue) throws IllegalArgumentException {
+         return Mode.valueOf(argValue.toUpperCase());
+      }
+
+      @Override
+      public String format(Mode value) {
+         return value.name().toLowerCase();
+      }
+   }
+
+   public static class LevelParser implements TypeAdapter<Level> {
+      @Override
+      public Level parse(String argValue) throws IllegalArgumentException {
+         return Level.valueOf(argValue);
+      }
+   }
+}
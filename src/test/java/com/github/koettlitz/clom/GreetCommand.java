@@ -0,0 +1,20 @@
+package com.github.koettlitz.clom;
+
+import java.util.Locale;
+
+public class GreetCommand {
+   @CLArgument(index=0, mandatory=true)
+   private String name;
+
+   @CLOption(key='l', longKey="loud")
+   private boolean loud;
+
+   @CLHandler
+   private String greet() {
+      if (name.equals("nobody"))
+         throw new IllegalStateException("Nobody to greet");
+
+      String greeting = "Hello " + name;
+      return loud ? greeting.toUpperCase(Locale.ROOT) : greeting;
+   }
+}
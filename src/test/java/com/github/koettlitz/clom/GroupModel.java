@@ -0,0 +1,72 @@
+package com.github.koettlitz.clom;
+
+public class GroupModel {
+   @CLOption(key='v', longKey="verbose")
+   private boolean verbose;
+
+   @CLGroup(prefix="db.")
+   private Database database;
+
+   @CLGroup
+   private Cache cache;
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+
+   public Database getDatabase() {
+      return database;
+   }
+
+   public Cache getCache() {
+      return cache;
+   }
+
+   public static class Database {
+      @CLOption(key='h', longKey="host", expectsValue=true)
+      private String host;
+
+      @CLOption(key='p', longKey="pool-size", expectsValue=true)
+      private int poolSize = 4;
+
+      @CLOption(key='s', longKey="ssl")
+      private boolean ssl;
+
+      @CLGroup(prefix="replica.")
+      private Replica replica;
+
+      public String getHost() {
+         return host;
+      }
+
+      public int getPoolSize() {
+         return poolSize;
+      }
+
+      public boolean isSsl() {
+         return ssl;
+      }
+
+      public Replica getReplica() {
+         return replica;
+      }
+   }
+
+   public static class Replica {
+      @CLOption(key='h', longKey="host", expectsValue=true)
+      private String host;
+
+      public String getHost() {
+         return host;
+      }
+   }
+
+   public static class Cache {
+      @CLOption(key='s', expectsValue=true)
+      private int size;
+
+      public int getSize() {
+         return size;
+      }
+   }
+}
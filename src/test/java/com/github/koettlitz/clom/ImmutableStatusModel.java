@@ -0,0 +1,30 @@
+package com.github.koettlitz.clom;
+
+public class ImmutableStatusModel {
+   @CLArgument(index=0)
+   private final String service;
+
+   @CLOption(key='t', longKey="timeout", expectsValue=true)
+   private final long timeout;
+
+   @CLOption(key='v', longKey="verbose")
+   private final boolean verbose;
+
+   public ImmutableStatusModel() {
+      service = null;
+      timeout = 1000;
+      verbose = false;
+   }
+
+   public String getService() {
+      return service;
+   }
+
+   public long getTimeout() {
+      return timeout;
+   }
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+}
@@ -0,0 +1,7 @@
+package com.github.koettlitz.clom;
+
+@CLExclusive({'a', 'b'})
+public class InvalidConstraintModel {
+   @CLOption(key='a', longKey="all")
+   private boolean all;
+}
@@ -0,0 +1,6 @@
+package com.github.koettlitz.clom;
+
+public class InvalidDefaultModel {
+   @CLOption(key='n', expectsValue=true, defaultValue="many")
+   private int count;
+}
@@ -0,0 +1,11 @@
+package com.github.koettlitz.clom;
+
+public class InvalidHandlerModel {
+   @CLArgument(index=0)
+   private String name;
+
+   @CLHandler
+   public void handle(String prefix) {
+      name = prefix + name;
+   }
+}
@@ -0,0 +1,8 @@
+package com.github.koettlitz.clom;
+
+import java.util.Map;
+
+public class InvalidMapModel {
+   @CLOption(key='D', expectsValue=true)
+   private Map<Integer, String> properties;
+}
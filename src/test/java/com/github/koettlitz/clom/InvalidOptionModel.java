@@ -2,5 +2,5 @@ package com.github.koettlitz.clom;
 
 public class InvalidOptionModel {
    @CLOption(key='o', expectsValue=false)
-   private int option;
+   private double option;
 }
@@ -0,0 +1,12 @@
+package com.github.koettlitz.clom;
+
+public class InvalidSetterModel {
+   private String first;
+   private String second;
+
+   @CLArgument(index=0)
+   public void setBoth(String first, String second) {
+      this.first = first;
+      this.second = second;
+   }
+}
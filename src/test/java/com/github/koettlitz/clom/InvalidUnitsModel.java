@@ -0,0 +1,7 @@
+package com.github.koettlitz.clom;
+
+public class InvalidUnitsModel {
+   @CLUnits
+   @CLOption(key='r', longKey="ratio", expectsValue=true)
+   private double ratio;
+}
@@ -0,0 +1,26 @@
+package com.github.koettlitz.clom;
+
+import java.util.Iterator;
+
+public class IteratorVarArgsModel {
+   @CLVarArgs(adapter=IntParser.class)
+   private Iterator<Integer> ids;
+
+   @CLOption(key='f')
+   private boolean force;
+
+   public Iterator<Integer> getIds() {
+      return ids;
+   }
+
+   public boolean isForce() {
+      return force;
+   }
+
+   public static class IntParser implements TypeAdapter<Integer> {
+      @Override
+      public Integer parse(String argValue) throws IllegalArgumentException {
+         return Integer.valueOf(argValue);
+      }
+   }
+}
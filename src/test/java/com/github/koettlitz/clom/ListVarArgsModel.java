@@ -0,0 +1,19 @@
+package com.github.koettlitz.clom;
+
+import java.util.List;
+
+public class ListVarArgsModel {
+   @CLOption(key='n', longKey="name", expectsValue=true)
+   private String name;
+
+   @CLVarArgs(adapter=IteratorVarArgsModel.IntParser.class)
+   private List<Integer> ids;
+
+   public String getName() {
+      return name;
+   }
+
+   public List<Integer> getIds() {
+      return ids;
+   }
+}
@@ -0,0 +1,113 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class ModelCodecTest {
+
+   private static <T> T roundTrip(ModelCodec<T> codec, T model, ByteBuffer buffer) {
+      codec.encode(model, buffer);
+      assertEquals(codec.encodedSize(model), buffer.position());
+
+      buffer.flip();
+      T result = codec.decode(buffer);
+      assertFalse(buffer.hasRemaining());
+      return result;
+   }
+
+   @Test
+   public void primitives_and_strings_are_decoded() throws ArgumentParseException {
+      ArgumentModel model = CLOM.parse(ArgumentModel.class, "grüße 😀", "15", "800", "-f", "-b", "1024");
+      ModelCodec<ArgumentModel> codec = new ModelCodec<>(ArgumentModel.class);
+
+      for (ByteBuffer buffer : Arrays.asList(ByteBuffer.allocate(128), ByteBuffer.allocateDirect(128))) {
+         ArgumentModel result = roundTrip(codec, model, buffer);
+         assertEquals(model.getArg0(), result.getArg0());
+         assertEquals(15, result.getArg1());
+         assertEquals(800, result.getArg2());
+         assertEquals(-1, result.getArg3());
+         assertEquals(1024, result.getBar());
+         assertTrue(result.isFlag());
+      }
+   }
+
+   @Test
+   public void adapted_values_are_decoded() throws ArgumentParseException {
+      ModelWithAdapters model = CLOM.parse(ModelWithAdapters.class, "20181024");
+      ModelCodec<ModelWithAdapters> codec = new ModelCodec<>(ModelWithAdapters.class);
+
+      ModelWithAdapters result = roundTrip(codec, model, ByteBuffer.allocate(64));
+      assertEquals(LocalDate.of(2018, 10, 24), result.getDate());
+      assertNull(result.getWords());
+   }
+
+   @Test
+   public void var_args_are_decoded() throws ArgumentParseException {
+      ListVarArgsModel model = CLOM.parse(ListVarArgsModel.class, "3", "--name=ids", "2", "1");
+      ModelCodec<ListVarArgsModel> codec = new ModelCodec<>(ListVarArgsModel.class);
+
+      ListVarArgsModel result = roundTrip(codec, model, ByteBuffer.allocate(64));
+      assertEquals("ids", result.getName());
+      assertEquals(Arrays.asList(3, 2, 1), result.getIds());
+   }
+
+   @Test
+   public void map_options_are_decoded() throws ArgumentParseException {
+      PropertiesModel model = CLOM.parse(PropertiesModel.class, "-Dhost=example.org", "-Dempty", "-Tread=30");
+      ModelCodec<PropertiesModel> codec = new ModelCodec<>(PropertiesModel.class);
+
+      PropertiesModel result = roundTrip(codec, model, ByteBuffer.allocate(128));
+      assertEquals(model.getProperties(), result.getProperties());
+      assertEquals(model.getTimeouts(), result.getTimeouts());
+      assertNull(result.getDeadlines());
+   }
+
+   @Test
+   public void repeated_options_are_decoded() throws ArgumentParseException {
+      RepeatedOptionsModel model = CLOM.parse(RepeatedOptionsModel.class, "-I", "src", "-I", "lib", "-p", "80", "-vv");
+      ModelCodec<RepeatedOptionsModel> codec = new ModelCodec<>(RepeatedOptionsModel.class);
+
+      RepeatedOptionsModel result = roundTrip(codec, model, ByteBuffer.allocate(128));
+      assertEquals(Arrays.asList("src", "lib"), result.getIncludes());
+      assertArrayEquals(new int[] {80}, result.getPorts());
+      assertNull(result.getDates());
+      assertEquals(2, result.getVerbosity());
+   }
+
+   @Test
+   public void corrupt_occurrence_count_throws_exception() throws ArgumentParseException {
+      ModelCodec<RepeatedOptionsModel> codec = new ModelCodec<>(RepeatedOptionsModel.class);
+      ByteBuffer buffer = codec.encode(CLOM.parse(RepeatedOptionsModel.class, "-I", "src"), ByteBuffer.allocate(128));
+      buffer.flip();
+
+      // The count of the occurrences precedes the length of the first one
+      int position = 0;
+      while (buffer.getInt(position) != 1 || buffer.getInt(position + Integer.BYTES) != 3)
+         position++;
+      buffer.putInt(position, Integer.MAX_VALUE);
+
+      assertThrows(BufferUnderflowException.class, () -> codec.decode(buffer));
+   }
+
+   @Test
+   public void fingerprint_mismatch_throws_exception() throws ArgumentParseException {
+      ByteBuffer buffer = ByteBuffer.allocate(128);
+      new ModelCodec<>(ArgumentModel.class).encode(CLOM.parse(ArgumentModel.class, "foo"), buffer);
+      buffer.flip();
+
+      assertThrows(IllegalArgumentException.class, () -> new ModelCodec<>(ModelWithAdapters.class).decode(buffer));
+   }
+}
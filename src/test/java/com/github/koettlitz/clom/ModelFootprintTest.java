@@ -0,0 +1,96 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+/**
+ * Measures the heap retained per compiled model, e.g. by a host holding
+ * thousands of models. The same model class is loaded by many class loaders,
+ * so each copy is compiled into a plan of its own.
+ */
+public class ModelFootprintTest {
+   private static final int MODELS = 1000;
+   /**
+    * The budget of retained bytes per model including one parse. It is about
+    * four times the measured size, because heap measurements are noisy. About
+    * a third of the measured size are the JDK's caches of the reflected members
+    * and their annotations and the member names of the method handles.
+    */
+   private static final long BUDGET = 64 * 1024;
+
+   @Test
+   public void retained_size_per_model_is_compact() throws IOException,
+                                                           ClassNotFoundException,
+                                                           ArgumentParseException {
+      byte[] bytes = classBytes(ArgumentModel.class);
+      List<Class<?>> types = new ArrayList<>(MODELS);
+      for (int i = 0; i < MODELS; i++)
+         types.add(new ModelLoader(bytes).loadClass(ArgumentModel.class.getName()));
+
+      long before = usedHeap();
+      List<CLOM<?>> models = new ArrayList<>(MODELS);
+      for (Class<?> type : types) {
+         CLOM<?> clom = new CLOM<>(type);
+         clom.parse("foo", "1", "-f", "-b", "2");
+         models.add(clom);
+      }
+      long perModel = (usedHeap() - before) / MODELS;
+
+      assertEquals(MODELS, models.size());
+      assertTrue(perModel <= BUDGET, "Retained bytes per model: " + perModel);
+   }
+
+   private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      long used = Long.MAX_VALUE;
+      // Repeated collections settle the heap, the minimum is the least noisy
+      for (int i = 0; i < 5; i++) {
+         System.gc();
+         used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+      }
+      return used;
+   }
+
+   private static byte[] classBytes(Class<?> type) throws IOException {
+      try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+            out.write(buffer, 0, n);
+         return out.toByteArray();
+      }
+   }
+
+   /**
+    * Defines its own copy of the model class and delegates all other classes.
+    */
+   private static final class ModelLoader extends ClassLoader {
+      private final byte[] bytes;
+
+      ModelLoader(byte[] bytes) {
+         super(ModelFootprintTest.class.getClassLoader());
+         this.bytes = bytes;
+      }
+
+      @Override
+      protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+         if (!name.equals(ArgumentModel.class.getName()))
+            return super.loadClass(name, resolve);
+
+         synchronized (getClassLoadingLock(name)) {
+            Class<?> type = findLoadedClass(name);
+            return type != null ? type : defineClass(name, bytes, 0, bytes.length);
+         }
+      }
+   }
+}
@@ -34,6 +34,11 @@ public class ModelWithAdapters {
             throw new IllegalArgumentException(INVALID_DATE_ERROR_MSG, e);
          }
       }
+
+      @Override
+      public String format(LocalDate value) {
+         return DATE_FORMAT.format(value);
+      }
    }
 
    public static class WordParser implements TypeAdapter<List<String>> {
@@ -41,5 +46,10 @@ public class ModelWithAdapters {
       public List<String> parse(String argValue) throws IllegalArgumentException {
          return Arrays.asList(argValue.split(" "));
       }
+
+      @Override
+      public String format(List<String> value) {
+         return String.join(" ", value);
+      }
    }
 }
@@ -0,0 +1,77 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+/**
+ * Measures the bytes allocated by warm parses of a model with only
+ * primitive and String members, so allocations creeping into the
+ * parse path fail the build. The bounds leave room for the JIT, but
+ * not for an allocation per token.
+ */
+public class ParseAllocationTest {
+   private static final int WARMUP = 50_000;
+   private static final int PARSES = 100_000;
+   // Values attached by '=' would be substrings of their tokens, so they are given separately
+   private static final String[] ARGS = {"server", "-p", "8080", "-t", "30000", "-b", "128",
+                                         "-m", "x", "-u", "admin", "--ssl", "-vvv"};
+
+   private static com.sun.management.ThreadMXBean threads;
+
+   @BeforeAll
+   public static void checkSupport() {
+      assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+      threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      assumeTrue(threads.isThreadAllocatedMemorySupported());
+      threads.setThreadAllocatedMemoryEnabled(true);
+   }
+
+   @Test
+   public void warm_parse_into_allocates_almost_nothing() throws ArgumentParseException {
+      PrimitiveModel target = new PrimitiveModel();
+      for (int i = 0; i < WARMUP; i++)
+         CLOM.parseInto(target, ARGS);
+
+      long bytes = allocated();
+      for (int i = 0; i < PARSES; i++)
+         CLOM.parseInto(target, ARGS);
+      long perParse = (allocated() - bytes) / PARSES;
+
+      assertEquals("server", target.getName());
+      assertEquals(8080, target.getPort());
+      assertEquals(30000L, target.getTimeout());
+      assertEquals(128, target.getBacklog());
+      assertEquals('x', target.getMode());
+      assertEquals("admin", target.getUser());
+      assertTrue(target.isSsl());
+      assertEquals(3, target.getVerbosity());
+      // Usually nothing is allocated, but that depends on the escape analysis of the JIT
+      assertTrue(perParse <= 32, "Bytes allocated per parseInto: " + perParse);
+   }
+
+   @Test
+   public void warm_parse_allocates_only_the_target() throws ArgumentParseException {
+      for (int i = 0; i < WARMUP; i++)
+         CLOM.parse(PrimitiveModel.class, ARGS);
+
+      long bytes = allocated();
+      for (int i = 0; i < PARSES; i++)
+         CLOM.parse(PrimitiveModel.class, ARGS);
+      long perParse = (allocated() - bytes) / PARSES;
+
+      // The header and the fields of a PrimitiveModel
+      assertTrue(perParse <= 64, "Bytes allocated per parse: " + perParse);
+   }
+
+   private static long allocated() {
+      return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+}
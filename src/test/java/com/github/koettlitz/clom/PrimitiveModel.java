@@ -0,0 +1,59 @@
+package com.github.koettlitz.clom;
+
+public class PrimitiveModel {
+   @CLArgument(index=0)
+   private String name;
+
+   @CLOption(key='p', longKey="port", expectsValue=true)
+   private int port;
+
+   @CLOption(key='t', longKey="timeout", expectsValue=true)
+   private long timeout;
+
+   @CLOption(key='b', longKey="backlog", expectsValue=true)
+   private short backlog;
+
+   @CLOption(key='m', longKey="mode", expectsValue=true)
+   private char mode;
+
+   @CLOption(key='u', longKey="user", expectsValue=true)
+   private String user;
+
+   @CLOption(key='s', longKey="ssl")
+   private boolean ssl;
+
+   @CLOption(key='v', longKey="verbose")
+   private int verbosity;
+
+   public String getName() {
+      return name;
+   }
+
+   public int getPort() {
+      return port;
+   }
+
+   public long getTimeout() {
+      return timeout;
+   }
+
+   public short getBacklog() {
+      return backlog;
+   }
+
+   public char getMode() {
+      return mode;
+   }
+
+   public String getUser() {
+      return user;
+   }
+
+   public boolean isSsl() {
+      return ssl;
+   }
+
+   public int getVerbosity() {
+      return verbosity;
+   }
+}
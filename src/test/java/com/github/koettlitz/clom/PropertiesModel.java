@@ -0,0 +1,35 @@
+package com.github.koettlitz.clom;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PropertiesModel {
+   @CLOption(key='D', longKey="define", expectsValue=true)
+   private Map<String, String> properties = new HashMap<>();
+
+   @CLOption(key='T', longKey="timeout", expectsValue=true)
+   private Map<String, Integer> timeouts;
+
+   @CLOption(key='d', longKey="deadline", expectsValue=true, adapter=ModelWithAdapters.DateParser.class)
+   private Map<String, LocalDate> deadlines;
+
+   @CLOption(key='v', longKey="verbose")
+   private boolean verbose;
+
+   public Map<String, String> getProperties() {
+      return properties;
+   }
+
+   public Map<String, Integer> getTimeouts() {
+      return timeouts;
+   }
+
+   public Map<String, LocalDate> getDeadlines() {
+      return deadlines;
+   }
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+}
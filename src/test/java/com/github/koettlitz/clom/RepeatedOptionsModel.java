@@ -0,0 +1,41 @@
+package com.github.koettlitz.clom;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class RepeatedOptionsModel {
+   @CLOption(key='I', longKey="include", expectsValue=true)
+   private List<String> includes;
+
+   @CLOption(key='p', longKey="port", expectsValue=true)
+   private int[] ports;
+
+   @CLOption(key='d', longKey="date", expectsValue=true, adapter=ModelWithAdapters.DateParser.class)
+   private LocalDate[] dates;
+
+   @CLOption(key='w', longKey="words", expectsValue=true, adapter=ModelWithAdapters.WordParser.class)
+   private List<String> words;
+
+   @CLOption(key='v', longKey="verbose")
+   private int verbosity;
+
+   public List<String> getIncludes() {
+      return includes;
+   }
+
+   public int[] getPorts() {
+      return ports;
+   }
+
+   public LocalDate[] getDates() {
+      return dates;
+   }
+
+   public List<String> getWords() {
+      return words;
+   }
+
+   public int getVerbosity() {
+      return verbosity;
+   }
+}
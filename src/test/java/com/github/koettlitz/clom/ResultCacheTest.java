@@ -0,0 +1,109 @@
+package com.github.koettlitz.clom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class ResultCacheTest {
+
+   @Test
+   public void immutable_results_are_shared() throws ArgumentParseException {
+      CLOM<ImmutableStatusModel> clom = new CLOM<>(ImmutableStatusModel.class);
+      ResultCache<ImmutableStatusModel> cache = clom.enableResultCache(16);
+      assertTrue(cache.isShared());
+
+      String[] args = {"gateway", "-v", "--timeout=250"};
+      ImmutableStatusModel first = clom.parse(args);
+      assertEquals("gateway", first.getService());
+      assertEquals(250, first.getTimeout());
+      assertTrue(first.isVerbose());
+
+      // The cached command line is not affected by changes of the given array
+      args[0] = "database";
+      assertEquals("database", clom.parse(args).getService());
+      assertSame(first, clom.parse("gateway", "-v", "--timeout=250"));
+
+      assertEquals(1, cache.getHits());
+      assertEquals(2, cache.getMisses());
+      assertEquals(1. / 3, cache.getHitRate(), 1e-9);
+      assertEquals(2, cache.getSize());
+   }
+
+   @Test
+   public void mutable_results_are_copied() throws ArgumentParseException {
+      CLOM<PropertiesModel> clom = new CLOM<>(PropertiesModel.class);
+      assertFalse(clom.enableResultCache(16).isShared());
+
+      String[] args = {"-v", "-Dhost=example.org", "-T", "read=30"};
+      PropertiesModel first = clom.parse(args);
+      first.getProperties().put("host", "localhost");
+      first.getTimeouts().clear();
+
+      PropertiesModel second = clom.parse(args);
+      assertNotSame(first, second);
+      assertEquals(Collections.singletonMap("host", "example.org"), second.getProperties());
+      assertEquals(Collections.singletonMap("read", 30), second.getTimeouts());
+      assertNull(second.getDeadlines());
+      assertTrue(second.isVerbose());
+
+      // Members, that keep the value of a new instance, are copied as well
+      clom.parse("-v").getProperties().put("host", "localhost");
+      assertTrue(clom.parse("-v").getProperties().isEmpty());
+      assertEquals(2, clom.getResultCache().getHits());
+   }
+
+   @Test
+   public void copied_var_args_are_independent() throws ArgumentParseException {
+      CLOM<ListVarArgsModel> clom = new CLOM<>(ListVarArgsModel.class);
+      clom.enableResultCache(16);
+
+      clom.parse("-n", "ids", "1", "2", "3").getIds().clear();
+      ListVarArgsModel result = clom.parse("-n", "ids", "1", "2", "3");
+      assertEquals("ids", result.getName());
+      assertEquals(Arrays.asList(1, 2, 3), result.getIds());
+   }
+
+   @Test
+   public void least_recently_used_command_lines_are_evicted() throws ArgumentParseException {
+      CLOM<PrimitiveModel> clom = new CLOM<>(PrimitiveModel.class);
+      ResultCache<PrimitiveModel> cache = clom.enableResultCache(2);
+
+      clom.parse("a");
+      clom.parse("b");
+      clom.parse("a");
+      clom.parse("c");
+      assertEquals(1, cache.getEvictions());
+      assertEquals(2, cache.getSize());
+
+      clom.parse("a");
+      assertEquals(2, cache.getHits());
+      clom.parse("b");
+      assertEquals(2, cache.getHits());
+      assertEquals(2, cache.getEvictions());
+
+      cache.clear();
+      assertEquals(0, cache.getSize());
+      clom.disableResultCache();
+      assertNull(clom.getResultCache());
+   }
+
+   @Test
+   public void unsafe_models_are_not_cached() {
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(SetterModel.class).enableResultCache(16));
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(IteratorVarArgsModel.class).enableResultCache(16));
+      // The adapter of an option converts its values into lists
+      assertThrows(InvalidTargetTypeException.class, () -> new CLOM<>(RepeatedOptionsModel.class).enableResultCache(16));
+      assertThrows(IllegalArgumentException.class, () -> new CLOM<>(PrimitiveModel.class).enableResultCache(0));
+   }
+}
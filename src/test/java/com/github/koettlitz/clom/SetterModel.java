@@ -0,0 +1,47 @@
+package com.github.koettlitz.clom;
+
+public class SetterModel {
+   static final String INVALID_LEVEL_ERROR_MSG = "The level has to be between 0 and 9.";
+
+   private String input;
+   private int level = 1;
+   private boolean verbose;
+   private int setterCalls;
+
+   public String getInput() {
+      return input;
+   }
+
+   @CLArgument(index=0)
+   public void setInput(String input) {
+      this.input = input.trim();
+      setterCalls++;
+   }
+
+   public int getLevel() {
+      return level;
+   }
+
+   @CLOption(key='l', longKey="level", expectsValue=true)
+   public void setLevel(int level) {
+      if (level < 0 || level > 9)
+         throw new IllegalArgumentException(INVALID_LEVEL_ERROR_MSG);
+
+      this.level = level;
+      setterCalls++;
+   }
+
+   public boolean isVerbose() {
+      return verbose;
+   }
+
+   @CLOption(key='v')
+   private void setVerbose(boolean verbose) {
+      this.verbose = verbose;
+      setterCalls++;
+   }
+
+   public int getSetterCalls() {
+      return setterCalls;
+   }
+}
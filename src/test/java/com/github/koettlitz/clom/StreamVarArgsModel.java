@@ -0,0 +1,14 @@
+package com.github.koettlitz.clom;
+
+import java.util.stream.Stream;
+
+import com.github.koettlitz.clom.IteratorVarArgsModel.IntParser;
+
+public class StreamVarArgsModel {
+   @CLVarArgs(adapter=IntParser.class)
+   private Stream<Integer> ids;
+
+   public Stream<Integer> getIds() {
+      return ids;
+   }
+}
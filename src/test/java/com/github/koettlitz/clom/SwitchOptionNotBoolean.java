@@ -2,5 +2,5 @@ package com.github.koettlitz.clom;
 
 public class SwitchOptionNotBoolean {
    @CLOption(key='f')
-   private int flag;
+   private String flag;
 }
@@ -0,0 +1,12 @@
+package com.github.koettlitz.clom;
+
+public class ToggleCommand {
+   @CLOption(key='o', longKey="on")
+   private boolean on;
+
+   @CLHandler
+   public void toggle() {
+      if (!on)
+         throw new IllegalStateException("The switch is not on");
+   }
+}
@@ -0,0 +1,57 @@
+package com.github.koettlitz.clom;
+
+import static com.github.koettlitz.clom.CLUnits.Format.DURATION;
+import static com.github.koettlitz.clom.CLUnits.Format.SIZE;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class UnitsModel {
+   @CLUnits
+   @CLArgument(index=0)
+   private long count;
+
+   @CLUnits(SIZE)
+   @CLOption(key='x', longKey="heap", expectsValue=true)
+   private long heap;
+
+   @CLUnits(value=DURATION, timeUnit=TimeUnit.SECONDS)
+   @CLOption(key='t', longKey="timeout", expectsValue=true)
+   private int timeout;
+
+   @CLUnits
+   @CLOption(key='m', longKey="mask", expectsValue=true)
+   private int mask;
+
+   @CLUnits(SIZE)
+   @CLOption(key='b', longKey="buffer", expectsValue=true)
+   private List<Integer> buffers;
+
+   @CLUnits(DURATION)
+   @CLOption(key='d', longKey="delay", expectsValue=true, defaultValue="1s")
+   private Long delay;
+
+   public long getCount() {
+      return count;
+   }
+
+   public long getHeap() {
+      return heap;
+   }
+
+   public int getTimeout() {
+      return timeout;
+   }
+
+   public int getMask() {
+      return mask;
+   }
+
+   public List<Integer> getBuffers() {
+      return buffers;
+   }
+
+   public Long getDelay() {
+      return delay;
+   }
+}
@@ -0,0 +1,128 @@
+package com.github.koettlitz.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+
+import org.junit.jupiter.api.Test;
+
+public class ReflectionUtilsTest {
+    enum Mode { PLAIN, SPECIAL { } }
+
+    static class Node {
+        String name;
+        int[] values = {1, 2};
+        String[] tags = {"a", null};
+        Mode mode = Mode.SPECIAL;
+        Node next;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    static class Empty { }
+
+    static class Bean {
+        private boolean active;
+        private String label;
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    static class SubBean extends Bean {
+        private int unrelated;
+    }
+
+    @Test
+    public void to_string_contains_nested_fields() {
+        Node node = new Node("first");
+        node.next = new Node("second");
+
+        String expected = "Node {\n"
+                          + "  name=\"first\",\n"
+                          + "  values=[1, 2],\n"
+                          + "  tags=[\"a\", null],\n"
+                          + "  mode=SPECIAL,\n"
+                          + "  next=Node {\n"
+                          + "    name=\"second\",\n"
+                          + "    values=[1, 2],\n"
+                          + "    tags=[\"a\", null],\n"
+                          + "    mode=SPECIAL,\n"
+                          + "    next=null\n"
+                          + "  }\n"
+                          + "}";
+        assertEquals(expected, ReflectionUtils.toString(node));
+    }
+
+    @Test
+    public void to_string_detects_cycles() {
+        Node node = new Node("self");
+        node.values = new int[0];
+        node.tags = new String[0];
+        node.next = node;
+
+        String expected = "Node {\n"
+                          + "  name=\"self\",\n"
+                          + "  values=[],\n"
+                          + "  tags=[],\n"
+                          + "  mode=SPECIAL,\n"
+                          + "  next=Node <cycle>\n"
+                          + "}";
+        assertEquals(expected, ReflectionUtils.toString(node));
+    }
+
+    @Test
+    public void to_string_writes_to_appendable() throws IOException {
+        StringWriter writer = ReflectionUtils.toString(new Object[] {new Empty(), "x", 3}, new StringWriter());
+        assertEquals("[Empty, \"x\", 3]", writer.toString());
+    }
+
+    @Test
+    public void members_are_found_in_superclasses() throws ReflectiveOperationException {
+        assertEquals("label", ReflectionUtils.getField(SubBean.class, "label").getName());
+        assertEquals("setLabel", ReflectionUtils.getMethod(SubBean.class, "setLabel", String.class).getName());
+        assertNull(ReflectionUtils.findMethod(SubBean.class, "setLabel", int.class));
+    }
+
+    @Test
+    public void missing_members_throw_exceptions_repeatedly() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(NoSuchFieldException.class, () -> ReflectionUtils.getField(SubBean.class, "missing"));
+            assertThrows(NoSuchMethodException.class, () -> ReflectionUtils.getMethod(SubBean.class, "missing"));
+        }
+    }
+
+    @Test
+    public void accessors_are_invoked() throws ReflectiveOperationException {
+        SubBean bean = new SubBean();
+        Field active = ReflectionUtils.getField(SubBean.class, "active");
+        Field label = ReflectionUtils.getField(SubBean.class, "label");
+        ReflectionUtils.invokeSetter(bean, active, true);
+        ReflectionUtils.invokeSetter(bean, label, "foo");
+
+        assertEquals(Boolean.TRUE, ReflectionUtils.invokeGetter(bean, active));
+        assertEquals("foo", ReflectionUtils.invokeGetter(bean, label));
+
+        Field unrelated = ReflectionUtils.getField(SubBean.class, "unrelated");
+        assertThrows(NoSuchMethodException.class, () -> ReflectionUtils.invokeGetter(bean, unrelated));
+    }
+}